@@ -0,0 +1,150 @@
+package org.filestack;
+
+import javax.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Configure a local cache of file content, set with {@link Client.Builder#contentCache(CacheOptions)}.
+ * Small files are kept in memory and, with a directory set, content is also kept on disk. Both are
+ * bounded by their size in bytes and evict the least recently used content first. Content is keyed
+ * by its URL, so by handle and security, and checked with conditional requests that only transfer
+ * it again if it changed.
+ */
+public class CacheOptions {
+  static final long DEFAULT_MAX_MEMORY_SIZE = 32 * 1024 * 1024;
+  static final long DEFAULT_MAX_MEMORY_ENTRY_SIZE = 1024 * 1024;
+  static final long DEFAULT_MAX_DISK_SIZE = 256 * 1024 * 1024;
+  static final long DEFAULT_REVALIDATE_AFTER = 60 * 1000;
+
+  private long maxMemorySize;
+  private long maxMemoryEntrySize;
+  private File directory;
+  private long maxDiskSize;
+  private long revalidateAfter;
+
+  // Private to enforce use of the builder
+  private CacheOptions() {
+
+  }
+
+  /** Returns options with all the default values. */
+  public static CacheOptions defaults() {
+    return new Builder().build();
+  }
+
+  /** Bytes of content kept in memory, 0 if it isn't. */
+  public long getMaxMemorySize() {
+    return maxMemorySize;
+  }
+
+  /** Size in bytes of the largest file kept in memory. */
+  public long getMaxMemoryEntrySize() {
+    return maxMemoryEntrySize;
+  }
+
+  /** Directory content is kept in on disk, null if it isn't. */
+  @Nullable
+  public File getDirectory() {
+    return directory;
+  }
+
+  /** Bytes of content kept on disk. */
+  public long getMaxDiskSize() {
+    return maxDiskSize;
+  }
+
+  /** Milliseconds content in memory is served without checking if it changed. */
+  public long getRevalidateAfter() {
+    return revalidateAfter;
+  }
+
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  public static class Builder {
+    private long maxMemorySize = DEFAULT_MAX_MEMORY_SIZE;
+    private long maxMemoryEntrySize = DEFAULT_MAX_MEMORY_ENTRY_SIZE;
+    private File directory;
+    private long maxDiskSize = DEFAULT_MAX_DISK_SIZE;
+    private long revalidateAfter = DEFAULT_REVALIDATE_AFTER;
+
+    public Builder() {
+
+    }
+
+    /** Create a new builder using existing options. */
+    public Builder(CacheOptions existing) {
+      maxMemorySize = existing.maxMemorySize;
+      maxMemoryEntrySize = existing.maxMemoryEntrySize;
+      directory = existing.directory;
+      maxDiskSize = existing.maxDiskSize;
+      revalidateAfter = existing.revalidateAfter;
+    }
+
+    /** Set how many bytes of content are kept in memory, 0 to keep none. Defaults to 32 MB. */
+    public Builder maxMemorySize(long maxMemorySize) {
+      this.maxMemorySize = maxMemorySize;
+      return this;
+    }
+
+    /**
+     * Set the size of the largest file kept in memory. Larger files are only kept on disk, if a
+     * directory is set. Defaults to 1 MB.
+     */
+    public Builder maxMemoryEntrySize(long maxMemoryEntrySize) {
+      this.maxMemoryEntrySize = maxMemoryEntrySize;
+      return this;
+    }
+
+    /**
+     * Set a directory to keep content in on disk, across runs. It shouldn't be used by anything
+     * else. Defaults to null, content is only kept in memory.
+     */
+    public Builder directory(@Nullable File directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /** Set how many bytes of content are kept on disk. Defaults to 256 MB. */
+    public Builder maxDiskSize(long maxDiskSize) {
+      this.maxDiskSize = maxDiskSize;
+      return this;
+    }
+
+    /**
+     * Set how long content in memory is served without asking the CDN if it changed, in
+     * milliseconds. Within that time reads don't touch the network at all, a changed file can be
+     * served stale. After it, a read is checked with a conditional request. 0 checks every read.
+     * Defaults to 1 minute.
+     */
+    public Builder revalidateAfter(long revalidateAfter) {
+      this.revalidateAfter = revalidateAfter;
+      return this;
+    }
+
+    /**
+     * Builds new {@link CacheOptions}.
+     *
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public CacheOptions build() {
+      if (maxMemorySize < 0 || maxMemoryEntrySize < 0 || maxDiskSize < 1) {
+        throw new IllegalArgumentException("Memory sizes can't be negative and disk size must be positive");
+      }
+      if (revalidateAfter < 0) {
+        throw new IllegalArgumentException("Revalidation delay can't be negative");
+      }
+
+      CacheOptions building = new CacheOptions();
+
+      building.maxMemorySize = maxMemorySize;
+      building.maxMemoryEntrySize = maxMemoryEntrySize;
+      building.directory = directory;
+      building.maxDiskSize = maxDiskSize;
+      building.revalidateAfter = revalidateAfter;
+
+      return building;
+    }
+  }
+}
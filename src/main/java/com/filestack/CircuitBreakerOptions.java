@@ -0,0 +1,159 @@
+package org.filestack;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Configure the circuit breakers that stop requests to a host once too many of them fail. Each
+ * host gets its own breaker. A breaker looks at the outcome of the last requests to its host, and
+ * when enough of them were network failures or 5xx responses it opens: requests to the host then
+ * fail right away with a {@link CircuitOpenException} instead of waiting for timeouts and retries.
+ * After a while a few probe requests are let through, and the breaker closes again if they succeed.
+ *
+ * <p>Breakers are off unless a config sets them with
+ * {@link Config.Builder#circuitBreaker(CircuitBreakerOptions)}. Configs with equal settings and
+ * HTTP connections share their breakers.
+ */
+public class CircuitBreakerOptions implements Serializable {
+  static final int DEFAULT_WINDOW = 50;
+  static final int DEFAULT_MIN_REQUESTS = 20;
+  static final double DEFAULT_FAILURE_RATE = 0.5;
+  static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+  static final int DEFAULT_PROBES = 3;
+
+  private int window;
+  private int minRequests;
+  private double failureRate;
+  private long openDuration;
+  private int probes;
+
+  // Private to enforce use of the builder
+  private CircuitBreakerOptions() {
+
+  }
+
+  /** Returns options with all the default values. */
+  public static CircuitBreakerOptions defaults() {
+    return new Builder().build();
+  }
+
+  /** Number of most recent requests to a host that the failure rate is computed over. */
+  public int getWindow() {
+    return window;
+  }
+
+  /** Requests that have to be seen before the breaker can open. */
+  public int getMinRequests() {
+    return minRequests;
+  }
+
+  /** Share of failed requests, between 0 and 1, that opens the breaker. */
+  public double getFailureRate() {
+    return failureRate;
+  }
+
+  /** Milliseconds the breaker stays open before letting probe requests through. */
+  public long getOpenDuration() {
+    return openDuration;
+  }
+
+  /** Probe requests that have to succeed in a row to close the breaker. */
+  public int getProbes() {
+    return probes;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CircuitBreakerOptions)) {
+      return false;
+    }
+    CircuitBreakerOptions that = (CircuitBreakerOptions) o;
+    return window == that.window
+        && minRequests == that.minRequests
+        && Double.compare(failureRate, that.failureRate) == 0
+        && openDuration == that.openDuration
+        && probes == that.probes;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(new Object[] {window, minRequests, failureRate, openDuration, probes});
+  }
+
+  public static class Builder {
+    private int window = DEFAULT_WINDOW;
+    private int minRequests = DEFAULT_MIN_REQUESTS;
+    private double failureRate = DEFAULT_FAILURE_RATE;
+    private long openDuration = DEFAULT_OPEN_DURATION;
+    private int probes = DEFAULT_PROBES;
+
+    /** Set the number of most recent requests the failure rate is computed over. Defaults to 50. */
+    public Builder window(int window) {
+      this.window = window;
+      return this;
+    }
+
+    /**
+     * Set the number of requests that have to be seen before the breaker can open, so a couple of
+     * early failures don't open it. Defaults to 20.
+     */
+    public Builder minRequests(int minRequests) {
+      this.minRequests = minRequests;
+      return this;
+    }
+
+    /** Set the share of failed requests, between 0 and 1, that opens the breaker. Defaults to 0.5. */
+    public Builder failureRate(double failureRate) {
+      this.failureRate = failureRate;
+      return this;
+    }
+
+    /** Set how long in milliseconds the breaker stays open before probing. Defaults to 30 seconds. */
+    public Builder openDuration(long openDuration) {
+      this.openDuration = openDuration;
+      return this;
+    }
+
+    /**
+     * Set the number of probe requests let through once the breaker has been open for long enough.
+     * All of them have to succeed to close it, a single failure opens it again. Defaults to 3.
+     */
+    public Builder probes(int probes) {
+      this.probes = probes;
+      return this;
+    }
+
+    /**
+     * Builds new {@link CircuitBreakerOptions}.
+     *
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public CircuitBreakerOptions build() {
+      if (window < 1 || minRequests < 1 || minRequests > window) {
+        throw new IllegalArgumentException("Min requests must be between 1 and the window size");
+      }
+      if (failureRate <= 0 || failureRate > 1) {
+        throw new IllegalArgumentException("Failure rate must be above 0 and at most 1");
+      }
+      if (openDuration < 0) {
+        throw new IllegalArgumentException("Open duration can't be negative");
+      }
+      if (probes < 1) {
+        throw new IllegalArgumentException("At least one probe is needed to close the breaker");
+      }
+
+      CircuitBreakerOptions building = new CircuitBreakerOptions();
+
+      building.window = window;
+      building.minRequests = minRequests;
+      building.failureRate = failureRate;
+      building.openDuration = openDuration;
+      building.probes = probes;
+
+      return building;
+    }
+  }
+}
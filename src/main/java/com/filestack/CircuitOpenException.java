@@ -0,0 +1,22 @@
+package org.filestack;
+
+import java.io.IOException;
+
+/**
+ * {@link IOException} subclass for requests that weren't sent because too many recent requests to
+ * the same host failed.
+ *
+ * @see CircuitBreakerOptions
+ */
+public class CircuitOpenException extends IOException {
+  private final String host;
+
+  public CircuitOpenException(String host) {
+    super("Too many failed requests to " + host + ", not sending more for now");
+    this.host = host;
+  }
+
+  public String getHost() {
+    return host;
+  }
+}
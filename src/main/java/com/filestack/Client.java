@@ -4,28 +4,35 @@ import org.filestack.internal.BaseService;
 import org.filestack.internal.CdnService;
 import org.filestack.internal.CloudService;
 import org.filestack.internal.CloudServiceUtil;
+import org.filestack.internal.ContentCacheInterceptor;
 import org.filestack.internal.Networking;
 import org.filestack.internal.Response;
 import org.filestack.internal.Upload;
 import org.filestack.internal.UploadService;
 import org.filestack.internal.Util;
+import org.filestack.internal.responses.CloudProviderResponse;
 import org.filestack.internal.responses.CloudStoreResponse;
 import org.filestack.transforms.ImageTransform;
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.Single;
-import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
 import okhttp3.ResponseBody;
+import org.reactivestreams.Publisher;
 
 import javax.annotation.Nullable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.Callable;
 
 /** Uploads new files. */
@@ -37,27 +44,35 @@ public class Client implements Serializable {
   private final CloudService cloudService;
   protected final Config config;
   
-  private String sessionToken;
+  private volatile String sessionToken;
+  private final transient UploadScheduler uploadScheduler; // Not serialized, see Builder#uploadScheduler
 
   /**
    * Basic constructor for Client class.
    * @param config - configuration for this Client's instance
    */
   public Client(Config config) {
-    this.config = config;
-    this.cdnService = Networking.getCdnService();
-    this.uploadService = Networking.getUploadService();
-    this.baseService = Networking.getBaseService();
-    this.cloudService = Networking.getCloudService();
+    this(config, (UploadScheduler) null);
+  }
+
+  private Client(Config config, @Nullable UploadScheduler uploadScheduler) {
+    this(config, Networking.getCdnService(config), Networking.getBaseService(config),
+        Networking.getUploadService(config), Networking.getCloudService(config), uploadScheduler);
   }
 
   Client(Config config, CdnService cdnService, BaseService baseService, UploadService uploadService,
          CloudService cloudService) {
+    this(config, cdnService, baseService, uploadService, cloudService, null);
+  }
+
+  Client(Config config, CdnService cdnService, BaseService baseService, UploadService uploadService,
+         CloudService cloudService, @Nullable UploadScheduler uploadScheduler) {
     this.config = config;
     this.cdnService = cdnService;
     this.uploadService = uploadService;
     this.baseService = baseService;
     this.cloudService = cloudService;
+    this.uploadScheduler = uploadScheduler;
   }
 
   /**
@@ -101,6 +116,38 @@ public class Client implements Serializable {
     return uploadAsync(input, size, intel, opts).blockingLast().getData();
   }
 
+  /**
+   * Synchronously uploads a {@link Path}.
+   * Wraps {@link #uploadAsync(Path, boolean, StorageOptions)}.
+   *
+   * @see #uploadAsync(Path, boolean, StorageOptions)
+   */
+  public FileLink upload(Path path, boolean intel, @Nullable StorageOptions opts) throws IOException {
+    return uploadAsync(path, intel, opts).blockingLast().getData();
+  }
+
+  /**
+   * Synchronously uploads a {@link SeekableByteChannel}.
+   * Wraps {@link #uploadAsync(SeekableByteChannel, boolean, StorageOptions)}.
+   *
+   * @see #uploadAsync(SeekableByteChannel, boolean, StorageOptions)
+   */
+  public FileLink upload(SeekableByteChannel channel, boolean intel, @Nullable StorageOptions opts)
+      throws IOException {
+    return uploadAsync(channel, intel, opts).blockingLast().getData();
+  }
+
+  /**
+   * Synchronously uploads a {@link Path}, resuming the upload recorded in the journal if there is one.
+   * Wraps {@link #resumeUploadAsync(Path, boolean, StorageOptions, UploadJournal)}.
+   *
+   * @see #resumeUploadAsync(Path, boolean, StorageOptions, UploadOptions, UploadJournal)
+   */
+  public FileLink resumeUpload(Path path, boolean intel, @Nullable StorageOptions opts, UploadJournal journal)
+      throws IOException {
+    return resumeUploadAsync(path, intel, opts, journal).blockingLast().getData();
+  }
+
   /**
    * Acquires a reference to a {@link FileLink} based on an unique handle.
    * @param handle - a unique reference to a file uploaded through our API
@@ -145,22 +192,26 @@ public class Client implements Serializable {
   public CloudResponse getCloudItems(String providerName, @Nullable String path, @Nullable String next)
       throws IOException {
 
+    Response<CloudProviderResponse<CloudResponse>> response =
+        cloudService.listItems(cloudItemsParams(providerName, path, next), providerName);
+    Util.checkResponseAndThrow(response);
+    return readCloudItems(response.getData());
+  }
+
+  private JsonObject cloudItemsParams(String providerName, @Nullable String path, @Nullable String next) {
     Util.throwIfNullOrEmpty(providerName, "Provider name is required");
     Util.throwIfNullOrEmpty(path, "Path is required");
 
     JsonObject params = CloudServiceUtil.buildBaseJson(config, sessionToken, null);
     CloudServiceUtil.addCloudJson(params, providerName, path, next);
-    Response<JsonObject> response = cloudService.list(params);
-    Util.checkResponseAndThrow(response);
-    JsonObject base = response.getData();
+    return params;
+  }
 
-    if (base.has("token")) {
-      sessionToken = base.get("token").getAsString();
+  private CloudResponse readCloudItems(CloudProviderResponse<CloudResponse> base) {
+    if (base.getToken() != null) {
+      sessionToken = base.getToken();
     }
-
-    JsonElement provider = base.get(providerName);
-    Gson gson = new Gson();
-    return gson.fromJson(provider, CloudResponse.class);
+    return base.getData();
   }
 
   /**
@@ -189,6 +240,13 @@ public class Client implements Serializable {
   public FileLink storeCloudItem(String providerName, String path, @Nullable StorageOptions options)
       throws IOException {
 
+    Response<CloudProviderResponse<CloudStoreResponse>> response =
+        cloudService.storeItem(storeParams(providerName, path, options), providerName);
+    Util.checkResponseAndThrow(response);
+    return readStoredItem(response.getData());
+  }
+
+  private JsonObject storeParams(String providerName, String path, @Nullable StorageOptions options) {
     Util.throwIfNullOrEmpty(providerName, "Provider name is required");
     Util.throwIfNullOrEmpty(path, "Path is required");
 
@@ -200,12 +258,11 @@ public class Client implements Serializable {
     CloudServiceUtil.addCloudJson(params, providerName, path, null);
     CloudServiceUtil.addStorageJson(params, providerName, options);
     params.add("store", options.getAsJson());
-    Response<JsonObject> response = cloudService.store(params);
-    Util.checkResponseAndThrow(response);
-    JsonElement responseJson = response.getData().get(providerName);
-    Gson gson = new Gson();
-    CloudStoreResponse storeInfo = gson.fromJson(responseJson, CloudStoreResponse.class);
-    return new FileLink(config, cdnService, baseService, storeInfo.getHandle());
+    return params;
+  }
+
+  private FileLink readStoredItem(CloudProviderResponse<CloudStoreResponse> base) {
+    return new FileLink(config, cdnService, baseService, base.getData().getHandle());
   }
 
   /**
@@ -216,16 +273,21 @@ public class Client implements Serializable {
    * @throws IOException           on network failure
    */
   public void logoutCloud(String providerName) throws IOException {
+    Response<ResponseBody> response = cloudService.logout(logoutParams(providerName));
+    Util.checkResponseAndThrow(response);
+  }
 
+  private JsonObject logoutParams(String providerName) {
     Util.throwIfNullOrEmpty(providerName, "Provider name is required");
 
     JsonObject params = CloudServiceUtil.buildBaseJson(config, sessionToken, null);
     CloudServiceUtil.addCloudJson(params, providerName, null, null);
-    Response<ResponseBody> response = cloudService.logout(params);
-    Util.checkResponseAndThrow(response);
+    return params;
   }
 
   // Async methods
+  // Cloud and app info requests are enqueued on the HTTP client, without holding a thread while
+  // waiting on them, and emit on its threads.
 
   /**
    * Asynchronously uploads a file system path using default storage options.
@@ -239,25 +301,175 @@ public class Client implements Serializable {
 
   /**
    * Asynchronously uploads a file system path.
-   * Wraps {@link #uploadAsync(InputStream, int, boolean, StorageOptions)}.
+   * Wraps {@link #uploadAsync(Path, boolean, StorageOptions)}.
    *
-   * @see #uploadAsync(InputStream, int, boolean, StorageOptions)
+   * @see #uploadAsync(Path, boolean, StorageOptions)
    */
   public Flowable<Progress<FileLink>> uploadAsync(String path, boolean intel, @Nullable StorageOptions opts) {
-    try {
-      File inputFile = Util.createReadFile(path);
-      InputStream inputStream = new FileInputStream(inputFile);
-
-      if (opts == null) {
-        opts = new StorageOptions.Builder().filename(inputFile.getName()).build();
-      } else if (Util.isNullOrEmpty(opts.getFilename())) {
-        opts = opts.newBuilder().filename(inputFile.getName()).build();
-      }
+    return uploadAsync(path, intel, opts, config.getUploadOptions());
+  }
 
-      return uploadAsync(inputStream, (int) inputFile.length(), intel, opts);
+  /**
+   * Asynchronously uploads a file system path with custom upload options.
+   * Wraps {@link #uploadAsync(Path, boolean, StorageOptions, UploadOptions)}.
+   *
+   * @see #uploadAsync(Path, boolean, StorageOptions, UploadOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(String path, boolean intel, @Nullable StorageOptions opts,
+                                                  UploadOptions uploadOpts) {
+    File inputFile;
+    try {
+      inputFile = Util.createReadFile(path);
     } catch (IOException e) {
       return Flowable.error(e);
     }
+    return uploadAsync(inputFile.toPath(), intel, opts, uploadOpts);
+  }
+
+  /**
+   * Asynchronously uploads a {@link Path} using default storage options.
+   * Wraps {@link #uploadAsync(Path, boolean, StorageOptions)}.
+   *
+   * @see #uploadAsync(Path, boolean, StorageOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(Path path, boolean intel) {
+    return uploadAsync(path, intel, null);
+  }
+
+  /**
+   * Asynchronously uploads a {@link Path} using the config's upload options.
+   * Wraps {@link #uploadAsync(Path, boolean, StorageOptions, UploadOptions)}.
+   *
+   * @see #uploadAsync(Path, boolean, StorageOptions, UploadOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(Path path, boolean intel, @Nullable StorageOptions opts) {
+    return uploadAsync(path, intel, opts, config.getUploadOptions());
+  }
+
+  /**
+   * Asynchronously uploads a {@link Path}.
+   * Parts are streamed from the file through a {@link FileChannel} instead of each being copied
+   * into an array, so heap usage doesn't grow with the part size or the number of workers.
+   * Workers address parts by offset and never wait on each other to read.
+   * The file is opened when the returned {@link Flowable} is subscribed to and closed when it
+   * terminates.
+   *
+   * @see #uploadAsync(InputStream, int, boolean, StorageOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(Path path, boolean intel, @Nullable StorageOptions opts,
+                                                  UploadOptions uploadOpts) {
+    return uploadAsync(path, intel, opts, uploadOpts, null);
+  }
+
+  /**
+   * Asynchronously resumes an upload recorded in a journal, using the config's upload options.
+   * Wraps {@link #resumeUploadAsync(Path, boolean, StorageOptions, UploadOptions, UploadJournal)}.
+   *
+   * @see #resumeUploadAsync(Path, boolean, StorageOptions, UploadOptions, UploadJournal)
+   */
+  public Flowable<Progress<FileLink>> resumeUploadAsync(Path path, boolean intel, @Nullable StorageOptions opts,
+                                                        UploadJournal journal) {
+    return resumeUploadAsync(path, intel, opts, config.getUploadOptions(), journal);
+  }
+
+  /**
+   * Asynchronously uploads a {@link Path}, recording progress in a journal so an interrupted upload
+   * can be picked up again. If the journal holds the state of a previous run, the upload continues
+   * where it left off: the start call is skipped and only parts that weren't acknowledged are sent.
+   * Otherwise a new upload is started and recorded. The journal is cleared once the upload completes.
+   *
+   * <p>The file must not change between runs, and the storage options must be the same ones the
+   * upload was started with. When resuming, the part size and intelligent ingestion mode recorded in
+   * the journal are used instead of the given ones.</p>
+   *
+   * @see FileUploadJournal
+   */
+  public Flowable<Progress<FileLink>> resumeUploadAsync(Path path, boolean intel, @Nullable StorageOptions opts,
+                                                        UploadOptions uploadOpts, UploadJournal journal) {
+    return uploadAsync(path, intel, opts, uploadOpts, journal);
+  }
+
+  private Flowable<Progress<FileLink>> uploadAsync(final Path path, final boolean intel,
+                                                   @Nullable StorageOptions opts, final UploadOptions uploadOpts,
+                                                   @Nullable final UploadJournal journal) {
+    Path name = path.getFileName();
+    if (opts == null) {
+      opts = new StorageOptions.Builder().build();
+    }
+    if (Util.isNullOrEmpty(opts.getFilename()) && name != null) {
+      opts = opts.newBuilder().filename(name.toString()).build();
+    }
+
+    final StorageOptions storeOpts = opts;
+    return Flowable.using(
+        new Callable<FileChannel>() {
+          @Override
+          public FileChannel call() throws Exception {
+            return FileChannel.open(path, StandardOpenOption.READ);
+          }
+        },
+        new Function<FileChannel, Publisher<Progress<FileLink>>>() {
+          @Override
+          public Publisher<Progress<FileLink>> apply(FileChannel channel) throws Exception {
+            Upload upload = newUpload(new Upload(config, uploadService, channel, intel, storeOpts, uploadOpts));
+            if (journal != null) {
+              upload.setJournal(journal, journal.load());
+            }
+            return upload.run();
+          }
+        },
+        new Consumer<FileChannel>() {
+          @Override
+          public void accept(FileChannel channel) throws Exception {
+            channel.close();
+          }
+        });
+  }
+
+  /**
+   * Asynchronously uploads a {@link SeekableByteChannel} using default storage options.
+   * Wraps {@link #uploadAsync(SeekableByteChannel, boolean, StorageOptions)}.
+   *
+   * @see #uploadAsync(SeekableByteChannel, boolean, StorageOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(SeekableByteChannel channel, boolean intel) {
+    return uploadAsync(channel, intel, null);
+  }
+
+  /**
+   * Asynchronously uploads a {@link SeekableByteChannel} using the config's upload options.
+   * Wraps {@link #uploadAsync(SeekableByteChannel, boolean, StorageOptions, UploadOptions)}.
+   *
+   * @see #uploadAsync(SeekableByteChannel, boolean, StorageOptions, UploadOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(SeekableByteChannel channel, boolean intel,
+                                                  @Nullable StorageOptions opts) {
+    return uploadAsync(channel, intel, opts, config.getUploadOptions());
+  }
+
+  /**
+   * Asynchronously uploads the entire content of a {@link SeekableByteChannel}.
+   * Parts are read by offset so workers can read concurrently instead of taking turns on a stream.
+   * A {@link FileChannel}, including one obtained from {@link java.io.RandomAccessFile#getChannel()},
+   * is read with positional reads and streamed without copying each part into an array.
+   * The channel is not closed once the upload finishes.
+   *
+   * @see #uploadAsync(InputStream, int, boolean, StorageOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(final SeekableByteChannel channel, final boolean intel,
+                                                  @Nullable StorageOptions opts, final UploadOptions uploadOpts) {
+    if (opts == null) {
+      opts = new StorageOptions.Builder().build();
+    }
+
+    final StorageOptions storeOpts = opts;
+    return Flowable.defer(new Callable<Publisher<Progress<FileLink>>>() {
+      @Override
+      public Publisher<Progress<FileLink>> call() throws Exception {
+        Upload upload = newUpload(new Upload(config, uploadService, channel, intel, storeOpts, uploadOpts));
+        return upload.run();
+      }
+    });
   }
 
   /**
@@ -289,11 +501,23 @@ public class Client implements Serializable {
    */
   public Flowable<Progress<FileLink>> uploadAsync(
       InputStream input, int size, boolean intel, @Nullable StorageOptions opts) {
+    return uploadAsync(input, size, intel, opts, config.getUploadOptions());
+  }
+
+  /**
+   * Asynchronously uploads an {@link InputStream} with custom upload options.
+   * Options override the defaults set in {@link Config} for this upload only.
+   *
+   * @param uploadOpts part sizes, concurrency and retry settings for this upload
+   * @see #uploadAsync(InputStream, int, boolean, StorageOptions)
+   */
+  public Flowable<Progress<FileLink>> uploadAsync(
+      InputStream input, long size, boolean intel, @Nullable StorageOptions opts, UploadOptions uploadOpts) {
     if (opts == null) {
       opts = new StorageOptions.Builder().build();
     }
 
-    Upload upload = new Upload(config, uploadService, input, size, intel, opts);
+    Upload upload = newUpload(new Upload(config, uploadService, input, size, intel, opts, uploadOpts));
     return upload.run();
   }
 
@@ -303,12 +527,12 @@ public class Client implements Serializable {
    * @see #getAppInfo()
    */
   public Single<AppInfo> getAppInfoAsync() {
-    return Single.fromCallable(new Callable<AppInfo>() {
+    return Single.defer(new Callable<Single<Response<AppInfo>>>() {
       @Override
-      public AppInfo call() throws Exception {
-        return getAppInfo();
+      public Single<Response<AppInfo>> call() throws Exception {
+        return cloudService.prefetchAsync(CloudServiceUtil.buildBaseJson(config, null, null));
       }
-    });
+    }).map(Util.<AppInfo>checkedData());
   }
 
   /**
@@ -328,12 +552,18 @@ public class Client implements Serializable {
   public Single<CloudResponse> getCloudItemsAsync(final String providerName, final String path,
                                                      @Nullable final String next) {
 
-    return Single.fromCallable(new Callable<CloudResponse>() {
+    return Single.defer(new Callable<Single<Response<CloudProviderResponse<CloudResponse>>>>() {
       @Override
-      public CloudResponse call() throws Exception {
-        return getCloudItems(providerName, path, next);
+      public Single<Response<CloudProviderResponse<CloudResponse>>> call() throws Exception {
+        return cloudService.listItemsAsync(cloudItemsParams(providerName, path, next), providerName);
       }
-    });
+    }).map(Util.<CloudProviderResponse<CloudResponse>>checkedData())
+        .map(new Function<CloudProviderResponse<CloudResponse>, CloudResponse>() {
+          @Override
+          public CloudResponse apply(CloudProviderResponse<CloudResponse> base) {
+            return readCloudItems(base);
+          }
+        });
   }
 
   /**
@@ -354,12 +584,18 @@ public class Client implements Serializable {
   public Single<FileLink> storeCloudItemAsync(final String providerName, final String path,
                                               @Nullable final StorageOptions options) {
 
-    return Single.fromCallable(new Callable<FileLink>() {
+    return Single.defer(new Callable<Single<Response<CloudProviderResponse<CloudStoreResponse>>>>() {
       @Override
-      public FileLink call() throws Exception {
-        return storeCloudItem(providerName, path, options);
+      public Single<Response<CloudProviderResponse<CloudStoreResponse>>> call() throws Exception {
+        return cloudService.storeItemAsync(storeParams(providerName, path, options), providerName);
       }
-    });
+    }).map(Util.<CloudProviderResponse<CloudStoreResponse>>checkedData())
+        .map(new Function<CloudProviderResponse<CloudStoreResponse>, FileLink>() {
+          @Override
+          public FileLink apply(CloudProviderResponse<CloudStoreResponse> base) {
+            return readStoredItem(base);
+          }
+        });
   }
 
   /**
@@ -368,12 +604,12 @@ public class Client implements Serializable {
    * @see #logoutCloud(String)
    */
   public Completable logoutCloudAsync(final String providerName) {
-    return Completable.fromAction(new Action() {
+    return Single.defer(new Callable<Single<Response<ResponseBody>>>() {
       @Override
-      public void run() throws Exception {
-        logoutCloud(providerName);
+      public Single<Response<ResponseBody>> call() throws Exception {
+        return cloudService.logoutAsync(logoutParams(providerName));
       }
-    });
+    }).doOnSuccess(Util.checkAndClose()).ignoreElement();
   }
 
   /**
@@ -401,4 +637,100 @@ public class Client implements Serializable {
   public void setSessionToken(String sessionToken) {
     this.sessionToken = sessionToken;
   }
+
+  /** Scheduler that admits the parts of this client's uploads, null if there's none. */
+  @Nullable
+  public UploadScheduler getUploadScheduler() {
+    return uploadScheduler;
+  }
+
+  /** Applies client wide upload settings to a new upload. */
+  private Upload newUpload(Upload upload) {
+    if (uploadScheduler != null) {
+      upload.setScheduler(uploadScheduler);
+    }
+    return upload;
+  }
+
+  /**
+   * Builds a {@link Client} with a networking stack of its own: its own connection pool and
+   * dispatcher, host throttling and circuit breakers. Clients made with the constructor share a
+   * stack with every other client of equal {@link HttpOptions}. Use this to keep workloads apart in
+   * one process, for example a large pool for bulk ingestion next to a small, short timeout one for
+   * interactive transforms. File links and uploads made through the client use its stack too.
+   */
+  public static class Builder {
+    private final Config config;
+    private HttpOptions httpOptions;
+    private OkHttpClient httpClient;
+    private CacheOptions cacheOptions;
+    private UploadScheduler uploadScheduler;
+
+    public Builder(Config config) {
+      this.config = config;
+    }
+
+    /** Set the settings of the client's connections, instead of the config's options or client. */
+    public Builder httpOptions(HttpOptions httpOptions) {
+      this.httpOptions = httpOptions;
+      return this;
+    }
+
+    /**
+     * Send requests with an existing HTTP client, sharing its connection pool and dispatcher. The
+     * built client still gets its own throttling and circuit breakers. Defaults to the config's
+     * client, if it has one.
+     */
+    public Builder httpClient(OkHttpClient httpClient) {
+      this.httpClient = httpClient;
+      return this;
+    }
+
+    /**
+     * Keep the content of files read through the client in a local cache, so reading the same
+     * files again is served locally. Off by default.
+     *
+     * @see CacheOptions
+     */
+    public Builder contentCache(CacheOptions cacheOptions) {
+      this.cacheOptions = cacheOptions;
+      return this;
+    }
+
+    /**
+     * Set a scheduler that admits the parts of the client's uploads. Pass the same scheduler to
+     * several clients to bound their combined traffic. Without one, each upload is only limited by
+     * its own concurrency. The scheduler is shared state and isn't serialized with the client, a
+     * deserialized client's uploads aren't scheduled.
+     */
+    public Builder uploadScheduler(UploadScheduler uploadScheduler) {
+      this.uploadScheduler = uploadScheduler;
+      return this;
+    }
+
+    public Client build() {
+      HttpOptions httpOptions = this.httpOptions != null ? this.httpOptions : config.getHttpOptions();
+      OkHttpClient shared = this.httpClient != null || this.httpOptions != null
+          ? this.httpClient
+          : config.getHttpClient();
+      // A new instance is a new key, so the stack isn't shared with any other config
+      OkHttpClient dedicated = shared != null ? shared.newBuilder().build() : Networking.newHttpClient(httpOptions);
+      if (cacheOptions != null) {
+        dedicated = withCache(dedicated, cacheOptions);
+      }
+      return new Client(config.withHttp(httpOptions, dedicated), uploadScheduler);
+    }
+
+    // Memory in front of disk, the disk cache only sees what memory misses or revalidates
+    private static OkHttpClient withCache(OkHttpClient client, CacheOptions options) {
+      OkHttpClient.Builder builder = client.newBuilder();
+      if (options.getMaxMemorySize() > 0) {
+        builder.addInterceptor(new ContentCacheInterceptor(options));
+      }
+      if (options.getDirectory() != null) {
+        builder.cache(new Cache(options.getDirectory(), options.getMaxDiskSize()));
+      }
+      return builder.build();
+    }
+  }
 }
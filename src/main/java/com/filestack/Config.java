@@ -1,19 +1,32 @@
 package org.filestack;
 
+import org.filestack.internal.PartBufferPool;
 import org.filestack.internal.Util;
 import org.filestack.transforms.Transform;
+import okhttp3.OkHttpClient;
 
 import javax.annotation.Nullable;
 import java.io.Serializable;
 
 /**
  * Holds config common to {@link Client}, {@link FileLink}, and {@link Transform} classes.
+ * A supplied HTTP client isn't serialized, a deserialized config has none and builds one from its
+ * {@link HttpOptions}.
  */
 public class Config implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   protected final String apiKey;
   protected final String policy;
   protected final String signature;
   protected final String returnUrl;
+  protected final UploadOptions uploadOptions;
+  protected final boolean virtualThreads;
+  protected final HttpOptions httpOptions;
+  protected final transient OkHttpClient httpClient;
+  protected final CircuitBreakerOptions circuitBreaker;
+  protected final long uploadMemoryLimit;
+  protected final long idleUploadMemory;
 
   /**
    * Constructs configuration for {@link Client} class.
@@ -66,10 +79,25 @@ public class Config implements Serializable {
   @Deprecated
   public Config(String apiKey, @Nullable String returnUrl, @Nullable String encodedPolicy,
                 @Nullable String signature) {
+    this(apiKey, returnUrl, encodedPolicy, signature, UploadOptions.defaults(), false, HttpOptions.defaults(), null,
+        null, PartBufferPool.DEFAULT_LIMIT, PartBufferPool.DEFAULT_MAX_IDLE);
+  }
+
+  private Config(String apiKey, @Nullable String returnUrl, @Nullable String encodedPolicy,
+                 @Nullable String signature, UploadOptions uploadOptions, boolean virtualThreads,
+                 HttpOptions httpOptions, @Nullable OkHttpClient httpClient,
+                 @Nullable CircuitBreakerOptions circuitBreaker, long uploadMemoryLimit, long idleUploadMemory) {
     this.apiKey = apiKey;
     this.returnUrl = returnUrl;
     this.policy = encodedPolicy;
     this.signature = signature;
+    this.uploadOptions = uploadOptions;
+    this.virtualThreads = virtualThreads;
+    this.httpOptions = httpOptions;
+    this.httpClient = httpClient;
+    this.circuitBreaker = circuitBreaker;
+    this.uploadMemoryLimit = uploadMemoryLimit;
+    this.idleUploadMemory = idleUploadMemory;
   }
 
   public String getApiKey() {
@@ -92,4 +120,181 @@ public class Config implements Serializable {
   public String getSignature() {
     return signature;
   }
+
+  /** Options used by uploads that don't specify their own. */
+  public UploadOptions getUploadOptions() {
+    return uploadOptions;
+  }
+
+  /** If blocking network and file work runs on virtual threads instead of the RxJava io scheduler. */
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /** Settings of the HTTP connections, unless {@link #getHttpClient()} is set. */
+  public HttpOptions getHttpOptions() {
+    return httpOptions;
+  }
+
+  /**
+   * HTTP client supplied to send requests with, null to build one from {@link #getHttpOptions()}.
+   * It's transient, always null after the config is deserialized.
+   */
+  @Nullable
+  public OkHttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  /** Settings of the per host circuit breakers requests go through, null if there are none. */
+  @Nullable
+  public CircuitBreakerOptions getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /** Bytes that parts of uploads copied into memory may take up, across configs with the same limits. */
+  public long getUploadMemoryLimit() {
+    return uploadMemoryLimit;
+  }
+
+  /** Bytes of released part arrays kept for reuse by later uploads. */
+  public long getIdleUploadMemory() {
+    return idleUploadMemory;
+  }
+
+  // Copy of this config sending requests with the given client
+  Config withHttp(HttpOptions httpOptions, OkHttpClient httpClient) {
+    return new Config(apiKey, returnUrl, policy, signature, uploadOptions, virtualThreads, httpOptions, httpClient,
+        circuitBreaker, uploadMemoryLimit, idleUploadMemory);
+  }
+
+  /**
+   * Builds new {@link Config}. Prefer this to the constructors when setting anything beyond the API
+   * key and security.
+   */
+  public static class Builder {
+    private final String apiKey;
+    private String encodedPolicy;
+    private String signature;
+    private UploadOptions uploadOptions;
+    private boolean virtualThreads;
+    private HttpOptions httpOptions;
+    private OkHttpClient httpClient;
+    private CircuitBreakerOptions circuitBreaker;
+    private long uploadMemoryLimit = PartBufferPool.DEFAULT_LIMIT;
+    private long idleUploadMemory = PartBufferPool.DEFAULT_MAX_IDLE;
+
+    /**
+     * Constructs new builder.
+     * @param apiKey - an API key obtained from the Developer Portal
+     */
+    public Builder(String apiKey) {
+      this.apiKey = apiKey;
+    }
+
+    /**
+     * Set access policy, one can be created with {@link Policy.Builder}.
+     */
+    public Builder policy(Policy policy) {
+      return policy(policy.getEncodedPolicy(), policy.getSignature());
+    }
+
+    /**
+     * Set an already encoded access policy.
+     * @param encodedPolicy - encoded policy, obtain one using {@link Policy#getEncodedPolicy()}
+     * @param signature - policy signature, obtain one using {@link Policy#getSignature()}
+     */
+    public Builder policy(@Nullable String encodedPolicy, @Nullable String signature) {
+      this.encodedPolicy = encodedPolicy;
+      this.signature = signature;
+      return this;
+    }
+
+    /**
+     * Set options used by uploads that don't specify their own. Defaults to
+     * {@link UploadOptions#defaults()}.
+     */
+    public Builder uploadOptions(UploadOptions uploadOptions) {
+      this.uploadOptions = uploadOptions;
+      return this;
+    }
+
+    /**
+     * Set if blocking work runs on virtual threads. Uploads normally run their workers on the RxJava
+     * io scheduler, which keeps a platform thread for every request in flight or retry being waited
+     * out. With virtual threads, uploads, downloads and the other async methods of {@link Client},
+     * {@link FileLink} and {@link Transform} each cost a small heap allocated stack instead, so many
+     * thousands can run at once. Defaults to false. Async methods of {@link FileLink} and
+     * {@link Transform} otherwise run on the subscribing thread, as they always have.
+     */
+    public Builder virtualThreads(boolean virtualThreads) {
+      this.virtualThreads = virtualThreads;
+      return this;
+    }
+
+    /**
+     * Set the settings of the HTTP connections. Configs with equal settings share a connection pool.
+     * Defaults to {@link HttpOptions#defaults()}.
+     */
+    public Builder httpOptions(HttpOptions httpOptions) {
+      this.httpOptions = httpOptions;
+      return this;
+    }
+
+    /**
+     * Send requests with an existing HTTP client instead of building one from the
+     * {@link #httpOptions(HttpOptions) options}, sharing its connection pool and dispatcher. A copy
+     * of it that adds the Filestack headers is used, the client itself isn't changed. The client
+     * isn't serialized with the config, a deserialized config builds one from the options.
+     */
+    public Builder httpClient(OkHttpClient httpClient) {
+      this.httpClient = httpClient;
+      return this;
+    }
+
+    /**
+     * Send requests through per host circuit breakers, which fail requests to a host right away
+     * once too many of them failed, see {@link CircuitBreakerOptions}. Defaults to null, off.
+     */
+    public Builder circuitBreaker(@Nullable CircuitBreakerOptions circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /**
+     * Cap the memory used to hold parts of uploads read from an {@link java.io.InputStream} or a
+     * generic {@link java.nio.channels.SeekableByteChannel}. The cap is shared by every config with
+     * the same memory settings, workers wait for part arrays to be released once it's reached, and a
+     * single part larger than it still goes through on its own. Uploads from a file path don't hold
+     * parts in arrays. Defaults to a quarter of the max heap size, up to 1 GB.
+     */
+    public Builder uploadMemoryLimit(long uploadMemoryLimit) {
+      this.uploadMemoryLimit = uploadMemoryLimit;
+      return this;
+    }
+
+    /**
+     * Set how many bytes of released part arrays are kept to be reused by later parts, the rest is
+     * left to the garbage collector. Defaults to a quarter of the default memory limit, up to 64 MB.
+     */
+    public Builder idleUploadMemory(long idleUploadMemory) {
+      this.idleUploadMemory = idleUploadMemory;
+      return this;
+    }
+
+    /**
+     * Builds new {@link Config}.
+     *
+     * @throws IllegalArgumentException if a memory setting is out of range
+     */
+    public Config build() {
+      if (uploadMemoryLimit < 1 || idleUploadMemory < 0) {
+        throw new IllegalArgumentException("Upload memory limit must be positive and idle memory can't be negative");
+      }
+
+      UploadOptions uploadOptions = this.uploadOptions != null ? this.uploadOptions : UploadOptions.defaults();
+      HttpOptions httpOptions = this.httpOptions != null ? this.httpOptions : HttpOptions.defaults();
+      return new Config(apiKey, null, encodedPolicy, signature, uploadOptions, virtualThreads, httpOptions,
+          httpClient, circuitBreaker, uploadMemoryLimit, idleUploadMemory);
+    }
+  }
 }
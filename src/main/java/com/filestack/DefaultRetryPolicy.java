@@ -0,0 +1,67 @@
+package org.filestack;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Retry policy used unless another one is set.
+ *
+ * <ul>
+ *   <li>200 is a success.</li>
+ *   <li>206, 400 and 403 fail right away, they mean the request itself is wrong.</li>
+ *   <li>429 and 503 throttle the host. 503 is also how S3 says SlowDown.</li>
+ *   <li>Any other response is retried, this includes 202 while intelligent ingestion parts are
+ *   still being processed.</li>
+ *   <li>Failures without a response are retried, except for interruptions that aren't timeouts.
+ *   Those mean the upload was cancelled. Requests stopped by an open circuit breaker aren't
+ *   retried either, the point of the breaker is to fail fast.</li>
+ *   <li>Retry-After is honored both in seconds and as an HTTP date.</li>
+ * </ul>
+ */
+public class DefaultRetryPolicy implements RetryPolicy {
+
+  @Override
+  public Outcome classify(int code) {
+    switch (code) {
+      case 200:
+        return Outcome.SUCCESS;
+      case 206:
+      case 400:
+      case 403:
+        return Outcome.FAIL;
+      case 429:
+      case 503:
+        return Outcome.THROTTLE;
+      default:
+        return Outcome.RETRY;
+    }
+  }
+
+  @Override
+  public boolean isRetryable(Exception e) {
+    if (e instanceof CircuitOpenException) {
+      return false;
+    }
+    return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+  }
+
+  @Override
+  public long getRetryAfter(String value) {
+    String trimmed = value.trim();
+    try {
+      long seconds = Long.parseLong(trimmed);
+      return seconds < 0 ? -1 : seconds * 1000;
+    } catch (NumberFormatException e) {
+      // Not delay seconds, try a date
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+      return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package org.filestack;
+
+/**
+ * Configure how a {@link FileLink} is downloaded. By default a file is fetched with a single
+ * request. With more than one worker, it's split in segments fetched with HTTP range requests,
+ * several at a time over their own connections, and each is written straight to its place in the
+ * file.
+ */
+public class DownloadOptions {
+  static final long DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+  static final int DEFAULT_CONCURRENCY = 1;
+
+  private long segmentSize;
+  private int concurrency;
+  private boolean resumable;
+
+  // Private to enforce use of the builder
+  private DownloadOptions() {
+
+  }
+
+  /** Returns options with all the default values. */
+  public static DownloadOptions defaults() {
+    return new Builder().build();
+  }
+
+  /** Size in bytes of the ranges requested at once. */
+  public long getSegmentSize() {
+    return segmentSize;
+  }
+
+  /** Segments downloaded in parallel, 1 to download with a single request. */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /** Whether an interrupted download is continued by the next one to the same file. */
+  public boolean isResumable() {
+    return resumable;
+  }
+
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  public static class Builder {
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean resumable;
+
+    public Builder() {
+
+    }
+
+    /** Create a new builder using existing options. */
+    public Builder(DownloadOptions existing) {
+      segmentSize = existing.segmentSize;
+      concurrency = existing.concurrency;
+      resumable = existing.resumable;
+    }
+
+    /**
+     * Set the size of the ranges requested at once. Larger segments mean fewer requests, smaller
+     * ones spread the file more evenly over the workers. Defaults to 8 MB.
+     */
+    public Builder segmentSize(long segmentSize) {
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Set how many segments are downloaded in parallel. Helps with large files, when a single
+     * connection can't use the available bandwidth. Defaults to 1, a single request.
+     */
+    public Builder concurrency(int concurrency) {
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Set whether an interrupted download can be resumed. A failed download then leaves its
+     * partial file behind, named after the target with a ".filestack-part" suffix, and its progress
+     * in a small file with a ".filestack-download" suffix. Downloading to the same file again only
+     * fetches the segments that are missing, provided the content still has the same ETag or
+     * Last-Modified date. Defaults to false, a failed download deletes its partial file.
+     */
+    public Builder resumable(boolean resumable) {
+      this.resumable = resumable;
+      return this;
+    }
+
+    /**
+     * Builds new {@link DownloadOptions}.
+     *
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public DownloadOptions build() {
+      if (segmentSize < 1) {
+        throw new IllegalArgumentException("Segment size must be at least 1 byte");
+      }
+      if (concurrency < 1) {
+        throw new IllegalArgumentException("Concurrency must be at least 1");
+      }
+
+      DownloadOptions building = new DownloadOptions();
+
+      building.segmentSize = segmentSize;
+      building.concurrency = concurrency;
+      building.resumable = resumable;
+
+      return building;
+    }
+  }
+}
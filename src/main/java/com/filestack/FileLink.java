@@ -2,7 +2,10 @@ package org.filestack;
 
 import org.filestack.internal.BaseService;
 import org.filestack.internal.CdnService;
+import org.filestack.internal.ContentStream;
+import org.filestack.internal.Execution;
 import org.filestack.internal.Networking;
+import org.filestack.internal.RangedDownload;
 import org.filestack.internal.Response;
 import org.filestack.internal.Util;
 import org.filestack.internal.responses.ImageTagResponse;
@@ -10,23 +13,21 @@ import org.filestack.transforms.AvTransform;
 import org.filestack.transforms.ImageTransform;
 import org.filestack.transforms.ImageTransformTask;
 import org.filestack.transforms.tasks.AvTransformOptions;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
-import io.reactivex.functions.Action;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
-import okio.BufferedSink;
-import okio.BufferedSource;
-import okio.Okio;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -48,8 +49,8 @@ public class FileLink implements Serializable {
   public FileLink(Config config, String handle) {
     this.config = config;
     this.handle = handle;
-    this.cdnService = Networking.getCdnService();
-    this.baseService = Networking.getBaseService();
+    this.cdnService = Networking.getCdnService(config);
+    this.baseService = Networking.getBaseService(config);
   }
 
   FileLink(Config config, CdnService cdnService, BaseService baseService, String handle) {
@@ -73,6 +74,17 @@ public class FileLink implements Serializable {
     return response.getData();
   }
 
+  /**
+   * Returns the content of a file as a channel reading straight from the network, without
+   * buffering the file. Closing the channel releases the connection.
+   *
+   * @throws HttpException on error response from backend
+   * @throws IOException           on network failure
+   */
+  public ReadableByteChannel getContentChannel() throws IOException {
+    return getContent().source();
+  }
+
   /**
    * Saves the file using the name it was uploaded with.
    *
@@ -83,7 +95,8 @@ public class FileLink implements Serializable {
   }
 
   /**
-   * Saves the file overriding the name it was uploaded with.
+   * Saves the file overriding the name it was uploaded with. Content is only moved into the file
+   * once it's completely downloaded, a failed download leaves no partly written file behind.
    *
    * @param directory location to save the file in
    * @param filename  local name for the file
@@ -100,22 +113,41 @@ public class FileLink implements Serializable {
       filename = response.getHeaders().get("x-file-name");
     }
 
-    File file = Util.createWriteFile(directory + "/" + filename);
-
     ResponseBody body = response.getData();
     if (body == null) {
       throw new IOException();
     }
 
-    BufferedSource source = body.source();
-    BufferedSink sink = Okio.buffer(Okio.sink(file));
-
-    sink.writeAll(source);
-    sink.close();
+    String pathname = directory + "/" + filename;
+    File file;
+    try {
+      file = Util.checkWriteFile(pathname);
+    } catch (IOException e) {
+      body.close();
+      throw e;
+    }
 
+    Util.saveAtomically(body, file);
     return file;
   }
 
+  /**
+   * Saves the file, splitting it in segments downloaded in parallel or resuming an interrupted
+   * download when the options allow it.
+   *
+   * @param directory location to save the file in
+   * @param filename  local name for the file, null to use the name it was uploaded with
+   * @param options   how to split the download, {@link DownloadOptions#defaults()} for a single request
+   * @throws HttpException on error response from backend
+   * @throws IOException           on error creating file or network failure
+   */
+  public File download(String directory, @Nullable String filename, DownloadOptions options) throws IOException {
+    if (options.getConcurrency() == 1 && !options.isResumable()) {
+      return download(directory, filename);
+    }
+    return new RangedDownload(config, cdnService, handle, options).run(directory, filename);
+  }
+
   /**
    * Replace the content of an existing file handle. Requires security to be set.
    * Does not update the filename or MIME type.
@@ -125,6 +157,13 @@ public class FileLink implements Serializable {
    * @throws IOException           on error reading file or network failure
    */
   public void overwrite(String pathname) throws IOException {
+    RequestBody body = overwriteBody(pathname);
+    Response<ResponseBody> response = baseService.overwrite(handle, config.getPolicy(), config.getSignature(), body);
+
+    Util.checkResponseAndThrow(response);
+  }
+
+  private RequestBody overwriteBody(String pathname) throws IOException {
     if (!config.hasSecurity()) {
       throw new IllegalStateException("Security must be set in order to overwrite");
     }
@@ -132,11 +171,7 @@ public class FileLink implements Serializable {
     File file = Util.createReadFile(pathname);
 
     String mimeType = URLConnection.guessContentTypeFromName(file.getName());
-    RequestBody body = RequestBody.create(MediaType.parse(mimeType), file);
-
-    Response<ResponseBody> response = baseService.overwrite(handle, config.getPolicy(), config.getSignature(), body);
-
-    Util.checkResponseAndThrow(response);
+    return RequestBody.create(MediaType.parse(mimeType), file);
   }
 
   /**
@@ -146,9 +181,7 @@ public class FileLink implements Serializable {
    * @throws IOException           on network failure
    */
   public void delete() throws IOException {
-    if (!config.hasSecurity()) {
-      throw new IllegalStateException("Security must be set in order to delete");
-    }
+    checkDeleteSecurity();
 
     Response<ResponseBody> response =
         baseService.delete(handle, config.getApiKey(), config.getPolicy(), config.getSignature());
@@ -156,6 +189,12 @@ public class FileLink implements Serializable {
     Util.checkResponseAndThrow(response);
   }
 
+  private void checkDeleteSecurity() {
+    if (!config.hasSecurity()) {
+      throw new IllegalStateException("Security must be set in order to delete");
+    }
+  }
+
   /**
    * Creates an {@link ImageTransform} object for this file.
    * A transformation call isn't made directly by this method.
@@ -181,10 +220,13 @@ public class FileLink implements Serializable {
 
     ImageTransform transform = new ImageTransform(config, cdnService, handle, false);
     transform.addTask(new ImageTransformTask("tags"));
-    JsonObject json = transform.getContentJson();
-    Gson gson = new Gson();
-    ImageTagResponse response = gson.fromJson(json, ImageTagResponse.class);
-    return response.getAuto();
+    ResponseBody body = transform.getContent();
+    try {
+      ImageTagResponse response = Networking.getGson().fromJson(body.charStream(), ImageTagResponse.class);
+      return response.getAuto();
+    } finally {
+      body.close();
+    }
   }
 
   /**
@@ -230,7 +272,8 @@ public class FileLink implements Serializable {
   }
 
   // Async methods
-  // These just wrap each of the sync methods in some class of observable
+  // Single requests are enqueued on the HTTP client, without holding a thread while waiting on
+  // them, and emit on its threads. The others wrap the sync methods in some class of observable.
 
   /**
    * Asynchronously returns the content of a file.
@@ -238,12 +281,28 @@ public class FileLink implements Serializable {
    * @see #getContent()
    */
   public Single<ResponseBody> getContentAsync() {
-    return Single.fromCallable(new Callable<ResponseBody>() {
-      @Override
-      public ResponseBody call() throws Exception {
-        return getContent();
-      }
-    });
+    return cdnService.getAsync(handle, config.getPolicy(), config.getSignature())
+        .map(Util.<ResponseBody>checkedData());
+  }
+
+  /**
+   * Asynchronously streams the content of a file in chunks of up to 64 KB.
+   *
+   * @see #getContentStream(int)
+   */
+  public Flowable<ByteBuffer> getContentStream() {
+    return getContentStream(ContentStream.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Asynchronously streams the content of a file. Chunks are only read from the network as
+   * they're requested, so a slow subscriber holds back the download rather than have the file
+   * buffered in memory. The response is closed when the stream completes, fails or is cancelled.
+   *
+   * @param chunkSize most bytes in a chunk
+   */
+  public Flowable<ByteBuffer> getContentStream(int chunkSize) {
+    return ContentStream.chunks(getContentAsync(), chunkSize, Execution.blocking(config));
   }
 
   /**
@@ -261,12 +320,27 @@ public class FileLink implements Serializable {
    * @see #download(String, String)
    */
   public Single<File> downloadAsync(final String directory, @Nullable final String filename) {
-    return Single.fromCallable(new Callable<File>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<File>() {
       @Override
       public File call() throws Exception {
         return download(directory, filename);
       }
-    });
+    }));
+  }
+
+  /**
+   * Asynchronously saves the file, in parallel segments when the options allow it.
+   *
+   * @see #download(String, String, DownloadOptions)
+   */
+  public Single<File> downloadAsync(final String directory, @Nullable final String filename,
+                                    final DownloadOptions options) {
+    return Execution.blocking(config, Single.fromCallable(new Callable<File>() {
+      @Override
+      public File call() throws Exception {
+        return download(directory, filename, options);
+      }
+    }));
   }
 
   /**
@@ -276,12 +350,13 @@ public class FileLink implements Serializable {
    * @see #overwrite(String)
    */
   public Completable overwriteAsync(final String pathname) {
-    return Completable.fromAction(new Action() {
+    return Single.defer(new Callable<Single<Response<ResponseBody>>>() {
       @Override
-      public void run() throws Exception {
-        overwrite(pathname);
+      public Single<Response<ResponseBody>> call() throws Exception {
+        RequestBody body = overwriteBody(pathname);
+        return baseService.overwriteAsync(handle, config.getPolicy(), config.getSignature(), body);
       }
-    });
+    }).doOnSuccess(Util.checkAndClose()).ignoreElement();
   }
 
   /**
@@ -290,12 +365,13 @@ public class FileLink implements Serializable {
    * @see #delete()
    */
   public Completable deleteAsync() {
-    return Completable.fromAction(new Action() {
+    return Single.defer(new Callable<Single<Response<ResponseBody>>>() {
       @Override
-      public void run() throws Exception {
-        delete();
+      public Single<Response<ResponseBody>> call() {
+        checkDeleteSecurity();
+        return baseService.deleteAsync(handle, config.getApiKey(), config.getPolicy(), config.getSignature());
       }
-    });
+    }).doOnSuccess(Util.checkAndClose()).ignoreElement();
   }
 
   /**
@@ -304,12 +380,12 @@ public class FileLink implements Serializable {
    * @see #imageTags()
    */
   public Single<Map<String, Integer>> imageTagsAsync() {
-    return Single.fromCallable(new Callable<Map<String, Integer>>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<Map<String, Integer>>() {
       @Override
       public Map<String, Integer> call() throws Exception {
         return imageTags();
       }
-    });
+    }));
   }
 
   /**
@@ -318,12 +394,12 @@ public class FileLink implements Serializable {
    * @see #imageSfw()
    */
   public Single<Boolean> imageSfwAsync() {
-    return Single.fromCallable(new Callable<Boolean>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<Boolean>() {
       @Override
       public Boolean call() throws Exception {
         return imageSfw();
       }
-    });
+    }));
   }
 
   @Deprecated
@@ -0,0 +1,128 @@
+package org.filestack;
+
+import org.filestack.internal.Networking;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link UploadJournal} kept in a local file. The upload's state is written as the first line when
+ * it starts and a line is appended for every acknowledged part, so recording a part never rewrites
+ * the file. Lines are JSON objects. A last line cut short by a crash is ignored when loading, that
+ * part is simply sent again. The file is deleted once the upload completes.
+ */
+public class FileUploadJournal implements UploadJournal {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Path path;
+  private final Gson gson = Networking.getGson();
+
+  /**
+   * Constructs a journal backed by the given file. The file doesn't need to exist yet.
+   *
+   * @param path location of the journal, use a separate one for each upload
+   */
+  public FileUploadJournal(Path path) {
+    this.path = path;
+  }
+
+  @Override
+  @Nullable
+  public synchronized UploadState load() throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+
+    List<String> lines;
+    try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+      lines = new ArrayList<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    if (lines.isEmpty()) {
+      return null;
+    }
+
+    UploadState state;
+    try {
+      JsonObject header = gson.fromJson(lines.get(0), JsonObject.class);
+      state = new UploadState(
+          header.get("upload_id").getAsString(),
+          header.get("uri").getAsString(),
+          header.get("region").getAsString(),
+          header.get("intelligent").getAsBoolean(),
+          header.get("part_size").getAsInt(),
+          header.get("size").getAsLong());
+    } catch (JsonParseException | NullPointerException | IllegalStateException | UnsupportedOperationException e) {
+      // A header that didn't get written completely means no parts were sent yet either
+      if (lines.size() == 1) {
+        return null;
+      }
+      throw new IOException("Malformed upload journal " + path, e);
+    }
+
+    for (int i = 1; i < lines.size(); i++) {
+      try {
+        JsonObject entry = gson.fromJson(lines.get(i), JsonObject.class);
+        String etag = entry.has("etag") ? entry.get("etag").getAsString() : null;
+        state.addCompletedPart(entry.get("part").getAsInt(), etag);
+      } catch (JsonParseException | NullPointerException | IllegalStateException
+          | UnsupportedOperationException e) {
+        if (i != lines.size() - 1) {
+          throw new IOException("Malformed upload journal " + path, e);
+        }
+      }
+    }
+
+    return state;
+  }
+
+  @Override
+  public synchronized void started(UploadState state) throws IOException {
+    JsonObject header = new JsonObject();
+    header.addProperty("upload_id", state.getUploadId());
+    header.addProperty("uri", state.getUri());
+    header.addProperty("region", state.getRegion());
+    header.addProperty("intelligent", state.isIntelligent());
+    header.addProperty("part_size", state.getPartSize());
+    header.addProperty("size", state.getSize());
+
+    try (Writer writer = Files.newBufferedWriter(path, UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writer.write(gson.toJson(header));
+      writer.write('\n');
+    }
+  }
+
+  @Override
+  public synchronized void partCompleted(int part, @Nullable String etag) throws IOException {
+    JsonObject entry = new JsonObject();
+    entry.addProperty("part", part);
+    if (etag != null) {
+      entry.addProperty("etag", etag);
+    }
+
+    try (Writer writer = Files.newBufferedWriter(path, UTF_8, StandardOpenOption.APPEND)) {
+      writer.write(gson.toJson(entry));
+      writer.write('\n');
+    }
+  }
+
+  @Override
+  public synchronized void completed() throws IOException {
+    Files.deleteIfExists(path);
+  }
+}
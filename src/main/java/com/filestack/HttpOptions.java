@@ -0,0 +1,243 @@
+package org.filestack;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Configure the HTTP connections used to talk to Filestack and S3. Set with
+ * {@link Config.Builder#httpOptions(HttpOptions)}. Configs with equal options share one connection
+ * pool, so warm connections are reused across clients instead of paying a TLS handshake per part.
+ */
+public class HttpOptions implements Serializable {
+  static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+  static final long DEFAULT_KEEP_ALIVE = 5 * 60 * 1000;
+  static final int DEFAULT_MAX_REQUESTS = 64;
+  static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+  static final long DEFAULT_TIMEOUT = 30 * 1000;
+
+  private int maxIdleConnections;
+  private long keepAlive;
+  private int maxRequests;
+  private int maxRequestsPerHost;
+  private boolean http2;
+  private long connectTimeout;
+  private long readTimeout;
+  private long writeTimeout;
+  private long callTimeout;
+  private boolean retryOnConnectionFailure;
+
+  // Private to enforce use of the builder
+  private HttpOptions() {
+
+  }
+
+  /** Returns options with all the default values. */
+  public static HttpOptions defaults() {
+    return new Builder().build();
+  }
+
+  /** Idle connections kept open per pool. */
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  /** Milliseconds an idle connection is kept open. */
+  public long getKeepAlive() {
+    return keepAlive;
+  }
+
+  /** Requests run at once by the dispatcher, for asynchronous calls. */
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  /** Requests run at once against a single host by the dispatcher, for asynchronous calls. */
+  public int getMaxRequestsPerHost() {
+    return maxRequestsPerHost;
+  }
+
+  /** If HTTP/2 is negotiated with hosts that support it. */
+  public boolean isHttp2() {
+    return http2;
+  }
+
+  /** Milliseconds to wait for a connection, 0 for no limit. */
+  public long getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  /** Milliseconds to wait between reads, 0 for no limit. */
+  public long getReadTimeout() {
+    return readTimeout;
+  }
+
+  /** Milliseconds to wait between writes, 0 for no limit. */
+  public long getWriteTimeout() {
+    return writeTimeout;
+  }
+
+  /** Milliseconds a whole call may take, 0 for no limit. */
+  public long getCallTimeout() {
+    return callTimeout;
+  }
+
+  /** If the HTTP client silently retries requests after connection failures. */
+  public boolean isRetryOnConnectionFailure() {
+    return retryOnConnectionFailure;
+  }
+
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof HttpOptions)) {
+      return false;
+    }
+    HttpOptions that = (HttpOptions) o;
+    return maxIdleConnections == that.maxIdleConnections
+        && keepAlive == that.keepAlive
+        && maxRequests == that.maxRequests
+        && maxRequestsPerHost == that.maxRequestsPerHost
+        && http2 == that.http2
+        && connectTimeout == that.connectTimeout
+        && readTimeout == that.readTimeout
+        && writeTimeout == that.writeTimeout
+        && callTimeout == that.callTimeout
+        && retryOnConnectionFailure == that.retryOnConnectionFailure;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(new Object[] {maxIdleConnections, keepAlive, maxRequests, maxRequestsPerHost,
+        http2, connectTimeout, readTimeout, writeTimeout, callTimeout, retryOnConnectionFailure});
+  }
+
+  public static class Builder {
+    private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+    private long keepAlive = DEFAULT_KEEP_ALIVE;
+    private int maxRequests = DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+    private boolean http2 = true;
+    private long connectTimeout = DEFAULT_TIMEOUT;
+    private long readTimeout = DEFAULT_TIMEOUT;
+    private long writeTimeout = DEFAULT_TIMEOUT;
+    private long callTimeout;
+    private boolean retryOnConnectionFailure;
+
+    public Builder() {
+
+    }
+
+    /** Create a new builder using existing options. */
+    public Builder(HttpOptions existing) {
+      maxIdleConnections = existing.maxIdleConnections;
+      keepAlive = existing.keepAlive;
+      maxRequests = existing.maxRequests;
+      maxRequestsPerHost = existing.maxRequestsPerHost;
+      http2 = existing.http2;
+      connectTimeout = existing.connectTimeout;
+      readTimeout = existing.readTimeout;
+      writeTimeout = existing.writeTimeout;
+      callTimeout = existing.callTimeout;
+      retryOnConnectionFailure = existing.retryOnConnectionFailure;
+    }
+
+    /**
+     * Set the size of the connection pool. Raise it to at least the number of parts uploaded at
+     * once, so connections aren't closed and opened again between parts. Defaults to 5 idle
+     * connections kept for 5 minutes.
+     *
+     * @param maxIdleConnections idle connections kept open
+     * @param keepAlive          milliseconds an idle connection is kept open
+     */
+    public Builder connectionPool(int maxIdleConnections, long keepAlive) {
+      this.maxIdleConnections = maxIdleConnections;
+      this.keepAlive = keepAlive;
+      return this;
+    }
+
+    /**
+     * Set how many asynchronous requests run at once, in total and per host. Defaults to 64 and 5.
+     */
+    public Builder maxRequests(int maxRequests, int maxRequestsPerHost) {
+      this.maxRequests = maxRequests;
+      this.maxRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
+    /**
+     * Set if HTTP/2 is negotiated with hosts that support it, which sends concurrent requests over
+     * a single connection. Turn it off to force a connection per request. Defaults to true.
+     */
+    public Builder http2(boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    /**
+     * Set the connect, read and write timeouts in milliseconds, 0 for no limit. Defaults to 30
+     * seconds each.
+     */
+    public Builder timeouts(long connectTimeout, long readTimeout, long writeTimeout) {
+      this.connectTimeout = connectTimeout;
+      this.readTimeout = readTimeout;
+      this.writeTimeout = writeTimeout;
+      return this;
+    }
+
+    /**
+     * Set the time in milliseconds a whole call may take, from resolving the host to reading the
+     * end of the response, 0 for no limit. Defaults to no limit.
+     */
+    public Builder callTimeout(long callTimeout) {
+      this.callTimeout = callTimeout;
+      return this;
+    }
+
+    /**
+     * Set if the HTTP client silently retries requests after connection failures. Uploads retry on
+     * their own with backoff, so this is off by default.
+     */
+    public Builder retryOnConnectionFailure(boolean retryOnConnectionFailure) {
+      this.retryOnConnectionFailure = retryOnConnectionFailure;
+      return this;
+    }
+
+    /**
+     * Builds new {@link HttpOptions}.
+     *
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public HttpOptions build() {
+      if (maxIdleConnections < 0 || keepAlive <= 0) {
+        throw new IllegalArgumentException("Idle connections can't be negative and keep alive must be positive");
+      }
+      if (maxRequests < 1 || maxRequestsPerHost < 1) {
+        throw new IllegalArgumentException("Max requests must be at least 1");
+      }
+      if (connectTimeout < 0 || readTimeout < 0 || writeTimeout < 0 || callTimeout < 0) {
+        throw new IllegalArgumentException("Timeouts can't be negative");
+      }
+
+      HttpOptions building = new HttpOptions();
+
+      building.maxIdleConnections = maxIdleConnections;
+      building.keepAlive = keepAlive;
+      building.maxRequests = maxRequests;
+      building.maxRequestsPerHost = maxRequestsPerHost;
+      building.http2 = http2;
+      building.connectTimeout = connectTimeout;
+      building.readTimeout = readTimeout;
+      building.writeTimeout = writeTimeout;
+      building.callTimeout = callTimeout;
+      building.retryOnConnectionFailure = retryOnConnectionFailure;
+
+      return building;
+    }
+  }
+}
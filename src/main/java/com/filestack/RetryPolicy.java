@@ -0,0 +1,43 @@
+package org.filestack;
+
+import java.io.Serializable;
+
+/**
+ * Decides which failed requests of an upload are retried and how long to wait before retrying. See
+ * {@link DefaultRetryPolicy} for the default behavior, which can be extended to change it. The
+ * retry counts and delays of {@link UploadOptions} still apply, the policy classifies failures and
+ * reads the server's hints on when to come back.
+ *
+ * @see UploadOptions.Builder#retryPolicy(RetryPolicy)
+ */
+public interface RetryPolicy extends Serializable {
+
+  /** What to do with a response. */
+  enum Outcome {
+    /** The request succeeded. */
+    SUCCESS,
+    /** Retried after a backoff, counts against the server retries. */
+    RETRY,
+    /**
+     * The server is asking clients to slow down. Retried like {@link #RETRY}, and other requests
+     * to the same host wait out the delay as well instead of running into the same response.
+     */
+    THROTTLE,
+    /** Retrying won't help, the request fails right away. */
+    FAIL
+  }
+
+  /** Classifies a response by its status code. */
+  Outcome classify(int code);
+
+  /** Returns true if a request that failed with the exception, without a response, should be retried. */
+  boolean isRetryable(Exception e);
+
+  /**
+   * Reads a Retry-After header.
+   *
+   * @param value value of the header
+   * @return milliseconds to wait before retrying, or -1 to use the usual backoff
+   */
+  long getRetryAfter(String value);
+}
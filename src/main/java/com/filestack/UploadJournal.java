@@ -0,0 +1,46 @@
+package org.filestack;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Records the progress of a multipart upload so it can be resumed if the process dies before the
+ * upload finishes. See {@link FileUploadJournal} for an implementation backed by a local file.
+ * Implementations must be thread safe, parts are recorded from concurrent transfer workers.
+ *
+ * @see Client#resumeUploadAsync(java.nio.file.Path, boolean, StorageOptions, UploadOptions, UploadJournal)
+ */
+public interface UploadJournal {
+
+  /**
+   * Returns the state recorded by a previous run, or null if there's nothing to resume.
+   *
+   * @throws IOException on error reading the journal
+   */
+  @Nullable
+  UploadState load() throws IOException;
+
+  /**
+   * Called once the upload has been started on the backend, before any parts are sent.
+   * Replaces anything previously recorded.
+   *
+   * @throws IOException on error writing the journal, fails the upload
+   */
+  void started(UploadState state) throws IOException;
+
+  /**
+   * Called each time a part has been acknowledged by the backend.
+   *
+   * @param part number of the part, starting at 1
+   * @param etag ETag returned for the part by S3, null for intelligent ingestion uploads
+   * @throws IOException on error writing the journal, fails the upload
+   */
+  void partCompleted(int part, @Nullable String etag) throws IOException;
+
+  /**
+   * Called once the upload has completed. Nothing is left to resume after this.
+   *
+   * @throws IOException on error clearing the journal
+   */
+  void completed() throws IOException;
+}
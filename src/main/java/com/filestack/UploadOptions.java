@@ -0,0 +1,344 @@
+package org.filestack;
+
+import java.io.Serializable;
+
+/**
+ * Configure how uploads are split and transferred. Defaults are set through
+ * {@link Config.Builder#uploadOptions(UploadOptions)} and can be overridden for a single upload
+ * with the {@link Client} upload methods that accept options.
+ */
+public class UploadOptions implements Serializable {
+  /** S3 won't accept parts smaller than this, except for the last part of an upload. */
+  public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+  /** S3 won't accept an upload split into more parts than this. */
+  public static final int MAX_PARTS = 10000;
+
+  static final int DEFAULT_CONCURRENCY = 4;
+  static final int DEFAULT_PART_SIZE = 5 * 1024 * 1024;
+  static final int DEFAULT_INTELLIGENT_PART_SIZE = 8 * 1024 * 1024;
+  static final int DEFAULT_INITIAL_CHUNK_SIZE = 1024 * 1024;
+  static final int DEFAULT_MIN_CHUNK_SIZE = 32 * 1024;
+  static final int DEFAULT_NETWORK_RETRIES = 5;
+  static final int DEFAULT_SERVER_RETRIES = 5;
+  static final long DEFAULT_RETRY_BASE_DELAY = 1000;
+  static final long DEFAULT_MAX_RETRY_DELAY = 30 * 1000;
+
+  private int concurrency;
+  private int maxConcurrency;
+  private int partSize;
+  private int intelligentPartSize;
+  private int initialChunkSize;
+  private int minChunkSize;
+  private int networkRetries;
+  private int serverRetries;
+  private long retryBaseDelay;
+  private long maxRetryDelay;
+  private RetryPolicy retryPolicy;
+  private boolean presignAhead;
+  private int presignBatch;
+  private int priority;
+
+  // Private to enforce use of the builder
+  private UploadOptions() {
+
+  }
+
+  /** Returns options with all the default values. */
+  public static UploadOptions defaults() {
+    return new Builder().build();
+  }
+
+  /** Number of parts transferred in parallel. */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /** If the number of workers is adjusted during the upload instead of fixed to {@link #getConcurrency()}. */
+  public boolean isAdaptiveConcurrency() {
+    return maxConcurrency > 0;
+  }
+
+  /** Upper bound on parts transferred in parallel with adaptive concurrency, 0 when it's disabled. */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /** Size of parts in bytes for regular uploads. */
+  public int getPartSize() {
+    return partSize;
+  }
+
+  /** Size of parts in bytes for intelligent ingestion uploads. */
+  public int getIntelligentPartSize() {
+    return intelligentPartSize;
+  }
+
+  /** Size in bytes that intelligent ingestion starts splitting parts into. */
+  public int getInitialChunkSize() {
+    return initialChunkSize;
+  }
+
+  /** Size in bytes below which intelligent ingestion gives up instead of splitting chunks further. */
+  public int getMinChunkSize() {
+    return minChunkSize;
+  }
+
+  /** Times a request is retried after a network failure. */
+  public int getNetworkRetries() {
+    return networkRetries;
+  }
+
+  /** Times a request is retried after an error response from the server. */
+  public int getServerRetries() {
+    return serverRetries;
+  }
+
+  /** Upper bound in milliseconds of the delay before the first retry of a request. */
+  public long getRetryBaseDelay() {
+    return retryBaseDelay;
+  }
+
+  /** Upper bound in milliseconds that the delay between retries stops growing at. */
+  public long getMaxRetryDelay() {
+    return maxRetryDelay;
+  }
+
+  /** Decides which failed requests are retried. */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /** If the params for the next chunk are requested while the current one is being sent. */
+  public boolean isPresignAhead() {
+    return presignAhead;
+  }
+
+  /** Parts of a regular upload presigned per request, 0 when batch presigning is off. */
+  public int getPresignBatch() {
+    return presignBatch;
+  }
+
+  /** Order in which an {@link UploadScheduler} admits parts, higher goes first. */
+  public int getPriority() {
+    return priority;
+  }
+
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  public static class Builder {
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int maxConcurrency;
+    private int partSize = DEFAULT_PART_SIZE;
+    private int intelligentPartSize = DEFAULT_INTELLIGENT_PART_SIZE;
+    private int initialChunkSize = DEFAULT_INITIAL_CHUNK_SIZE;
+    private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+    private int networkRetries = DEFAULT_NETWORK_RETRIES;
+    private int serverRetries = DEFAULT_SERVER_RETRIES;
+    private long retryBaseDelay = DEFAULT_RETRY_BASE_DELAY;
+    private long maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+    private RetryPolicy retryPolicy = new DefaultRetryPolicy();
+    private boolean presignAhead = true;
+    private int presignBatch;
+    private int priority;
+
+    public Builder() {
+
+    }
+
+    /** Create a new builder using an existing options config. */
+    public Builder(UploadOptions existing) {
+      concurrency = existing.concurrency;
+      maxConcurrency = existing.maxConcurrency;
+      partSize = existing.partSize;
+      intelligentPartSize = existing.intelligentPartSize;
+      initialChunkSize = existing.initialChunkSize;
+      minChunkSize = existing.minChunkSize;
+      networkRetries = existing.networkRetries;
+      serverRetries = existing.serverRetries;
+      retryBaseDelay = existing.retryBaseDelay;
+      maxRetryDelay = existing.maxRetryDelay;
+      retryPolicy = existing.retryPolicy;
+      presignAhead = existing.presignAhead;
+      presignBatch = existing.presignBatch;
+      priority = existing.priority;
+    }
+
+    /**
+     * Set a fixed number of parts transferred in parallel. Defaults to 4. Turns off adaptive
+     * concurrency.
+     */
+    public Builder concurrency(int concurrency) {
+      this.concurrency = concurrency;
+      this.maxConcurrency = 0;
+      return this;
+    }
+
+    /**
+     * Let each upload find its own number of parallel transfers. The upload starts with a couple of
+     * workers and adds or retires them based on measured throughput and error rate, never running
+     * more than the given maximum.
+     *
+     * @param maxConcurrency upper bound on parts transferred in parallel
+     */
+    public Builder adaptiveConcurrency(int maxConcurrency) {
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /** Set the size of parts in bytes for regular uploads. Defaults to 5 MB, the S3 minimum. */
+    public Builder partSize(int partSize) {
+      this.partSize = partSize;
+      return this;
+    }
+
+    /** Set the size of parts in bytes for intelligent ingestion uploads. Defaults to 8 MB. */
+    public Builder intelligentPartSize(int intelligentPartSize) {
+      this.intelligentPartSize = intelligentPartSize;
+      return this;
+    }
+
+    /**
+     * Set the size in bytes that intelligent ingestion starts splitting parts into. Chunks are made
+     * smaller when requests fail. Defaults to 1 MB.
+     */
+    public Builder initialChunkSize(int initialChunkSize) {
+      this.initialChunkSize = initialChunkSize;
+      return this;
+    }
+
+    /**
+     * Set the size in bytes below which intelligent ingestion gives up instead of splitting chunks
+     * further. Defaults to 32 KB.
+     */
+    public Builder minChunkSize(int minChunkSize) {
+      this.minChunkSize = minChunkSize;
+      return this;
+    }
+
+    /** Set the times a request is retried after a network failure. Defaults to 5. */
+    public Builder networkRetries(int networkRetries) {
+      this.networkRetries = networkRetries;
+      return this;
+    }
+
+    /** Set the times a request is retried after an error response from the server. Defaults to 5. */
+    public Builder serverRetries(int serverRetries) {
+      this.serverRetries = serverRetries;
+      return this;
+    }
+
+    /**
+     * Set the delays between retries of a request. The delay before each retry is picked at random
+     * between zero and a ceiling that starts at the base delay and doubles with every retry, up to
+     * the max delay. Workers don't hold on to a thread while they wait. Defaults to 1 second and 30
+     * seconds.
+     *
+     * @param baseMillis ceiling in milliseconds of the delay before the first retry
+     * @param maxMillis  ceiling in milliseconds that the delay stops growing at
+     */
+    public Builder retryDelay(long baseMillis, long maxMillis) {
+      this.retryBaseDelay = baseMillis;
+      this.maxRetryDelay = maxMillis;
+      return this;
+    }
+
+    /**
+     * Set the policy that decides which failed requests are retried, and reads Retry-After headers.
+     * Defaults to {@link DefaultRetryPolicy}.
+     */
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Set if the Filestack params for the next chunk are requested while the current chunk is being
+     * sent to S3, instead of after it. Saves a round trip per chunk, at the cost of claiming parts
+     * early. Uploads from an {@link java.io.InputStream} then hold one extra part in memory per
+     * worker. Defaults to true.
+     */
+    public Builder presignAhead(boolean presignAhead) {
+      this.presignAhead = presignAhead;
+      return this;
+    }
+
+    /**
+     * Set how many parts of a regular upload are presigned with a single request to the batch
+     * endpoint, instead of one request per part. The signed URLs are shared by the upload's
+     * workers. Uploads fall back to a request per part if the endpoint isn't available. Only
+     * applies to uploads of files, a batch carries the MD5 of each of its parts and other inputs
+     * can't be read ahead to compute them. Defaults to 0, off. Has no effect on intelligent
+     * ingestion, its chunks are presigned one at a time.
+     */
+    public Builder presignBatch(int presignBatch) {
+      this.presignBatch = presignBatch;
+      return this;
+    }
+
+    /**
+     * Set the priority of the upload when the client has an {@link UploadScheduler}. While the
+     * scheduler is saturated, parts of uploads with a higher priority are admitted first. Uploads
+     * of equal priority share it evenly. Defaults to 0.
+     */
+    public Builder priority(int priority) {
+      this.priority = priority;
+      return this;
+    }
+
+    /**
+     * Builds new {@link UploadOptions}.
+     *
+     * @throws IllegalArgumentException if a value is out of range or part sizes are below the S3 minimum
+     */
+    public UploadOptions build() {
+      if (concurrency < 1) {
+        throw new IllegalArgumentException("Concurrency must be at least 1");
+      }
+      if (maxConcurrency < 0) {
+        throw new IllegalArgumentException("Max concurrency can't be negative");
+      }
+      if (partSize < MIN_PART_SIZE || intelligentPartSize < MIN_PART_SIZE) {
+        throw new IllegalArgumentException("Part sizes must be at least " + MIN_PART_SIZE + " bytes");
+      }
+      if (minChunkSize < 1 || minChunkSize > initialChunkSize) {
+        throw new IllegalArgumentException("Min chunk size must be between 1 and the initial chunk size");
+      }
+      if (initialChunkSize > intelligentPartSize) {
+        throw new IllegalArgumentException("Initial chunk size can't be larger than the intelligent part size");
+      }
+      if (networkRetries < 0 || serverRetries < 0) {
+        throw new IllegalArgumentException("Retry counts can't be negative");
+      }
+      if (retryPolicy == null) {
+        throw new IllegalArgumentException("Retry policy can't be null");
+      }
+      if (retryBaseDelay < 0 || maxRetryDelay < retryBaseDelay) {
+        throw new IllegalArgumentException("Retry delays can't be negative and the max can't be below the base");
+      }
+      if (presignBatch < 0) {
+        throw new IllegalArgumentException("Presign batch can't be negative");
+      }
+
+      UploadOptions building = new UploadOptions();
+
+      building.concurrency = concurrency;
+      building.maxConcurrency = maxConcurrency;
+      building.partSize = partSize;
+      building.intelligentPartSize = intelligentPartSize;
+      building.initialChunkSize = initialChunkSize;
+      building.minChunkSize = minChunkSize;
+      building.networkRetries = networkRetries;
+      building.serverRetries = serverRetries;
+      building.retryBaseDelay = retryBaseDelay;
+      building.maxRetryDelay = maxRetryDelay;
+      building.retryPolicy = retryPolicy;
+      building.presignAhead = presignAhead;
+      building.presignBatch = presignBatch;
+      building.priority = priority;
+
+      return building;
+    }
+  }
+}
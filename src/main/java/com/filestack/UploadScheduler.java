@@ -0,0 +1,206 @@
+package org.filestack;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the parts that uploads transfer at the same time, across every upload it's set on. Share
+ * one instance between clients with {@link Client.Builder#uploadScheduler(UploadScheduler)} to put a
+ * process wide bound on upload traffic, no matter how many uploads are started.
+ *
+ * <p>Each upload's workers are admitted one part at a time against two budgets, a number of parts
+ * and a number of bytes. When room frees up it goes to the waiting upload with the highest
+ * {@link UploadOptions#getPriority() priority}, and between uploads of the same priority to the one
+ * with the fewest parts in flight, so a large upload doesn't crowd out small ones. Uploads that
+ * arrived first win remaining ties.</p>
+ */
+public class UploadScheduler {
+  private final int maxParts;
+  private final long maxBytes;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final List<Waiter> waiters = new ArrayList<>();
+
+  private int parts;
+  private long bytes;
+  private long arrivals;
+
+  /**
+   * Constructs a new scheduler.
+   *
+   * @param maxParts parts that may be in flight at once, across all uploads
+   * @param maxBytes bytes that may be in flight at once, across all uploads; a single part larger
+   *                 than this is let through when nothing else is in flight
+   */
+  public UploadScheduler(int maxParts, long maxBytes) {
+    if (maxParts < 1) {
+      throw new IllegalArgumentException("Max parts must be at least 1");
+    }
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("Max bytes must be at least 1");
+    }
+    this.maxParts = maxParts;
+    this.maxBytes = maxBytes;
+  }
+
+  public int getMaxParts() {
+    return maxParts;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Parts currently in flight across all uploads. */
+  public int getPartsInFlight() {
+    lock.lock();
+    try {
+      return parts;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Bytes currently in flight across all uploads. */
+  public long getBytesInFlight() {
+    lock.lock();
+    try {
+      return bytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Registers an upload with the scheduler. Uploads do this themselves when they run.
+   *
+   * @param priority uploads with a higher priority are admitted first
+   */
+  public Lane lane(int priority) {
+    return new Lane(priority);
+  }
+
+  private boolean fits(long size) {
+    return parts < maxParts && (bytes + size <= maxBytes || parts == 0);
+  }
+
+  /** Returns the waiter that should be admitted next, the order described in the class docs. */
+  private Waiter next() {
+    Waiter best = null;
+    for (Waiter waiter : waiters) {
+      if (best == null || waiter.comesBefore(best)) {
+        best = waiter;
+      }
+    }
+    return best;
+  }
+
+  private void admit(Lane lane, long size) {
+    parts++;
+    bytes += size;
+    lane.inFlight++;
+  }
+
+  /** Admission for the parts of a single upload. */
+  public class Lane {
+    private final int priority;
+    private final long arrival;
+    private int inFlight;
+
+    private Lane(int priority) {
+      this.priority = priority;
+      lock.lock();
+      try {
+        this.arrival = arrivals++;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Waits until a part of the given size may be transferred.
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire(long size) throws InterruptedIOException {
+      lock.lock();
+      try {
+        if (waiters.isEmpty() && fits(size)) {
+          admit(this, size);
+          return;
+        }
+
+        Waiter waiter = new Waiter(this, size);
+        waiters.add(waiter);
+        try {
+          while (next() != waiter || !fits(size)) {
+            changed.await();
+          }
+          admit(this, size);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting to transfer a part");
+        } finally {
+          waiters.remove(waiter);
+          changed.signalAll(); // Someone else may be next now
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Admits a part only if it can go right away and no other part is waiting.
+     *
+     * @return true if admitted, the part must then be released like an acquired one
+     */
+    public boolean tryAcquire(long size) {
+      lock.lock();
+      try {
+        if (waiters.isEmpty() && fits(size)) {
+          admit(this, size);
+          return true;
+        }
+        return false;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /** Marks a part of the given size as no longer in flight. */
+    public void release(long size) {
+      lock.lock();
+      try {
+        parts--;
+        bytes -= size;
+        inFlight--;
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static class Waiter {
+    final Lane lane;
+    final long size;
+
+    Waiter(Lane lane, long size) {
+      this.lane = lane;
+      this.size = size;
+    }
+
+    boolean comesBefore(Waiter other) {
+      if (lane.priority != other.lane.priority) {
+        return lane.priority > other.lane.priority;
+      }
+      if (lane.inFlight != other.lane.inFlight) {
+        return lane.inFlight < other.lane.inFlight;
+      }
+      return lane.arrival < other.lane.arrival;
+    }
+  }
+}
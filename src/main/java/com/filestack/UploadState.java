@@ -0,0 +1,73 @@
+package org.filestack;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State of a multipart upload as recorded by an {@link UploadJournal}. Holds what's needed to
+ * continue an upload without starting it again on the backend.
+ */
+public class UploadState {
+  private final String uploadId;
+  private final String uri;
+  private final String region;
+  private final boolean intelligent;
+  private final int partSize;
+  private final long size;
+  private final Map<Integer, String> completedParts = new HashMap<>();
+
+  /**
+   * Constructs state for a started upload without any completed parts.
+   *
+   * @param uploadId    id assigned by the multipart start call
+   * @param uri         uri assigned by the multipart start call
+   * @param region      region assigned by the multipart start call
+   * @param intelligent if the upload uses intelligent ingestion
+   * @param partSize    size the input is split into
+   * @param size        total size of the input
+   */
+  public UploadState(String uploadId, String uri, String region, boolean intelligent, int partSize, long size) {
+    this.uploadId = uploadId;
+    this.uri = uri;
+    this.region = region;
+    this.intelligent = intelligent;
+    this.partSize = partSize;
+    this.size = size;
+  }
+
+  /** Marks a part as completed. The ETag is only recorded for regular uploads. */
+  public void addCompletedPart(int part, @Nullable String etag) {
+    completedParts.put(part, etag);
+  }
+
+  public String getUploadId() {
+    return uploadId;
+  }
+
+  public String getUri() {
+    return uri;
+  }
+
+  public String getRegion() {
+    return region;
+  }
+
+  public boolean isIntelligent() {
+    return intelligent;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  /** Completed part numbers mapped to their ETags. */
+  public Map<Integer, String> getCompletedParts() {
+    return Collections.unmodifiableMap(completedParts);
+  }
+}
@@ -0,0 +1,53 @@
+package org.filestack.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between attempts of a retried request. The delay grows exponentially with the number of
+ * retries up to a cap. With jitter, the actual delay is picked at random between zero and that
+ * value, so requests that failed together, like the workers of an upload during an S3 brownout,
+ * don't all come back at the same moment.
+ */
+public final class Backoff {
+  private final long baseMillis;
+  private final double multiplier;
+  private final long maxMillis;
+  private final boolean jitter;
+
+  private Backoff(long baseMillis, double multiplier, long maxMillis, boolean jitter) {
+    this.baseMillis = baseMillis;
+    this.multiplier = multiplier;
+    this.maxMillis = maxMillis;
+    this.jitter = jitter;
+  }
+
+  /**
+   * Random delay between zero and base * 2 ^ retries, capped at max.
+   *
+   * @param baseMillis delay ceiling for the first retry
+   * @param maxMillis  delay ceiling that exponential growth stops at
+   */
+  public static Backoff fullJitter(long baseMillis, long maxMillis) {
+    return new Backoff(baseMillis, 2, maxMillis, true);
+  }
+
+  /** Fixed delay of base ^ retries seconds, without cap or jitter. */
+  public static Backoff exponential(int delayBase) {
+    return new Backoff(1000, delayBase, Long.MAX_VALUE, false);
+  }
+
+  /** Longest delay in milliseconds, also the cap on delays the server asks for. */
+  public long getMaxDelay() {
+    return maxMillis;
+  }
+
+  /**
+   * Delay in milliseconds before the next attempt.
+   *
+   * @param retries number of retries made before this one
+   */
+  public long delay(int retries) {
+    double ceiling = Math.min(maxMillis, baseMillis * Math.pow(multiplier, retries));
+    return jitter ? (long) (ThreadLocalRandom.current().nextDouble() * ceiling) : (long) ceiling;
+  }
+}
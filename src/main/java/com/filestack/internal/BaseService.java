@@ -1,5 +1,6 @@
 package org.filestack.internal;
 
+import io.reactivex.Single;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -24,22 +25,37 @@ public class BaseService {
 
   public Response<ResponseBody> overwrite(String handle, String policy, String signature,
                                           RequestBody body) throws IOException {
+    return networkClient.call(overwriteRequest(handle, policy, signature, body));
+  }
+
+  public Single<Response<ResponseBody>> overwriteAsync(String handle, String policy, String signature,
+                                                       RequestBody body) {
+    return networkClient.callAsync(overwriteRequest(handle, policy, signature, body));
+  }
+
+  private Request overwriteRequest(String handle, String policy, String signature, RequestBody body) {
     HttpUrl url = this.url.newBuilder()
         .addPathSegment(handle)
         .addQueryParameter("policy", policy)
         .addQueryParameter("signature", signature)
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .post(body)
         .build();
-
-    return networkClient.call(request);
   }
 
   public Response<ResponseBody> delete(String handle, String key, String policy,
                                        String signature) throws IOException {
+    return networkClient.call(deleteRequest(handle, key, policy, signature));
+  }
+
+  public Single<Response<ResponseBody>> deleteAsync(String handle, String key, String policy, String signature) {
+    return networkClient.callAsync(deleteRequest(handle, key, policy, signature));
+  }
+
+  private Request deleteRequest(String handle, String key, String policy, String signature) {
     HttpUrl url = this.url.newBuilder()
         .addPathSegment(handle)
         .addQueryParameter("key", key)
@@ -47,11 +63,9 @@ public class BaseService {
         .addQueryParameter("signature", signature)
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .delete()
         .build();
-
-    return networkClient.call(request);
   }
 }
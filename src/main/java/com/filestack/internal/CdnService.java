@@ -2,21 +2,24 @@ package org.filestack.internal;
 
 import org.filestack.internal.responses.StoreResponse;
 import com.google.gson.JsonObject;
+import io.reactivex.Single;
 import okhttp3.HttpUrl;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 
 /** Wraps endpoints that run on cdn.filestackcontent.com. */
 public class CdnService {
+  static final HttpUrl URL = HttpUrl.get("https://cdn.filestackcontent.com/");
 
   private final HttpUrl apiUrl;
   private final NetworkClient networkClient;
 
   public CdnService(NetworkClient networkClient) {
-    this(networkClient, HttpUrl.get("https://cdn.filestackcontent.com/"));
+    this(networkClient, URL);
   }
 
   CdnService(NetworkClient networkClient, HttpUrl url) {
@@ -25,17 +28,42 @@ public class CdnService {
   }
 
   public Response<ResponseBody> get(String handle, String policy, String signature) throws IOException {
+    return networkClient.call(getRequest(handle, policy, signature));
+  }
+
+  public Single<Response<ResponseBody>> getAsync(String handle, String policy, String signature) {
+    return networkClient.callAsync(getRequest(handle, policy, signature));
+  }
+
+  /**
+   * Requests a range of a file's content.
+   *
+   * @param from    first byte of the range
+   * @param to      last byte of the range, inclusive, or -1 for the rest of the file
+   * @param ifRange ETag or Last-Modified date the content must still have for the range to be
+   *                sent, otherwise the whole file is; null to always get the range
+   */
+  public Response<ResponseBody> getRange(String handle, String policy, String signature, long from, long to,
+                                         @Nullable String ifRange) throws IOException {
+    Request.Builder builder = getRequest(handle, policy, signature).newBuilder()
+        .header("Range", "bytes=" + from + "-" + (to >= 0 ? Long.toString(to) : ""));
+    if (ifRange != null) {
+      builder.header("If-Range", ifRange);
+    }
+
+    return networkClient.call(builder.build());
+  }
+
+  private Request getRequest(String handle, String policy, String signature) {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment(handle)
         .addQueryParameter("policy", policy)
         .addQueryParameter("signature", signature)
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .build();
-
-    return networkClient.call(request);
   }
 
   public Response<ResponseBody> transform(String tasks, String handle) throws IOException {
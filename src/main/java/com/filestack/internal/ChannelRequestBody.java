@@ -0,0 +1,56 @@
+package org.filestack.internal;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link RequestBody} that streams a region of a {@link FileChannel}. Uses positional transfers so
+ * the channel can be shared by concurrent requests and the body can be written more than once.
+ * This saves holding the region in a {@code byte[]}, it still passes through memory: the sink isn't
+ * a channel of the JDK's own, so the transfer reads through a temporary buffer and writes into the
+ * sink's heap segments a few kilobytes at a time.
+ */
+class ChannelRequestBody extends RequestBody {
+  private final MediaType mediaType;
+  private final FileChannel channel;
+  private final long position;
+  private final long length;
+
+  ChannelRequestBody(@Nullable MediaType mediaType, FileChannel channel, long position, long length) {
+    this.mediaType = mediaType;
+    this.channel = channel;
+    this.position = position;
+    this.length = length;
+  }
+
+  @Nullable
+  @Override
+  public MediaType contentType() {
+    return mediaType;
+  }
+
+  @Override
+  public long contentLength() {
+    return length;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    long current = position;
+    long remaining = length;
+    while (remaining > 0) {
+      long count = channel.transferTo(current, remaining, sink);
+      if (count <= 0) {
+        throw new EOFException("File ended before region was fully sent");
+      }
+      current += count;
+      remaining -= count;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.filestack.internal;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adapts the intelligent ingestion chunk size, shared by all the transfer workers of an upload.
+ * Follows an additive increase / multiplicative decrease scheme. A network failure halves the size.
+ * After a run of successes the size doubles back up towards the best size seen so far, then grows
+ * in small steps while the measured throughput keeps improving. If a larger size turns out slower,
+ * the size drops back to the best one and growth pauses for a while.
+ *
+ * <p>State is kept in atomics so workers never block each other. Changes are applied with
+ * compare-and-set against the size a worker observed, so concurrent reports about the same size
+ * result in a single change. Throughput numbers are approximate under contention, which is fine for
+ * picking a chunk size.</p>
+ */
+class ChunkSizeController {
+  static final int GROW_AFTER = 3; // Successes needed at a size before changing it
+  static final int HOLD_AFTER_REGRESSION = 8 * GROW_AFTER; // Successes to wait after a bad probe
+  static final double REGRESSION_TOLERANCE = 0.1; // How much slower a bigger size may be
+
+  private final int minSize;
+  private final int maxSize;
+  private final int step;
+
+  private final AtomicInteger size;
+  private final AtomicInteger streak = new AtomicInteger();
+  private final AtomicLong rate = new AtomicLong(); // Moving average at current size (bytes / sec)
+  private final AtomicLong bestRate = new AtomicLong();
+  private final AtomicInteger bestSize;
+
+  ChunkSizeController(int initialSize, int minSize, int maxSize) {
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.step = Math.max(minSize, initialSize / 4);
+    this.size = new AtomicInteger(initialSize);
+    this.bestSize = new AtomicInteger(initialSize);
+  }
+
+  /** Current chunk size. Pass the returned value back when reporting the result of a request. */
+  int get() {
+    return size.get();
+  }
+
+  /**
+   * Reports a successful chunk.
+   *
+   * @param limit   chunk size returned by {@link #get()} when the request was started
+   * @param bytes   number of bytes actually sent, may be less than limit at the end of a part
+   * @param elapsed time taken to send the chunk, in nanoseconds
+   */
+  void onSuccess(int limit, int bytes, long elapsed) {
+    int current = size.get();
+    if (limit != current) {
+      return; // Stale result from before another worker changed the size
+    }
+
+    // Only full chunks say something about the throughput at this size
+    if (bytes == limit && elapsed > 0) {
+      long measured = (long) (bytes * 1e9 / elapsed);
+      long average;
+      long updated;
+      do {
+        average = rate.get();
+        updated = average == 0 ? measured : (average * 3 + measured) / 4;
+      } while (!rate.compareAndSet(average, updated));
+    }
+
+    if (streak.incrementAndGet() < GROW_AFTER) {
+      return;
+    }
+
+    long currentRate = rate.get();
+    long best = bestRate.get();
+    int bestKnown = bestSize.get();
+    int next;
+    int nextStreak = 0;
+
+    if (current > bestKnown && currentRate > 0 && currentRate < best * (1 - REGRESSION_TOLERANCE)) {
+      // Probing a bigger size made things slower, go back and stop probing for a while
+      next = bestKnown;
+      nextStreak = -HOLD_AFTER_REGRESSION;
+    } else if (current < bestKnown) {
+      // Recover quickly to a size known to work after a failure
+      next = Math.min(bestKnown, current * 2);
+    } else {
+      // Then probe slowly past it while throughput keeps improving
+      if (currentRate >= best) {
+        bestRate.compareAndSet(best, currentRate);
+        bestSize.compareAndSet(bestKnown, current);
+      }
+      next = Math.min(maxSize, current + step);
+    }
+
+    if (next != current && size.compareAndSet(current, next)) {
+      streak.set(nextStreak);
+      rate.set(0);
+    } else if (next == current) {
+      streak.set(0);
+    }
+  }
+
+  /**
+   * Reports a network failure, halving the chunk size.
+   *
+   * @param limit chunk size returned by {@link #get()} when the request was started
+   * @throws IOException when the size can't be reduced any further
+   */
+  void onFailure(int limit) throws IOException {
+    int next = limit / 2;
+    if (next < minSize) {
+      throw new IOException("Chunk size can't be reduced below " + minSize + " bytes");
+    }
+
+    // Several workers failing on the same size count as a single reduction
+    if (size.compareAndSet(limit, next)) {
+      streak.set(0);
+      rate.set(0);
+      bestRate.set(0); // Conditions changed, old measurements don't apply
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package org.filestack.internal;
+
+import org.filestack.CircuitBreakerOptions;
+import org.filestack.CircuitOpenException;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for the requests to a single host. While closed, the outcomes of the most recent
+ * requests are kept in a ring, and the breaker opens once enough of them failed. While open,
+ * requests fail fast. Once the open duration has passed the breaker is half open: a few probe
+ * requests go through, the breaker closes when all of them succeed and opens again when one fails.
+ * Requests that were sent under a previous state don't count towards the current one.
+ */
+class CircuitBreaker {
+  enum State { CLOSED, OPEN, HALF_OPEN }
+
+  private final String host;
+  private final CircuitBreakerOptions options;
+  private final boolean[] failed; // Ring of the latest outcomes while closed
+
+  private State state = State.CLOSED;
+  private long generation; // Bumped on every state change
+  private int next;
+  private int count;
+  private int failures;
+  private long openedAt;
+  private int probesSent;
+  private int probesPassed;
+
+  CircuitBreaker(String host, CircuitBreakerOptions options) {
+    this.host = host;
+    this.options = options;
+    this.failed = new boolean[options.getWindow()];
+  }
+
+  /**
+   * Called before a request is sent.
+   *
+   * @return ticket to report the outcome with
+   * @throws CircuitOpenException if the request shouldn't be sent
+   */
+  synchronized long acquire(long now) throws CircuitOpenException {
+    if (state == State.OPEN) {
+      if (now - openedAt < TimeUnit.MILLISECONDS.toNanos(options.getOpenDuration())) {
+        throw new CircuitOpenException(host);
+      }
+      change(State.HALF_OPEN);
+    }
+    if (state == State.HALF_OPEN) {
+      if (probesSent >= options.getProbes()) {
+        throw new CircuitOpenException(host);
+      }
+      probesSent++;
+    }
+    return generation;
+  }
+
+  /** Reports the outcome of a request. */
+  synchronized void onResult(long ticket, boolean success, long now) {
+    if (ticket != generation) {
+      return; // Sent under an older state
+    }
+
+    if (state == State.HALF_OPEN) {
+      if (!success) {
+        open(now);
+      } else if (++probesPassed >= options.getProbes()) {
+        change(State.CLOSED);
+      }
+      return;
+    }
+
+    if (failed[next]) {
+      failures--;
+    }
+    failed[next] = !success;
+    if (!success) {
+      failures++;
+    }
+    next = (next + 1) % failed.length;
+    count = Math.min(count + 1, failed.length);
+
+    if (count >= options.getMinRequests() && failures >= options.getFailureRate() * count) {
+      open(now);
+    }
+  }
+
+  /** Reports a request that was cancelled, it doesn't say anything about the host. */
+  synchronized void onCancel(long ticket) {
+    if (ticket == generation && state == State.HALF_OPEN) {
+      probesSent--; // Let another probe take its place
+    }
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  private void open(long now) {
+    change(State.OPEN);
+    openedAt = now;
+  }
+
+  private void change(State to) {
+    state = to;
+    generation++;
+    next = 0;
+    count = 0;
+    failures = 0;
+    probesSent = 0;
+    probesPassed = 0;
+    Arrays.fill(failed, false);
+  }
+}
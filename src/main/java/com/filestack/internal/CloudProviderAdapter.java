@@ -0,0 +1,71 @@
+package org.filestack.internal;
+
+import org.filestack.internal.responses.CloudProviderResponse;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads a cloud response straight from the body stream. The provider's result is handed to its
+ * typed adapter as it's read, and everything else but the session token is skipped, so large
+ * folder listings aren't built as a {@link com.google.gson.JsonObject} tree and walked again.
+ */
+public class CloudProviderAdapter<T> extends TypeAdapter<CloudProviderResponse<T>> {
+  private final String provider;
+  private final TypeAdapter<T> delegate;
+
+  public CloudProviderAdapter(String provider, TypeAdapter<T> delegate) {
+    this.provider = provider;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public CloudProviderResponse<T> read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    String token = null;
+    T data = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+      } else if (name.equals("token")) {
+        token = in.nextString();
+      } else if (name.equals(provider)) {
+        data = delegate.read(in);
+      } else {
+        in.skipValue();
+      }
+    }
+    in.endObject();
+
+    return new CloudProviderResponse<>(token, data);
+  }
+
+  /** Writes the response back in the shape it's read from, the result keyed by provider name. */
+  @Override
+  public void write(JsonWriter out, CloudProviderResponse<T> value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    if (value.getToken() != null) {
+      out.name("token").value(value.getToken());
+    }
+    if (value.getData() != null) {
+      out.name(provider);
+      delegate.write(out, value.getData());
+    }
+    out.endObject();
+  }
+}
@@ -1,10 +1,14 @@
 package org.filestack.internal;
 
 import org.filestack.AppInfo;
+import org.filestack.CloudResponse;
+import org.filestack.internal.responses.CloudProviderResponse;
+import org.filestack.internal.responses.CloudStoreResponse;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonWriter;
+import io.reactivex.Single;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.Request;
@@ -34,57 +38,100 @@ public class CloudService {
   }
 
   public Response<AppInfo> prefetch(JsonObject body) throws IOException {
+    return networkClient.call(prefetchRequest(body), AppInfo.class);
+  }
+
+  public Single<Response<AppInfo>> prefetchAsync(JsonObject body) throws IOException {
+    return networkClient.callAsync(prefetchRequest(body), AppInfo.class);
+  }
+
+  private Request prefetchRequest(JsonObject body) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment("prefetch")
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .post(convert(body))
         .build();
-
-    return networkClient.call(request, AppInfo.class);
   }
 
   public Response<JsonObject> list(JsonObject body) throws IOException {
+    return networkClient.call(listRequest(body), JsonObject.class);
+  }
+
+  /** Lists a folder, reading the provider's items straight from the response stream. */
+  public Response<CloudProviderResponse<CloudResponse>> listItems(JsonObject body, String provider)
+      throws IOException {
+    return networkClient.call(listRequest(body), adapter(provider, CloudResponse.class));
+  }
+
+  public Single<Response<CloudProviderResponse<CloudResponse>>> listItemsAsync(JsonObject body, String provider)
+      throws IOException {
+    return networkClient.callAsync(listRequest(body), adapter(provider, CloudResponse.class));
+  }
+
+  private Request listRequest(JsonObject body) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment("folder")
         .addPathSegment("list")
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .post(convert(body))
         .build();
-
-    return networkClient.call(request, JsonObject.class);
   }
 
   public Response<JsonObject> store(JsonObject body) throws IOException {
+    return networkClient.call(storeRequest(body), JsonObject.class);
+  }
+
+  /** Stores a cloud file, reading the provider's result straight from the response stream. */
+  public Response<CloudProviderResponse<CloudStoreResponse>> storeItem(JsonObject body, String provider)
+      throws IOException {
+    return networkClient.call(storeRequest(body), adapter(provider, CloudStoreResponse.class));
+  }
+
+  public Single<Response<CloudProviderResponse<CloudStoreResponse>>> storeItemAsync(JsonObject body,
+                                                                                   String provider)
+      throws IOException {
+    return networkClient.callAsync(storeRequest(body), adapter(provider, CloudStoreResponse.class));
+  }
+
+  private Request storeRequest(JsonObject body) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .encodedPath("/store/")
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .post(convert(body))
         .build();
-
-    return networkClient.call(request, JsonObject.class);
   }
 
   public Response<ResponseBody> logout(JsonObject body) throws IOException {
+    return networkClient.call(logoutRequest(body));
+  }
+
+  public Single<Response<ResponseBody>> logoutAsync(JsonObject body) throws IOException {
+    return networkClient.callAsync(logoutRequest(body));
+  }
+
+  private Request logoutRequest(JsonObject body) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment("auth")
         .addPathSegment("logout")
         .build();
 
-    Request request = new Request.Builder()
+    return new Request.Builder()
         .url(url)
         .post(convert(body))
         .build();
+  }
 
-    return networkClient.call(request);
+  private <T> CloudProviderAdapter<T> adapter(String provider, Class<T> resultClass) {
+    return new CloudProviderAdapter<>(provider, gson.getAdapter(resultClass));
   }
 
   private RequestBody convert(JsonObject body) throws IOException {
@@ -0,0 +1,153 @@
+package org.filestack.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many transfer workers an upload should run, based on the aggregate throughput and
+ * error rate seen over fixed windows of time. Hill climbs towards the best worker count: the count
+ * doubles while throughput keeps improving, then changes one worker at a time. A worker that made
+ * things slower is taken back, a high error rate halves the count, and after a few stable windows
+ * one more worker is tried in case conditions improved.
+ *
+ * <p>Workers report every transfer and failure, but decisions are only made once per window so the
+ * synchronization cost is negligible next to a network request.</p>
+ */
+class ConcurrencyController {
+  static final int INITIAL_WORKERS = 2;
+  static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(Upload.PROG_INTERVAL_SEC);
+  static final double GAIN_THRESHOLD = 0.1; // Relative throughput change that counts as a change
+  static final double ERROR_THRESHOLD = 0.1; // Share of failed requests that means we're overloading
+  static final int PROBE_AFTER = 5; // Stable windows before trying another worker
+
+  private final int maxWorkers;
+
+  private int target;
+  private int active;
+  private boolean slowStart = true;
+  private boolean settling; // Skip judging the window right after removing workers
+  private boolean exhausted;
+
+  private long windowStart;
+  private long windowBytes;
+  private int windowSuccesses;
+  private int windowErrors;
+  private double lastRate;
+  private int lastChange;
+  private int stableWindows;
+
+  ConcurrencyController(int maxWorkers, long now) {
+    this.maxWorkers = maxWorkers;
+    this.target = Math.min(INITIAL_WORKERS, maxWorkers);
+    this.windowStart = now;
+  }
+
+  /** Number of workers to start with, counts them as active. */
+  synchronized int start() {
+    active = target;
+    return target;
+  }
+
+  /**
+   * Reports a successful transfer.
+   *
+   * @return number of new workers that should be started, already counted as active
+   */
+  synchronized int onTransfer(int bytes, long now) {
+    windowBytes += bytes;
+    windowSuccesses++;
+
+    long elapsed = now - windowStart;
+    if (elapsed < WINDOW_NANOS) {
+      return 0;
+    }
+
+    evaluate(windowBytes * 1e9 / elapsed);
+
+    windowStart = now;
+    windowBytes = 0;
+    windowSuccesses = 0;
+    windowErrors = 0;
+
+    if (exhausted || active >= target) {
+      return 0;
+    }
+    int spawn = target - active;
+    active = target;
+    return spawn;
+  }
+
+  /** Reports a failed request. */
+  synchronized void onError() {
+    windowErrors++;
+  }
+
+  /**
+   * Called by a worker before it claims another part.
+   *
+   * @return true if the worker should stop, in which case it's no longer counted as active
+   */
+  synchronized boolean tryRetire() {
+    if (active > target) {
+      active--;
+      return true;
+    }
+    return false;
+  }
+
+  /** Gives back the slots of workers counted as active that were never started. */
+  synchronized void onNotStarted(int workers) {
+    active -= workers;
+  }
+
+  /** Called by a worker that found no parts left. No new workers are started after this. */
+  synchronized void onExhausted() {
+    exhausted = true;
+  }
+
+  synchronized boolean isExhausted() {
+    return exhausted;
+  }
+
+  /** Number of workers currently running. */
+  synchronized int getActive() {
+    return active;
+  }
+
+  synchronized int getTarget() {
+    return target;
+  }
+
+  private void evaluate(double rate) {
+    int total = windowSuccesses + windowErrors;
+    int change = 0;
+
+    if (settling) {
+      // Throughput recovering after workers were removed isn't a reason to add them back
+      settling = false;
+    } else if (total > 0 && windowErrors / (double) total > ERROR_THRESHOLD) {
+      change = -(target - Math.max(1, target / 2));
+      slowStart = false;
+    } else if (lastRate == 0 || rate > lastRate * (1 + GAIN_THRESHOLD)) {
+      change = slowStart ? target : 1;
+    } else if (rate < lastRate * (1 - GAIN_THRESHOLD) && lastChange > 0) {
+      change = -lastChange;
+      slowStart = false;
+    } else {
+      slowStart = false;
+      if (++stableWindows >= PROBE_AFTER) {
+        change = 1;
+      }
+    }
+
+    int next = Math.max(1, Math.min(maxWorkers, target + change));
+    lastChange = next - target;
+    if (lastChange != 0) {
+      stableWindows = 0;
+    }
+    if (lastChange < 0) {
+      settling = true;
+    }
+    target = next;
+    lastRate = rate;
+  }
+}
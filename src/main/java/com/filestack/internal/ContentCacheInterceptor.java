@@ -0,0 +1,205 @@
+package org.filestack.internal;
+
+import org.filestack.CacheOptions;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the content of small files in memory, in front of the HTTP client and its disk cache, so
+ * reading a hot file again doesn't wait on the network. Entries are keyed by URL, which holds the
+ * handle and security, and evicted least recently used first once their total size exceeds the
+ * limit. An entry older than the revalidation delay is checked with a conditional request, a 304
+ * serves it again without transferring the content and updates its headers. Only plain GETs of a
+ * file's content on the CDN, with an ETag or Last-Modified date, are kept. Other hosts and paths,
+ * ranges and the caller's own conditional requests pass through.
+ */
+public final class ContentCacheInterceptor implements Interceptor {
+  private final long maxSize;
+  private final long maxEntrySize;
+  private final long revalidateAfter;
+  private final HttpUrl cdnUrl;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+
+  public ContentCacheInterceptor(CacheOptions options) {
+    this(options, CdnService.URL);
+  }
+
+  ContentCacheInterceptor(CacheOptions options, HttpUrl cdnUrl) {
+    this.maxSize = options.getMaxMemorySize();
+    this.maxEntrySize = Math.min(options.getMaxMemoryEntrySize(), options.getMaxMemorySize());
+    this.revalidateAfter = options.getRevalidateAfter();
+    this.cdnUrl = cdnUrl;
+  }
+
+  private static final class Entry {
+    final Protocol protocol;
+    final int code;
+    final String message;
+    final Headers headers;
+    @Nullable final MediaType contentType;
+    final byte[] content;
+    final long validatedAt;
+
+    Entry(okhttp3.Response response, @Nullable MediaType contentType, byte[] content, long validatedAt) {
+      this(response.protocol(), response.code(), response.message(), response.headers(), contentType, content,
+          validatedAt);
+    }
+
+    private Entry(Protocol protocol, int code, String message, Headers headers, @Nullable MediaType contentType,
+                  byte[] content, long validatedAt) {
+      this.protocol = protocol;
+      this.code = code;
+      this.message = message;
+      this.headers = headers;
+      this.contentType = contentType;
+      this.content = content;
+      this.validatedAt = validatedAt;
+    }
+
+    /**
+     * Returns this entry with the headers of a 304 in place of the stored ones, as RFC 9111
+     * describes. Headers describing the content itself are kept, the 304 doesn't carry it.
+     */
+    Entry revalidated(Headers notModified, long now) {
+      Headers.Builder merged = headers.newBuilder();
+      for (String name : notModified.names()) {
+        if (!isContentHeader(name)) {
+          merged.removeAll(name);
+        }
+      }
+      for (int i = 0; i < notModified.size(); i++) {
+        if (!isContentHeader(notModified.name(i))) {
+          merged.add(notModified.name(i), notModified.value(i));
+        }
+      }
+      return new Entry(protocol, code, message, merged.build(), contentType, content, now);
+    }
+
+    private static boolean isContentHeader(String name) {
+      return name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Content-Encoding")
+          || name.equalsIgnoreCase("Content-Type");
+    }
+
+    okhttp3.Response toResponse(Request request) {
+      return new okhttp3.Response.Builder()
+          .request(request)
+          .protocol(protocol)
+          .code(code)
+          .message(message)
+          .headers(headers)
+          .body(ResponseBody.create(contentType, content))
+          .sentRequestAtMillis(validatedAt)
+          .receivedResponseAtMillis(validatedAt)
+          .build();
+    }
+  }
+
+  @Override
+  public okhttp3.Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (!request.method().equals("GET") || request.header("Range") != null
+        || request.header("If-None-Match") != null || request.header("If-Modified-Since") != null
+        || !isContent(request.url())) {
+      return chain.proceed(request);
+    }
+
+    String key = request.url().toString();
+    Entry entry = get(key);
+    long now = System.currentTimeMillis();
+    if (entry == null) {
+      return store(key, chain.proceed(request), now);
+    }
+    if (now - entry.validatedAt < revalidateAfter) {
+      return entry.toResponse(request);
+    }
+
+    Request.Builder conditional = request.newBuilder();
+    String etag = entry.headers.get("ETag");
+    if (etag != null) {
+      conditional.header("If-None-Match", etag);
+    }
+    String lastModified = entry.headers.get("Last-Modified");
+    if (lastModified != null) {
+      conditional.header("If-Modified-Since", lastModified);
+    }
+
+    okhttp3.Response response = chain.proceed(conditional.build());
+    if (response.code() == 304) {
+      response.close();
+      Entry revalidated = entry.revalidated(response.headers(), now);
+      put(key, revalidated);
+      return revalidated.toResponse(request);
+    }
+    return store(key, response, now);
+  }
+
+  /** If the URL is a file's content on the CDN, a handle right under its root. */
+  private boolean isContent(HttpUrl url) {
+    if (!url.host().equals(cdnUrl.host()) || url.port() != cdnUrl.port()) {
+      return false;
+    }
+    String root = cdnUrl.encodedPath();
+    String path = url.encodedPath();
+    return path.length() > root.length() && path.startsWith(root) && path.indexOf('/', root.length()) == -1;
+  }
+
+  private okhttp3.Response store(String key, okhttp3.Response response, long now) throws IOException {
+    if (response.code() != 200) {
+      return response;
+    }
+
+    ResponseBody body = response.body();
+    long length = body.contentLength();
+    if (length < 0 || length > maxEntrySize
+        || response.header("ETag") == null && response.header("Last-Modified") == null) {
+      remove(key); // Whatever was kept is outdated
+      return response;
+    }
+
+    MediaType contentType = body.contentType();
+    byte[] content = body.bytes();
+    Entry entry = new Entry(response, contentType, content, now);
+    put(key, entry);
+    return response.newBuilder()
+        .body(ResponseBody.create(contentType, content))
+        .build();
+  }
+
+  @Nullable
+  private synchronized Entry get(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized void put(String key, Entry entry) {
+    Entry replaced = entries.put(key, entry);
+    if (replaced != null) {
+      size -= replaced.content.length;
+    }
+    size += entry.content.length;
+
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (size > maxSize && eldest.hasNext()) {
+      size -= eldest.next().getValue().content.length;
+      eldest.remove();
+    }
+  }
+
+  private synchronized void remove(String key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      size -= removed.content.length;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package org.filestack.internal;
+
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+
+/**
+ * Streams content as chunks that are only read from the network when they're requested, so a
+ * slow consumer holds back the download instead of it piling up in memory. The body is closed
+ * when the stream completes, fails or is cancelled.
+ */
+public final class ContentStream {
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  private ContentStream() {
+
+  }
+
+  /**
+   * Streams the body a request returns. The body can arrive on any thread, like the HTTP client's
+   * dispatcher, its reads block so they're moved to the given scheduler. Requests for more chunks
+   * are issued on it too, so the reads never run on the subscriber's thread either.
+   *
+   * @param content   body of a successful response
+   * @param chunkSize most bytes in a chunk, each chunk is a new buffer the consumer can keep
+   * @param scheduler where the body is read
+   */
+  public static Flowable<ByteBuffer> chunks(Single<ResponseBody> content, final int chunkSize,
+                                            final Scheduler scheduler) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be at least 1 byte");
+    }
+
+    return content.toFlowable().concatMap(new Function<ResponseBody, Publisher<ByteBuffer>>() {
+      @Override
+      public Publisher<ByteBuffer> apply(ResponseBody body) throws Exception {
+        return chunks(body, chunkSize).subscribeOn(scheduler, true);
+      }
+    });
+  }
+
+  static Flowable<ByteBuffer> chunks(final ResponseBody body, final int chunkSize) {
+    return Flowable.generate(
+        new Callable<BufferedSource>() {
+          @Override
+          public BufferedSource call() throws Exception {
+            return body.source();
+          }
+        },
+        new BiConsumer<BufferedSource, Emitter<ByteBuffer>>() {
+          @Override
+          public void accept(BufferedSource source, Emitter<ByteBuffer> emitter) throws Exception {
+            ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+            while (chunk.hasRemaining() && source.read(chunk) != -1) {
+              // Fill the chunk, a single read stops at the end of a buffered segment
+            }
+            if (chunk.position() == 0) {
+              emitter.onComplete();
+            } else {
+              chunk.flip();
+              emitter.onNext(chunk);
+            }
+          }
+        },
+        new Consumer<BufferedSource>() {
+          @Override
+          public void accept(BufferedSource source) throws Exception {
+            body.close();
+          }
+        });
+  }
+}
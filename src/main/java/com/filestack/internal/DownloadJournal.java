@@ -0,0 +1,138 @@
+package org.filestack.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sidecar file kept next to a download in progress, so an interrupted download only fetches the
+ * segments it's missing. Written like {@link org.filestack.FileUploadJournal}: the first line
+ * records the size, segment size and validators of the content, and a line is appended for every
+ * segment that's written to disk. A last line cut short by a crash is ignored, that segment is
+ * simply fetched again. The file is deleted once the download completes.
+ */
+final class DownloadJournal {
+  static final String SUFFIX = ".filestack-download";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Path path;
+  private final Gson gson = Networking.getGson();
+
+  DownloadJournal(File file) {
+    this.path = new File(file.getPath() + SUFFIX).toPath();
+  }
+
+  /** What a download was fetched from, and the offsets of the segments already on disk. */
+  static final class State {
+    final long size;
+    final long segmentSize;
+    @Nullable final String etag;
+    @Nullable final String lastModified;
+    final Set<Long> completed = new HashSet<>();
+
+    State(long size, long segmentSize, @Nullable String etag, @Nullable String lastModified) {
+      this.size = size;
+      this.segmentSize = segmentSize;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    /** True if the content can be told apart from a later version of it. */
+    boolean isValidated() {
+      return etag != null || lastModified != null;
+    }
+
+    /** True if segments recorded with the other state can be kept for this one. */
+    boolean matches(State other) {
+      return isValidated() && size == other.size && segmentSize == other.segmentSize
+          && equal(etag, other.etag) && equal(lastModified, other.lastModified);
+    }
+
+    private static boolean equal(@Nullable String a, @Nullable String b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+
+  /** Returns the recorded state, null if there's none or it's unreadable. */
+  @Nullable
+  synchronized State load() throws IOException {
+    if (!Files.exists(path)) {
+      return null;
+    }
+
+    State state = null;
+    try (BufferedReader reader = Files.newBufferedReader(path, UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        JsonObject entry;
+        try {
+          entry = gson.fromJson(line, JsonObject.class);
+          if (state == null) {
+            state = new State(entry.get("size").getAsLong(), entry.get("segment_size").getAsLong(),
+                optString(entry, "etag"), optString(entry, "last_modified"));
+          } else {
+            state.completed.add(entry.get("offset").getAsLong());
+          }
+        } catch (JsonParseException | NullPointerException | IllegalStateException
+            | UnsupportedOperationException e) {
+          // A cut short line can only be the last one, anything else means starting over
+          return reader.readLine() == null ? state : null;
+        }
+      }
+    }
+    return state;
+  }
+
+  synchronized void started(State state) throws IOException {
+    JsonObject header = new JsonObject();
+    header.addProperty("size", state.size);
+    header.addProperty("segment_size", state.segmentSize);
+    if (state.etag != null) {
+      header.addProperty("etag", state.etag);
+    }
+    if (state.lastModified != null) {
+      header.addProperty("last_modified", state.lastModified);
+    }
+
+    try (Writer writer = Files.newBufferedWriter(path, UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writer.write(gson.toJson(header));
+      writer.write('\n');
+    }
+  }
+
+  synchronized void segmentCompleted(long offset) throws IOException {
+    JsonObject entry = new JsonObject();
+    entry.addProperty("offset", offset);
+
+    try (Writer writer = Files.newBufferedWriter(path, UTF_8, StandardOpenOption.APPEND)) {
+      writer.write(gson.toJson(entry));
+      writer.write('\n');
+    }
+  }
+
+  /** Deletes the journal, once the download completes or when it can't be resumed. */
+  synchronized void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @Nullable
+  private static String optString(JsonObject object, String name) {
+    JsonElement element = object.get(name);
+    return element == null || element.isJsonNull() ? null : element.getAsString();
+  }
+}
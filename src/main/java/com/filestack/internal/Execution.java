@@ -0,0 +1,55 @@
+package org.filestack.internal;
+
+import org.filestack.Config;
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Picks the threads that blocking work runs on, following {@link Config#isVirtualThreads()}. Code
+ * that can run on these threads guards waits and I/O with {@link java.util.concurrent.locks.Lock}s
+ * rather than monitors, a virtual thread blocked inside a synchronized block pins its carrier.
+ */
+public final class Execution {
+  private static volatile Scheduler virtual;
+
+  private Execution() {
+
+  }
+
+  /** Scheduler for blocking uploads work, the io scheduler unless virtual threads are enabled. */
+  public static Scheduler blocking(Config config) {
+    return config.isVirtualThreads() ? virtual() : Schedulers.io();
+  }
+
+  /**
+   * Moves a blocking call onto virtual threads when they're enabled. Otherwise it's returned as is
+   * and runs wherever it's subscribed.
+   */
+  public static <T> Single<T> blocking(Config config, Single<T> single) {
+    return config.isVirtualThreads() ? single.subscribeOn(virtual()) : single;
+  }
+
+  /** Same as {@link #blocking(Config, Single)}. */
+  public static Completable blocking(Config config, Completable completable) {
+    return config.isVirtualThreads() ? completable.subscribeOn(virtual()) : completable;
+  }
+
+  /** Scheduler that starts a new virtual thread for every task, shared by all clients. */
+  private static Scheduler virtual() {
+    Scheduler scheduler = virtual;
+    if (scheduler == null) {
+      synchronized (Execution.class) {
+        scheduler = virtual;
+        if (scheduler == null) {
+          scheduler = Schedulers.from(Executors.newVirtualThreadPerTaskExecutor());
+          virtual = scheduler;
+        }
+      }
+    }
+    return scheduler;
+  }
+}
@@ -0,0 +1,60 @@
+package org.filestack.internal;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Addresses parts as regions of a {@link FileChannel}. No part sized array is allocated, request
+ * bodies stream from the channel in small segments and hashing reads through a small direct buffer.
+ * Part N starts at offset (N - 1) * partSize and all reads are positional, so workers don't need to
+ * coordinate beyond claiming part numbers.
+ */
+class FileChannelSource extends UploadSource {
+  private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+  private final FileChannel channel;
+  private final AtomicInteger partIndex = new AtomicInteger(1);
+
+  FileChannelSource(FileChannel channel) throws IOException {
+    super(channel.size());
+    this.channel = channel;
+  }
+
+  @Override
+  boolean next(PartContainer container, int partSize, boolean digest) {
+    int num = partIndex.getAndIncrement();
+    long offset = (long) (num - 1) * partSize;
+    if (offset >= size) {
+      return false;
+    }
+
+    container.num = num;
+    container.offset = offset;
+    container.size = (int) Math.min(partSize, size - offset);
+    container.sent = 0;
+    return true;
+  }
+
+  @Override
+  boolean readsAnyPart() {
+    return true; // Reads are positional
+  }
+
+  @Override
+  RequestBody body(PartContainer container, int size, MediaType mediaType) {
+    return new ChannelRequestBody(mediaType, channel, container.offset + container.sent, size);
+  }
+
+  @Override
+  byte[] md5(PartContainer container, int size) throws IOException {
+    if (container.buffer == null) {
+      container.buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+    }
+    return Hash.md5(channel, container.offset + container.sent, size, container.buffer);
+  }
+}
@@ -5,15 +5,50 @@ import okio.ByteString;
 import javax.annotation.Nullable;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public final class Hash {
+  // Digests aren't thread safe, so rather than creating one per call each thread keeps its own
+  private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      return newMd5();
+    }
+  };
+
   private Hash() {
 
   }
 
+  @Nullable
+  private static MessageDigest newMd5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the calling thread's MD5 digest, reset and ready to be updated. The digest must not be
+   * used after the thread makes another call into this class.
+   */
+  @Nullable
+  static MessageDigest md5Digest() {
+    // Virtual threads are made per task, keeping a digest around for each would only waste memory
+    MessageDigest md = Thread.currentThread().isVirtual() ? newMd5() : MD5.get();
+    if (md != null) {
+      md.reset();
+    }
+    return md;
+  }
+
   /**
    * Computes MD5 hash out of provided array of bytes.
    * @param bytes - the array of bytes
@@ -31,13 +66,46 @@ public final class Hash {
    */
   @Nullable
   public static byte[] md5(byte[] bytes, int offset, int length) {
-    try {
-      MessageDigest md = MessageDigest.getInstance("MD5");
-      md.update(bytes, offset, length);
-      return md.digest();
-    } catch (NoSuchAlgorithmException e) {
+    MessageDigest md = md5Digest();
+    if (md == null) {
       return null;
     }
+    md.update(bytes, offset, length);
+    return md.digest();
+  }
+
+  /**
+   * Computes MD5 hash out of a region of a file, reading it through a small buffer instead of an array
+   * holding the whole region.
+   * @param channel - the file to read from, it's accessed with positional reads only
+   * @param position - the position in the file to start from
+   * @param length - the number of bytes to use, starting at position
+   * @param buffer - scratch buffer to read through, preferably a direct one
+   */
+  @Nullable
+  public static byte[] md5(FileChannel channel, long position, long length, ByteBuffer buffer)
+      throws IOException {
+    MessageDigest md = md5Digest();
+    if (md == null) {
+      return null;
+    }
+
+    long remaining = length;
+    while (remaining > 0) {
+      buffer.clear();
+      if (remaining < buffer.capacity()) {
+        buffer.limit((int) remaining);
+      }
+      int count = channel.read(buffer, position);
+      if (count == -1) {
+        throw new EOFException("File ended before region was fully hashed");
+      }
+      buffer.flip();
+      md.update(buffer);
+      position += count;
+      remaining -= count;
+    }
+    return md.digest();
   }
 
   /**
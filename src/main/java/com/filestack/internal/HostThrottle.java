@@ -0,0 +1,45 @@
+package org.filestack.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times before which requests to a host shouldn't be sent, because the host asked to slow down.
+ * Shared by everything that uses the same {@link NetworkClient}, so when one worker is throttled
+ * the others wait as well instead of each running into the throttle on its own.
+ */
+final class HostThrottle {
+  private final ConcurrentMap<String, Long> deadlines = new ConcurrentHashMap<>();
+
+  /** Holds back requests to the host for the given time, unless they're held back longer already. */
+  void hold(String host, long delayMillis) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    while (true) {
+      Long current = deadlines.putIfAbsent(host, deadline);
+      if (current == null) {
+        return;
+      }
+      if (current - deadline >= 0) {
+        return; // Already held back at least as long
+      }
+      if (deadlines.replace(host, current, deadline)) {
+        return;
+      }
+    }
+  }
+
+  /** Returns the milliseconds left before requests to the host can be sent, 0 if they can be sent now. */
+  long remaining(String host) {
+    Long deadline = deadlines.get(host);
+    if (deadline == null) {
+      return 0;
+    }
+    long left = deadline - System.nanoTime();
+    if (left <= 0) {
+      deadlines.remove(host, deadline);
+      return 0;
+    }
+    return TimeUnit.NANOSECONDS.toMillis(left) + 1; // Round up so the wait doesn't end just short
+  }
+}
@@ -0,0 +1,70 @@
+package org.filestack.internal;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Base for sources that have to copy each part into the container before it can be sent. When asked
+ * to, subclasses hash a part as it's copied so the bytes don't have to be read a second time.
+ * Arrays come from a {@link PartBufferPool} so memory is capped across uploads and reused between
+ * parts. Subclasses must not wait for an array while holding a lock other workers need.
+ */
+abstract class MemorySource extends UploadSource {
+  private final PartBufferPool pool;
+
+  MemorySource(long size, PartBufferPool pool) {
+    super(size);
+    this.pool = pool;
+  }
+
+  /** Makes sure the container has an array for the part size, waiting on the pool if needed. */
+  void allocate(PartContainer container, int partSize) throws IOException {
+    if (container.data != null && container.data.length == partSize) {
+      return;
+    }
+    release(container);
+    try {
+      container.data = pool.acquire(partSize);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for part memory");
+    }
+  }
+
+  @Override
+  boolean reserve(PartContainer container, int partSize) {
+    if (container.data != null && container.data.length == partSize) {
+      return true;
+    }
+    byte[] array = pool.tryAcquire(partSize);
+    if (array == null) {
+      return false;
+    }
+    release(container);
+    container.data = array;
+    return true;
+  }
+
+  @Override
+  void release(PartContainer container) {
+    pool.release(container.data);
+    container.data = null;
+    container.md5 = null;
+  }
+
+  @Override
+  RequestBody body(PartContainer container, int size, MediaType mediaType) {
+    return RequestBody.create(mediaType, container.data, container.sent, size);
+  }
+
+  @Override
+  byte[] md5(PartContainer container, int size) {
+    if (container.md5 != null && container.sent == 0 && size == container.size) {
+      return container.md5; // Hashed while it was read
+    }
+    return Hash.md5(container.data, container.sent, size);
+  }
+}
@@ -0,0 +1,81 @@
+package org.filestack.internal;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Form for requests that repeat the same fields and only differ in a few short ones, like the
+ * requests for each part of an upload. The constant fields are encoded once, with the same
+ * headers {@link UploadService} gives every field, and each request only encodes its own fields
+ * after them.
+ */
+final class MultipartForm {
+  private static final String FIELD_TYPE = String.valueOf(Util.createStringPart("").contentType());
+
+  private final String boundary;
+  private final MediaType contentType;
+  private final ByteString constant;
+
+  /**
+   * @param fields the fields every request sends, must not be empty
+   */
+  MultipartForm(Map<String, RequestBody> fields) throws IOException {
+    boundary = UUID.randomUUID().toString();
+    MultipartBody body = UploadService.buildMultipartBody(new MultipartBody.Builder(boundary), fields);
+    contentType = body.contentType();
+
+    Buffer buffer = new Buffer();
+    body.writeTo(buffer);
+    // Leave out the closing delimiter, the request's own fields go before it
+    long closing = ("--" + boundary + "--\r\n").length();
+    constant = buffer.readByteString(buffer.size() - closing);
+  }
+
+  /**
+   * Builds the form of a request.
+   *
+   * @param namesAndValues the request's own fields, alternating names and values
+   */
+  RequestBody with(String... namesAndValues) {
+    Buffer buffer = new Buffer();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      ByteString value = ByteString.encodeUtf8(namesAndValues[i + 1]);
+      buffer.writeUtf8("--").writeUtf8(boundary).writeUtf8("\r\n")
+          .writeUtf8("Content-Disposition: form-data; name=\"").writeUtf8(namesAndValues[i]).writeUtf8("\"\r\n")
+          .writeUtf8("Content-Transfer-Encoding: binary\r\n")
+          .writeUtf8("Content-Type: ").writeUtf8(FIELD_TYPE).writeUtf8("\r\n")
+          .writeUtf8("Content-Length: ").writeDecimalLong(value.size()).writeUtf8("\r\n")
+          .writeUtf8("\r\n")
+          .write(value)
+          .writeUtf8("\r\n");
+    }
+    buffer.writeUtf8("--").writeUtf8(boundary).writeUtf8("--\r\n");
+    final ByteString own = buffer.readByteString();
+
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return contentType;
+      }
+
+      @Override
+      public long contentLength() {
+        return constant.size() + own.size();
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(constant);
+        sink.write(own);
+      }
+    };
+  }
+}
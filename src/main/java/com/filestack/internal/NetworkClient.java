@@ -1,24 +1,208 @@
 package org.filestack.internal;
 
+import org.filestack.CircuitBreakerOptions;
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.ResponseBody;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NetworkClient {
 
   private final OkHttpClient client;
   private final Gson gson;
+  final HostThrottle throttle = new HostThrottle();
+  @Nullable private final CircuitBreakerOptions breakerOptions;
+  private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
 
   public NetworkClient(OkHttpClient okHttpClient, Gson gson) {
+    this(okHttpClient, gson, null);
+  }
+
+  /**
+   * Creates a client that sends requests through per host circuit breakers.
+   *
+   * @param breakerOptions settings of the breakers, or null for none
+   */
+  public NetworkClient(OkHttpClient okHttpClient, Gson gson, @Nullable CircuitBreakerOptions breakerOptions) {
     this.client = okHttpClient;
     this.gson = gson;
+    this.breakerOptions = breakerOptions;
+  }
+
+  /**
+   * Sends a request through the breaker of its host. Network failures and 5xx responses count as
+   * failures, other responses are up to the caller and count as successes.
+   */
+  private okhttp3.Response execute(Request request) throws IOException {
+    CircuitBreaker breaker = breaker(request);
+    if (breaker == null) {
+      return client.newCall(request).execute();
+    }
+
+    long ticket = breaker.acquire(System.nanoTime());
+    Call call = client.newCall(request);
+    okhttp3.Response response;
+    try {
+      response = call.execute();
+    } catch (IOException e) {
+      onFailure(breaker, ticket, call, e);
+      throw e;
+    }
+    breaker.onResult(ticket, response.code() < 500, System.nanoTime());
+    return response;
+  }
+
+  /**
+   * Enqueues a request on the dispatcher of the HTTP client, which bounds how many run at once,
+   * instead of holding a thread while waiting on it. Goes through the breaker like
+   * {@link #execute(Request)}. Disposing cancels the call. Whichever of the result and disposing
+   * comes first settles the request, a response that arrives after disposing is closed rather than
+   * dropped, since an emitter would silently drop it.
+   */
+  private Single<okhttp3.Response> enqueue(final Request request) {
+    return new Single<okhttp3.Response>() {
+      @Override
+      protected void subscribeActual(final SingleObserver<? super okhttp3.Response> observer) {
+        final AtomicBoolean settled = new AtomicBoolean();
+        final Call call = client.newCall(request);
+        observer.onSubscribe(new Disposable() {
+          @Override
+          public void dispose() {
+            if (settled.compareAndSet(false, true)) {
+              call.cancel();
+            }
+          }
+
+          @Override
+          public boolean isDisposed() {
+            return settled.get();
+          }
+        });
+
+        final CircuitBreaker breaker = breaker(request);
+        final long ticket;
+        try {
+          ticket = breaker != null ? breaker.acquire(System.nanoTime()) : 0;
+        } catch (IOException e) {
+          if (settled.compareAndSet(false, true)) {
+            observer.onError(e);
+          }
+          return;
+        }
+
+        call.enqueue(new Callback() {
+          @Override
+          public void onFailure(Call call, IOException e) {
+            if (breaker != null) {
+              NetworkClient.onFailure(breaker, ticket, call, e);
+            }
+            if (settled.compareAndSet(false, true)) {
+              observer.onError(e);
+            }
+          }
+
+          @Override
+          public void onResponse(Call call, okhttp3.Response response) {
+            if (breaker != null) {
+              breaker.onResult(ticket, response.code() < 500, System.nanoTime());
+            }
+            if (!settled.compareAndSet(false, true)) {
+              response.close(); // Disposed, nobody is going to read it
+              return;
+            }
+            observer.onSuccess(response);
+          }
+        });
+      }
+    };
+  }
+
+  @Nullable
+  private CircuitBreaker breaker(Request request) {
+    if (breakerOptions == null) {
+      return null;
+    }
+
+    String host = request.url().host();
+    CircuitBreaker breaker = breakers.get(host);
+    if (breaker == null) {
+      CircuitBreaker created = new CircuitBreaker(host, breakerOptions);
+      breaker = breakers.putIfAbsent(host, created);
+      if (breaker == null) {
+        breaker = created;
+      }
+    }
+    return breaker;
+  }
+
+  // Cancelled calls don't say anything about the host
+  private static void onFailure(CircuitBreaker breaker, long ticket, Call call, IOException e) {
+    if (call.isCanceled() || e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+      breaker.onCancel(ticket);
+    } else {
+      breaker.onResult(ticket, false, System.nanoTime());
+    }
   }
 
   <T> Response<T> call(Request request, Class<T> resultClass) throws IOException {
-    okhttp3.Response response = client.newCall(request).execute();
+    return read(execute(request), resultClass);
+  }
+
+  /** Reads a successful body with the given adapter, as it streams in. */
+  <T> Response<T> call(Request request, TypeAdapter<T> adapter) throws IOException {
+    return read(execute(request), adapter);
+  }
+
+  Response<ResponseBody> call(Request request) throws IOException {
+    return read(execute(request));
+  }
+
+  /** Asynchronous {@link #call(Request, Class)}, the body is parsed on the dispatcher's thread. */
+  <T> Single<Response<T>> callAsync(Request request, final Class<T> resultClass) {
+    return enqueue(request).map(new Function<okhttp3.Response, Response<T>>() {
+      @Override
+      public Response<T> apply(okhttp3.Response response) throws Exception {
+        return read(response, resultClass);
+      }
+    });
+  }
+
+  /** Asynchronous {@link #call(Request, TypeAdapter)}, the body is parsed on the dispatcher's thread. */
+  <T> Single<Response<T>> callAsync(Request request, final TypeAdapter<T> adapter) {
+    return enqueue(request).map(new Function<okhttp3.Response, Response<T>>() {
+      @Override
+      public Response<T> apply(okhttp3.Response response) throws Exception {
+        return read(response, adapter);
+      }
+    });
+  }
+
+  /** Asynchronous {@link #call(Request)}, the body is left for the subscriber to read. */
+  Single<Response<ResponseBody>> callAsync(Request request) {
+    return enqueue(request).map(new Function<okhttp3.Response, Response<ResponseBody>>() {
+      @Override
+      public Response<ResponseBody> apply(okhttp3.Response response) {
+        return read(response);
+      }
+    });
+  }
+
+  private <T> Response<T> read(okhttp3.Response response, Class<T> resultClass) {
     if (!response.isSuccessful()) {
       return Response.error(response);
     }
@@ -31,8 +215,20 @@ public class NetworkClient {
     }
   }
 
-  Response<ResponseBody> call(Request request) throws IOException {
-    okhttp3.Response response = client.newCall(request).execute();
+  private <T> Response<T> read(okhttp3.Response response, TypeAdapter<T> adapter) throws IOException {
+    if (!response.isSuccessful()) {
+      return Response.error(response);
+    }
+    ResponseBody body = response.body();
+    try {
+      T data = adapter.read(gson.newJsonReader(body.charStream()));
+      return Response.success(data, response);
+    } finally {
+      body.close();
+    }
+  }
+
+  private Response<ResponseBody> read(okhttp3.Response response) {
     if (response.isSuccessful()) {
       return Response.success(response.body(), response);
     }
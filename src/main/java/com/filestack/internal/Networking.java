@@ -1,10 +1,25 @@
 package org.filestack.internal;
 
+import org.filestack.AppInfo;
+import org.filestack.CircuitBreakerOptions;
+import org.filestack.CloudResponse;
+import org.filestack.Config;
+import org.filestack.HttpOptions;
+import org.filestack.internal.responses.CloudStoreResponse;
+import org.filestack.internal.responses.CompleteResponse;
+import org.filestack.internal.responses.ImageTagResponse;
+import org.filestack.internal.responses.StartResponse;
+import org.filestack.internal.responses.StoreResponse;
+import org.filestack.internal.responses.UploadResponse;
 import com.google.gson.Gson;
+import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.TlsVersion;
 
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
@@ -12,34 +27,141 @@ import javax.net.ssl.X509TrustManager;
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Holds {@link OkHttpClient} singletons.
- * We only want to instantiate these classes once per app.
+ * We only want to instantiate these classes once per app. Configs with their own HTTP settings get
+ * a client per distinct {@link HttpOptions}, or per supplied {@link OkHttpClient}, shared by all the
+ * configs that use it. Clients for options are kept for the life of the app, there are only as
+ * many as distinct options. A {@link org.filestack.Client.Builder} gives its client a dedicated
+ * {@link OkHttpClient}, and with it a stack of its own.
  */
 public final class Networking {
 
-  private static BaseService baseService;
-  private static CdnService cdnService;
-  private static UploadService uploadService;
-  private static CloudService cloudService;
+  private static final Gson gson = warmUp(new Gson());
 
-  private static final NetworkClient networkClient = new NetworkClient(buildOkHtttpClient(), new Gson());
+  private static final HttpOptions defaultOptions = HttpOptions.defaults();
+  private static final Stack defaultStack = new Stack(withHeaders(newHttpClient(defaultOptions)));
+  private static final NetworkClient networkClient = defaultStack.get(null);
+
+  // Created up front, so concurrent first calls can't each build their own
+  private static final BaseService baseService = new BaseService(networkClient);
+  private static final CdnService cdnService = new CdnService(networkClient);
+  private static final UploadService uploadService = new UploadService(networkClient);
+  private static final CloudService cloudService = new CloudService(networkClient, gson);
+
+  // Options are held strongly, equal options built anywhere keep mapping to the same client
+  private static final Map<HttpOptions, Stack> optionsStacks = new HashMap<>();
+  // Weak keys compared by identity, a supplied client's stack goes away with the last config using it
+  private static final Map<OkHttpClient, Stack> suppliedStacks = new WeakHashMap<>();
+
+  static {
+    optionsStacks.put(defaultOptions, defaultStack);
+  }
+
+  /**
+   * An HTTP client with the Filestack headers, and a network client sending through it for each
+   * circuit breaker setting. Configs that only differ in their breakers share the connection pool.
+   */
+  private static final class Stack {
+    final OkHttpClient httpClient;
+    final Map<CircuitBreakerOptions, NetworkClient> networkClients = new HashMap<>(); // Null key for none
+
+    Stack(OkHttpClient httpClient) {
+      this.httpClient = httpClient;
+    }
+
+    NetworkClient get(@Nullable CircuitBreakerOptions breakerOptions) {
+      NetworkClient client = networkClients.get(breakerOptions);
+      if (client == null) {
+        client = new NetworkClient(httpClient, gson, breakerOptions);
+        networkClients.put(breakerOptions, client);
+      }
+      return client;
+    }
+  }
+
+  /**
+   * Get the {@link Gson} instance shared by all clients. It's thread safe and caches the adapter of
+   * every type it has read, so sharing it saves building them again per call.
+   */
+  public static Gson getGson() {
+    return gson;
+  }
+
+  // Builds the reflective adapters of the response types up front, instead of on the first call
+  private static Gson warmUp(Gson gson) {
+    Class<?>[] types = {AppInfo.class, CloudResponse.class, CloudStoreResponse.class, StartResponse.class,
+        UploadResponse.class, CompleteResponse.class, StoreResponse.class, ImageTagResponse.class};
+    for (Class<?> type : types) {
+      gson.getAdapter(type);
+    }
+    return gson;
+  }
+
+  /**
+   * Build an http client following the given settings, with its own connection pool and
+   * dispatcher. Filestack headers are added once it's used through a {@link Config}.
+   */
+  public static OkHttpClient newHttpClient(HttpOptions options) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(options.getMaxRequests());
+    dispatcher.setMaxRequestsPerHost(options.getMaxRequestsPerHost());
+
+    List<Protocol> protocols = options.isHttp2()
+        ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+        : Collections.singletonList(Protocol.HTTP_1_1);
 
-  /** Get http fsClient singleton. */
-  private static OkHttpClient buildOkHtttpClient() {
     OkHttpClient.Builder builder = new OkHttpClient.Builder()
-        .addInterceptor(new HeaderInterceptor())
-        .readTimeout(30, TimeUnit.SECONDS)
-        .connectTimeout(30, TimeUnit.SECONDS)
-        .writeTimeout(30, TimeUnit.SECONDS)
-        .retryOnConnectionFailure(false);
+        .connectionPool(new ConnectionPool(options.getMaxIdleConnections(), options.getKeepAlive(),
+            TimeUnit.MILLISECONDS))
+        .dispatcher(dispatcher)
+        .protocols(protocols)
+        .readTimeout(options.getReadTimeout(), TimeUnit.MILLISECONDS)
+        .connectTimeout(options.getConnectTimeout(), TimeUnit.MILLISECONDS)
+        .writeTimeout(options.getWriteTimeout(), TimeUnit.MILLISECONDS)
+        .callTimeout(options.getCallTimeout(), TimeUnit.MILLISECONDS)
+        .retryOnConnectionFailure(options.isRetryOnConnectionFailure());
     setTls12Support(builder);
     return builder.build();
   }
 
+  // Shares the pool and dispatcher of the given client
+  private static OkHttpClient withHeaders(OkHttpClient client) {
+    return client.newBuilder().addInterceptor(new HeaderInterceptor()).build();
+  }
+
+  /**
+   * Get the network client for a config's HTTP and circuit breaker settings. Configs with equal
+   * {@link HttpOptions}, or the same supplied {@link OkHttpClient}, and equal breaker settings get
+   * the same one.
+   */
+  public static synchronized NetworkClient getNetworkClient(Config config) {
+    OkHttpClient supplied = config.getHttpClient();
+    Stack stack;
+    if (supplied != null) {
+      stack = suppliedStacks.get(supplied);
+      if (stack == null) {
+        stack = new Stack(withHeaders(supplied));
+        suppliedStacks.put(supplied, stack);
+      }
+    } else {
+      HttpOptions options = config.getHttpOptions() != null ? config.getHttpOptions() : defaultOptions;
+      stack = optionsStacks.get(options);
+      if (stack == null) {
+        stack = new Stack(withHeaders(newHttpClient(options)));
+        optionsStacks.put(options, stack);
+      }
+    }
+    return stack.get(config.getCircuitBreaker());
+  }
+
   private static void setTls12Support(OkHttpClient.Builder builder) {
     try {
       TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(
@@ -74,9 +196,6 @@ public final class Networking {
    * Get {@link BaseService} singleton.
    */
   public static BaseService getBaseService() {
-    if (baseService == null) {
-      baseService = new BaseService(networkClient);
-    }
     return baseService;
   }
 
@@ -84,20 +203,13 @@ public final class Networking {
    * Get {@link CdnService} singleton.
    */
   public static CdnService getCdnService() {
-    if (cdnService == null) {
-      cdnService = new CdnService(networkClient);
-    }
     return cdnService;
   }
 
-
   /**
    * Get {@link UploadService} singleton.
    */
   public static UploadService getUploadService() {
-    if (uploadService == null) {
-      uploadService = new UploadService(networkClient);
-    }
     return uploadService;
   }
 
@@ -105,12 +217,33 @@ public final class Networking {
    * Get {@link CloudService} singleton.
    */
   public static CloudService getCloudService() {
-    if (cloudService == null) {
-      cloudService = new CloudService(networkClient, new Gson());
-    }
     return cloudService;
   }
 
+  /** Get a {@link BaseService} that follows the config's HTTP settings. */
+  public static BaseService getBaseService(Config config) {
+    NetworkClient client = getNetworkClient(config);
+    return client == networkClient ? getBaseService() : new BaseService(client);
+  }
+
+  /** Get a {@link CdnService} that follows the config's HTTP settings. */
+  public static CdnService getCdnService(Config config) {
+    NetworkClient client = getNetworkClient(config);
+    return client == networkClient ? getCdnService() : new CdnService(client);
+  }
+
+  /** Get an {@link UploadService} that follows the config's HTTP settings. */
+  public static UploadService getUploadService(Config config) {
+    NetworkClient client = getNetworkClient(config);
+    return client == networkClient ? getUploadService() : new UploadService(client);
+  }
+
+  /** Get a {@link CloudService} that follows the config's HTTP settings. */
+  public static CloudService getCloudService(Config config) {
+    NetworkClient client = getNetworkClient(config);
+    return client == networkClient ? getCloudService() : new CloudService(client, gson);
+  }
+
   private Networking() {
 
   }
@@ -0,0 +1,206 @@
+package org.filestack.internal;
+
+import org.filestack.Config;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out the arrays that parts are copied into, with a cap on the total memory they take up.
+ * Released arrays are kept and reused for later parts of the same size instead of being left to the
+ * garbage collector, which matters because part sized arrays are large enough to be allocated
+ * outside the young generation. Idle arrays of other sizes are dropped when room is needed. Only a
+ * bounded amount is kept idle, well below the cap, so a burst of uploads doesn't leave the memory
+ * it needed pinned once it's over.
+ *
+ * <p>When the cap is reached, callers wait for arrays to be released. Waiters are served in the
+ * order they arrived, so a large request isn't starved by a stream of small ones. A single request
+ * bigger than the cap is let through once nothing else is allocated, rather than waiting forever.
+ * Callers must not wait while holding an array, or they could wait on each other; use
+ * {@link #tryAcquire(int)} for extra arrays.</p>
+ */
+public class PartBufferPool {
+  public static final long DEFAULT_LIMIT = Math.min(Runtime.getRuntime().maxMemory() / 4, 1024L * 1024 * 1024);
+  public static final long DEFAULT_MAX_IDLE = Math.min(DEFAULT_LIMIT / 4, 64L * 1024 * 1024);
+
+  private static final PartBufferPool shared = new PartBufferPool(DEFAULT_LIMIT, DEFAULT_MAX_IDLE);
+  private static final Map<List<Long>, PartBufferPool> pools = new HashMap<>(); // By limit and max idle
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final Map<Integer, ArrayDeque<byte[]>> idle = new HashMap<>();
+  private final ArrayDeque<Object> waiters = new ArrayDeque<>();
+  private final long limit;
+  private final long maxIdle;
+  private long allocated; // Bytes in arrays handed out or idle
+  private long idleBytes;
+
+  PartBufferPool(long limit) {
+    this(limit, Math.min(limit, DEFAULT_MAX_IDLE));
+  }
+
+  PartBufferPool(long limit, long maxIdle) {
+    this.limit = limit;
+    this.maxIdle = maxIdle;
+  }
+
+  /** Get the pool shared by all uploads in the JVM that use the default limits. */
+  public static PartBufferPool shared() {
+    return shared;
+  }
+
+  /**
+   * Get the pool for a config's upload memory limits. Configs with equal limits share a pool, so the
+   * cap holds across all of them.
+   */
+  public static synchronized PartBufferPool forConfig(Config config) {
+    long limit = config.getUploadMemoryLimit();
+    long maxIdle = config.getIdleUploadMemory();
+    if (limit < 1 || limit == DEFAULT_LIMIT && maxIdle == DEFAULT_MAX_IDLE) {
+      // No limit is a config serialized before it had one
+      return shared;
+    }
+
+    List<Long> key = Arrays.asList(limit, maxIdle);
+    PartBufferPool pool = pools.get(key);
+    if (pool == null) {
+      pool = new PartBufferPool(limit, maxIdle);
+      pools.put(key, pool);
+    }
+    return pool;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  /** Most bytes kept in released arrays waiting to be reused. */
+  public long getMaxIdle() {
+    return maxIdle;
+  }
+
+  /** Bytes currently held in arrays, both handed out and idle. */
+  public long getAllocated() {
+    lock.lock();
+    try {
+      return allocated;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get an array of exactly the given size, waiting until the limit allows it.
+   *
+   * @throws InterruptedException if interrupted while waiting, nothing is allocated in that case
+   */
+  byte[] acquire(int size) throws InterruptedException {
+    lock.lock();
+    try {
+      if (waiters.isEmpty()) {
+        byte[] array = take(size);
+        if (array != null) {
+          return array;
+        }
+      }
+
+      Object waiter = new Object();
+      waiters.add(waiter);
+      try {
+        while (true) {
+          changed.await();
+          if (waiters.peek() == waiter) {
+            byte[] array = take(size);
+            if (array != null) {
+              return array;
+            }
+          }
+        }
+      } finally {
+        waiters.remove(waiter);
+        changed.signalAll(); // Someone else may be at the front now
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get an array of the given size only if it's available right away and nobody is waiting.
+   *
+   * @return the array or null
+   */
+  @Nullable
+  byte[] tryAcquire(int size) {
+    lock.lock();
+    try {
+      return waiters.isEmpty() ? take(size) : null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Give an array back to the pool so it can be reused, or to the garbage collector if enough are idle. */
+  void release(@Nullable byte[] array) {
+    if (array == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (idleBytes + array.length > maxIdle) {
+        allocated -= array.length;
+      } else {
+        ArrayDeque<byte[]> arrays = idle.get(array.length);
+        if (arrays == null) {
+          arrays = new ArrayDeque<>();
+          idle.put(array.length, arrays);
+        }
+        arrays.push(array);
+        idleBytes += array.length;
+      }
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Reuses or allocates an array if the limit allows, otherwise returns null. */
+  @Nullable
+  private byte[] take(int size) {
+    ArrayDeque<byte[]> arrays = idle.get(size);
+    if (arrays != null && !arrays.isEmpty()) {
+      idleBytes -= size;
+      return arrays.pop();
+    }
+
+    trim(size);
+    if (allocated + size > limit && allocated > 0) {
+      return null;
+    }
+    allocated += size;
+    return new byte[size];
+  }
+
+  /** Drops idle arrays until there's room for the given number of bytes, or there are none left. */
+  private void trim(int room) {
+    Iterator<ArrayDeque<byte[]>> iterator = idle.values().iterator();
+    while (allocated + room > limit && iterator.hasNext()) {
+      ArrayDeque<byte[]> arrays = iterator.next();
+      while (allocated + room > limit && !arrays.isEmpty()) {
+        int length = arrays.pop().length;
+        allocated -= length;
+        idleBytes -= length;
+      }
+      if (arrays.isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+}
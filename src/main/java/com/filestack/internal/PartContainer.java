@@ -1,12 +1,13 @@
 package org.filestack.internal;
 
+import java.nio.ByteBuffer;
+
 class PartContainer {
-  byte[] data;
+  byte[] data; // Only allocated by sources that copy parts into memory
+  byte[] md5; // Digest of the whole part when it was computed while reading, otherwise null
+  ByteBuffer buffer; // Scratch space for sources that read parts in place
   int num;
+  long offset;
   int size;
   int sent;
-
-  PartContainer(int partSize) {
-    this.data = new byte[partSize];
-  }
 }
@@ -0,0 +1,188 @@
+package org.filestack.internal;
+
+import org.filestack.HttpException;
+import org.filestack.RetryPolicy;
+import org.filestack.internal.responses.BatchUploadResponse;
+import org.filestack.internal.responses.UploadResponse;
+import okhttp3.RequestBody;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Params for the parts of a regular upload, requested for a range of parts at a time and handed
+ * out to the upload's workers. Parts are split in fixed ranges, the first worker to need a part of
+ * a range requests all of it while the others wait on that request. A range is only requested
+ * again if its request failed, parts missing from it, like ones that are retried, are left to the
+ * workers' own requests. The MD5 of every part in a range is sent with it, so this only works with
+ * sources that can read any part ahead of the others. Parts acknowledged in a previous run are left
+ * out. A request that has to back off throws {@link RetryLater} to every worker waiting on it, they
+ * park like for their own requests and the next one to take a part of the range picks the request
+ * up where it left off.
+ */
+final class PartUrlBatch {
+  private final Upload upload;
+  private final UploadService uploadService;
+  private final int size;
+  private final ConcurrentMap<Integer, FutureTask<Map<Integer, UploadResponse>>> ranges =
+      new ConcurrentHashMap<>(); // By range index
+  private final ConcurrentMap<Integer, RetryNetworkFunc<BatchUploadResponse>> retrying =
+      new ConcurrentHashMap<>(); // Requests kept while they back off, by range index
+  private volatile boolean available = true;
+
+  PartUrlBatch(Upload upload, UploadService uploadService, int size) {
+    this.upload = upload;
+    this.uploadService = uploadService;
+    this.size = size;
+  }
+
+  /** False once the backend turned out not to have the batch endpoint. */
+  boolean isAvailable() {
+    return available;
+  }
+
+  /**
+   * Takes the params of a part, requesting them with the rest of its range if needed. Workers
+   * waiting on the same range don't hold any lock while the request is made.
+   *
+   * @return the params, or null if the part has to request its own
+   * @throws RetryLater if the range's request is backing off
+   * @throws Exception   if the range's request failed, the next call for it requests it again
+   */
+  @Nullable
+  UploadResponse take(int part) throws Exception {
+    final int range = (part - 1) / size;
+    FutureTask<Map<Integer, UploadResponse>> task = ranges.get(range);
+    if (task == null) {
+      if (!available) {
+        return null;
+      }
+      FutureTask<Map<Integer, UploadResponse>> created = new FutureTask<>(
+          new Callable<Map<Integer, UploadResponse>>() {
+            @Override
+            public Map<Integer, UploadResponse> call() throws Exception {
+              return request(range);
+            }
+          });
+      task = ranges.putIfAbsent(range, created);
+      if (task == null) {
+        task = created;
+        created.run();
+      }
+    }
+
+    try {
+      return task.get().remove(part);
+    } catch (ExecutionException e) {
+      ranges.remove(range, task);
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : e;
+    }
+  }
+
+  private Map<Integer, UploadResponse> request(int range) throws Exception {
+    RetryNetworkFunc<BatchUploadResponse> func = retrying.remove(range);
+    if (func == null) {
+      func = newRequest(range * size + 1);
+      if (func == null) {
+        return new ConcurrentHashMap<>(); // Every part of the range was already acknowledged
+      }
+    }
+
+    BatchUploadResponse response;
+    try {
+      response = func.call();
+    } catch (RetryLater e) {
+      retrying.put(range, func);
+      throw e;
+    } catch (HttpException e) {
+      if (!MissingEndpointFails.isMissing(e.getCode())) {
+        throw e;
+      }
+      available = false;
+      return new ConcurrentHashMap<>();
+    }
+
+    int first = range * size + 1;
+    int last = first + size - 1;
+    Map<Integer, UploadResponse> params = new ConcurrentHashMap<>();
+    for (Map.Entry<Integer, UploadResponse> entry : response.getParts().entrySet()) {
+      int part = entry.getKey();
+      if (part >= first && part <= last && !upload.skipParts.contains(part)) {
+        params.put(part, entry.getValue());
+      }
+    }
+    return params;
+  }
+
+  /** Builds the request for the parts of a range, null if none of them is left to send. */
+  @Nullable
+  private RetryNetworkFunc<BatchUploadResponse> newRequest(int first) throws Exception {
+    int partSize = upload.partSize;
+    int partCount = (int) ((upload.inputSize + partSize - 1) / partSize);
+    int last = Math.min(first + size - 1, partCount);
+
+    // Hashed in order in a container of its own, the workers' containers hold the parts they send
+    PartContainer hashed = new PartContainer();
+    StringBuilder md5s = new StringBuilder();
+    for (int num = first; num <= last; num++) {
+      if (upload.skipParts.contains(num)) {
+        continue;
+      }
+      hashed.num = num;
+      hashed.offset = (long) (num - 1) * partSize;
+      hashed.size = (int) Math.min(partSize, upload.inputSize - hashed.offset);
+      if (md5s.length() > 0) {
+        md5s.append(';');
+      }
+      md5s.append(num).append(':').append(Util.base64(upload.source.md5(hashed, hashed.size)));
+    }
+    if (md5s.length() == 0) {
+      return null;
+    }
+
+    final RequestBody form = upload.partForm().with("parts", first + "-" + last,
+        "size", Integer.toString(partSize), "md5s", md5s.toString());
+    return new RetryNetworkFunc<BatchUploadResponse>(
+        upload.options.getNetworkRetries(), upload.options.getServerRetries(), upload.backoff,
+        new MissingEndpointFails(upload.options.getRetryPolicy())) {
+      @Override
+      Response<BatchUploadResponse> work() throws Exception {
+        return uploadService.uploadBatch(form);
+      }
+    }.throttledBy(uploadService.throttle(), uploadService.host()).deferBackoff();
+  }
+
+  /** Fails right away on the responses of a backend without the batch endpoint, retrying won't change them. */
+  private static final class MissingEndpointFails implements RetryPolicy {
+    private final RetryPolicy policy;
+
+    MissingEndpointFails(RetryPolicy policy) {
+      this.policy = policy;
+    }
+
+    static boolean isMissing(int code) {
+      return code == 404 || code == 405 || code == 501;
+    }
+
+    @Override
+    public Outcome classify(int code) {
+      return isMissing(code) ? Outcome.FAIL : policy.classify(code);
+    }
+
+    @Override
+    public boolean isRetryable(Exception e) {
+      return policy.isRetryable(e);
+    }
+
+    @Override
+    public long getRetryAfter(String value) {
+      return policy.getRetryAfter(value);
+    }
+  }
+}
@@ -12,7 +12,8 @@ public class ProgMapFunc implements Function<Prog, Publisher<Progress<FileLink>>
 
   private final Upload upload; // Just needed to know the total size of the upload
   private long startTime; // Time we received start event
-  private long transBytes; // Number of bytes transferred
+  private long transBytes; // Number of bytes transferred, including parts sent before a resume
+  private boolean hasRate; // If the moving average has been seeded
   private double movAvgRate; // Rate that increasingly devalues older rates (bytes / second)
 
   ProgMapFunc(Upload upload) {
@@ -25,8 +26,9 @@ public class ProgMapFunc implements Function<Prog, Publisher<Progress<FileLink>>
     if (prog.getType() == Prog.Type.TRANSFER) {
 
       // Use the first update's rate as the initial value for moving average
-      if (transBytes == 0) {
+      if (!hasRate) {
         movAvgRate = prog.getRate();
+        hasRate = true;
       }
 
       transBytes += prog.getBytes();
@@ -39,6 +41,7 @@ public class ProgMapFunc implements Function<Prog, Publisher<Progress<FileLink>>
     // Don't send an update when we don't have a rate
     if (prog.getType() == Prog.Type.START) {
       startTime = System.currentTimeMillis() / 1000;
+      transBytes = upload.getSkippedBytes();
       return Flowable.empty();
     }
 
@@ -54,8 +57,8 @@ public class ProgMapFunc implements Function<Prog, Publisher<Progress<FileLink>>
   private Flowable<Progress<FileLink>> createUpdate(Prog prog) {
     long currentTime = System.currentTimeMillis() / 1000;
     int elapsedTime = (int) (currentTime - startTime);
-    return Flowable.just(new Progress<>(transBytes, upload.inputSize, elapsedTime, movAvgRate * Upload.CONCURRENCY,
-        prog.getFileLink()));
+    double rate = movAvgRate * upload.getConcurrency();
+    return Flowable.just(new Progress<>(transBytes, upload.inputSize, elapsedTime, rate, prog.getFileLink()));
   }
 
 }
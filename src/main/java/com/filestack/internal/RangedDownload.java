@@ -0,0 +1,254 @@
+package org.filestack.internal;
+
+import org.filestack.Config;
+import org.filestack.DownloadOptions;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Action;
+import okhttp3.Headers;
+import okhttp3.ResponseBody;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Downloads a file in segments requested with HTTP ranges, several at a time. Each segment is
+ * written straight to its offset in a partial file with positional writes, so they don't have to
+ * arrive in order. The first range request also tells the size of the file, a server that ignores ranges
+ * sends the whole file instead and it's written as a single stream. Resumable downloads record
+ * their progress in a {@link DownloadJournal} next to the partial file.
+ */
+public final class RangedDownload {
+  static final String PARTIAL_SUFFIX = ".filestack-part";
+
+  private final Config config;
+  private final CdnService cdnService;
+  private final String handle;
+  private final DownloadOptions options;
+  @Nullable private DownloadJournal journal; // Set while a download can be resumed
+
+  public RangedDownload(Config config, CdnService cdnService, String handle, DownloadOptions options) {
+    this.config = config;
+    this.cdnService = cdnService;
+    this.handle = handle;
+    this.options = options;
+  }
+
+  /**
+   * Downloads the file. Segments are written to a partial file next to the target, which replaces
+   * the target only once every segment is in and on disk. The target doesn't appear before that,
+   * and an existing file is never lost to a failed download. If the options make it resumable,
+   * and the content has an ETag or Last-Modified date to recognize it by, the partial file is kept
+   * when the download fails and completed by the next download of the same content. Otherwise it's
+   * deleted.
+   *
+   * @param directory location to save the file in
+   * @param filename  local name for the file, null to use the name it was uploaded with
+   */
+  public File run(String directory, @Nullable String filename) throws IOException {
+    long segmentSize = options.getSegmentSize();
+    Response<ResponseBody> first = cdnService.getRange(handle, config.getPolicy(), config.getSignature(),
+        0, segmentSize - 1, null);
+    if (first.code() == 416 && totalSize(first.getHeaders().get("Content-Range")) == 0) {
+      // An empty file has no range to request, a plain request gets it and its name
+      ResponseBody errorBody = first.getErrorBody();
+      if (errorBody != null) {
+        errorBody.close();
+      }
+      first = cdnService.get(handle, config.getPolicy(), config.getSignature());
+    }
+    Util.checkResponseAndThrow(first);
+
+    if (filename == null) {
+      filename = first.getHeaders().get("x-file-name");
+    }
+    String pathname = directory + "/" + filename;
+    Path partial = null;
+    File file;
+
+    boolean done = false;
+    try {
+      file = Util.checkWriteFile(pathname);
+      if (options.isResumable()) {
+        journal = new DownloadJournal(file);
+        partial = new File(file.getPath() + PARTIAL_SUFFIX).toPath();
+      } else {
+        partial = Util.createTempFile(file);
+      }
+
+      try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        long total = first.code() == 206 ? totalSize(first.getHeaders().get("Content-Range")) : -1;
+        if (total >= 0) {
+          transfer(channel, first, total);
+        } else {
+          // There's no telling how to split it, the file is fetched again from the start
+          if (journal != null) {
+            journal.delete();
+            journal = null;
+          }
+          channel.truncate(0);
+          Response<ResponseBody> whole = first;
+          if (first.code() == 206) {
+            first.getData().close(); // Size unknown
+            whole = cdnService.get(handle, config.getPolicy(), config.getSignature());
+            Util.checkResponseAndThrow(whole);
+          }
+          write(channel, whole.getData(), 0, -1); // Ranges aren't supported, this is the whole file
+        }
+        channel.force(true); // On disk before it appears under the target's name
+      }
+      Util.moveAtomically(partial, file);
+      done = true;
+    } finally {
+      first.getData().close();
+      if (done) {
+        if (journal != null) {
+          journal.delete();
+        }
+      } else if (journal == null && partial != null) {
+        Files.deleteIfExists(partial);
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Writes the first segment and fetches the others still missing, a few at a time. Drops the
+   * journal if the content can't be told apart from a later version, the download then isn't
+   * resumable.
+   */
+  private void transfer(FileChannel channel, Response<ResponseBody> first, long total) throws IOException {
+    long segmentSize = options.getSegmentSize();
+    Headers headers = first.getHeaders();
+    DownloadJournal.State state = new DownloadJournal.State(total, segmentSize, headers.get("ETag"),
+        headers.get("Last-Modified"));
+
+    Set<Long> completed = Collections.emptySet();
+    if (journal != null) {
+      DownloadJournal.State previous = journal.load();
+      if (previous != null && state.matches(previous) && channel.size() == total) {
+        completed = previous.completed;
+      } else if (!state.isValidated()) {
+        journal.delete(); // A later run couldn't tell if the content changed
+        journal = null;
+      }
+    }
+    if (completed.isEmpty()) {
+      channel.truncate(0);
+      if (journal != null) {
+        if (total > 0) {
+          // Sized up front, a resumed file that isn't is one that was changed in the meantime
+          channel.write(ByteBuffer.allocate(1), total - 1);
+        }
+        journal.started(state);
+      }
+    }
+
+    // Later segments must come from the same content as the first, or the server sends all of it
+    String ifRange = state.etag != null && !state.etag.startsWith("W/") ? state.etag : state.lastModified;
+
+    List<Completable> segments = new ArrayList<>();
+    if (completed.contains(0L)) {
+      first.getData().close();
+    } else {
+      segments.add(segment(channel, first.getData(), Math.min(segmentSize, total), journal));
+    }
+    for (long from = segmentSize; from < total; from += segmentSize) {
+      if (!completed.contains(from)) {
+        segments.add(segment(channel, from, Math.min(from + segmentSize, total), ifRange, journal));
+      }
+    }
+
+    Throwable error = Completable.merge(Flowable.fromIterable(segments), options.getConcurrency()).blockingGet();
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    }
+    if (error != null) {
+      throw new IOException(error);
+    }
+  }
+
+  /** Writes the first segment, whose response is already open. */
+  private Completable segment(final FileChannel channel, final ResponseBody body, final long to,
+                              @Nullable final DownloadJournal journal) {
+    return Execution.blocking(config, Completable.fromAction(new Action() {
+      @Override
+      public void run() throws Exception {
+        write(channel, body, 0, to);
+        record(channel, journal, 0);
+      }
+    }));
+  }
+
+  /** Requests and writes the bytes from the start of a segment up to, but not including, its end. */
+  private Completable segment(final FileChannel channel, final long from, final long to,
+                              @Nullable final String ifRange, @Nullable final DownloadJournal journal) {
+    return Completable.fromAction(new Action() {
+      @Override
+      public void run() throws Exception {
+        Response<ResponseBody> response = cdnService.getRange(handle, config.getPolicy(), config.getSignature(),
+            from, to - 1, ifRange);
+        Util.checkResponseAndThrow(response);
+        if (response.code() != 206) {
+          response.getData().close();
+          throw new IOException("Content changed during the download");
+        }
+        String range = response.getHeaders().get("Content-Range");
+        if (range == null || !range.startsWith("bytes " + from + "-")) {
+          response.getData().close();
+          throw new IOException("Server didn't return the range starting at " + from);
+        }
+        write(channel, response.getData(), from, to - from);
+        record(channel, journal, from);
+      }
+    }).subscribeOn(Execution.blocking(config));
+  }
+
+  /** Records a written segment, once its bytes are on disk. */
+  private static void record(FileChannel channel, @Nullable DownloadJournal journal, long from)
+      throws IOException {
+    if (journal != null) {
+      channel.force(false);
+      journal.segmentCompleted(from);
+    }
+  }
+
+  /**
+   * Copies a body to the file at the given position.
+   *
+   * @param length bytes expected, -1 if unknown
+   */
+  private static void write(FileChannel channel, ResponseBody body, long position, long length)
+      throws IOException {
+    long written = Util.transfer(body, channel, position);
+    if (length >= 0 && written != length) {
+      throw new IOException("Expected " + length + " bytes at " + position + " but got " + written);
+    }
+  }
+
+  /** Reads the total size from a Content-Range header, -1 if it's missing or unknown. */
+  static long totalSize(@Nullable String contentRange) {
+    if (contentRange == null) {
+      return -1;
+    }
+    int slash = contentRange.lastIndexOf('/');
+    try {
+      return slash < 0 ? -1 : Long.parseLong(contentRange.substring(slash + 1).trim());
+    } catch (NumberFormatException e) {
+      return -1; // "*" when the server doesn't know
+    }
+  }
+}
@@ -47,4 +47,9 @@ public class Response<T> {
     return rawResponse.headers();
   }
 
+  /** Host the request was sent to. */
+  public String getHost() {
+    return rawResponse.request().url().host();
+  }
+
 }
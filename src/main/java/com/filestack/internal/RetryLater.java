@@ -0,0 +1,47 @@
+package org.filestack.internal;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown instead of sleeping by a {@link RetryNetworkFunc} that defers its backoff. The caller lets
+ * go of its thread and calls the function again once the delay has passed, the function then picks
+ * up where it left off with its retry counts intact.
+ */
+final class RetryLater extends Exception {
+  /**
+   * For {@link Flowable#retryWhen(Function)}. Resubscribes to a flow once the backoff delay has
+   * passed, other errors are passed through. The delay is waited out on a timer, not a thread.
+   */
+  static final Function<Flowable<Throwable>, Publisher<Long>> RESUBSCRIBE =
+      new Function<Flowable<Throwable>, Publisher<Long>>() {
+        @Override
+        public Publisher<Long> apply(Flowable<Throwable> errors) {
+          return errors.flatMap(new Function<Throwable, Publisher<Long>>() {
+            @Override
+            public Publisher<Long> apply(Throwable throwable) {
+              if (throwable instanceof RetryLater) {
+                return Flowable.timer(((RetryLater) throwable).getDelay(), TimeUnit.MILLISECONDS);
+              }
+              return Flowable.error(throwable);
+            }
+          });
+        }
+      };
+
+  private final long delay;
+
+  RetryLater(long delay) {
+    // Thrown on every backoff, skip capturing a stack trace
+    super("Retrying in " + delay + " ms", null, false, false);
+    this.delay = delay;
+  }
+
+  /** Milliseconds to wait before calling the function again. */
+  long getDelay() {
+    return delay;
+  }
+}
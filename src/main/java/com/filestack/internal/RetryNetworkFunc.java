@@ -1,17 +1,33 @@
 package org.filestack.internal;
 
+import org.filestack.DefaultRetryPolicy;
+import org.filestack.RetryPolicy;
+
+import javax.annotation.Nullable;
+import java.io.InterruptedIOException;
+
 /**
  * Abstract class to generalize retry logic of a network call.
+ * By default the calling thread sleeps between attempts. A function set to
+ * {@link #deferBackoff() defer} its backoff throws {@link RetryLater} instead and is called again by
+ * its owner once the delay has passed, so no thread is held while waiting.
+ * Which failures are retried is up to a {@link RetryPolicy}. Throttling responses and Retry-After
+ * delays are shared through a {@link HostThrottle}, if one is set, so other requests to the same
+ * host wait as well.
  *
  * @param <T> type of object to return
  */
 public abstract class RetryNetworkFunc<T> {
   private final int maxNetworkRetries;
   private final int maxServerRetries;
-  private final int delayBase;
+  private final Backoff backoff;
+  private final RetryPolicy policy;
 
   private int networkRetries;
   private int serverRetries;
+  private boolean deferBackoff;
+  private HostThrottle throttle;
+  private String host;
 
   /**
    * Constructs an instance following the given settings.
@@ -23,9 +39,56 @@ public abstract class RetryNetworkFunc<T> {
    * @param delayBase         base for exponential backoff, delay (seconds) == base ^ retryCount
    */
   public RetryNetworkFunc(int maxNetworkRetries, int maxServerRetries, int delayBase) {
+    this(maxNetworkRetries, maxServerRetries, Backoff.exponential(delayBase));
+  }
+
+  /**
+   * Constructs an instance that waits between attempts following the given backoff.
+   *
+   * @param maxNetworkRetries times to retry after a network failure
+   * @param maxServerRetries  times to retry after an error response from the server
+   * @param backoff           delays between attempts
+   */
+  public RetryNetworkFunc(int maxNetworkRetries, int maxServerRetries, Backoff backoff) {
+    this(maxNetworkRetries, maxServerRetries, backoff, new DefaultRetryPolicy());
+  }
+
+  /**
+   * Constructs an instance that waits between attempts following the given backoff, and retries
+   * the failures the policy says to.
+   *
+   * @param maxNetworkRetries times to retry after a network failure
+   * @param maxServerRetries  times to retry after an error response from the server
+   * @param backoff           delays between attempts
+   * @param policy            decides which failures are retried
+   */
+  public RetryNetworkFunc(int maxNetworkRetries, int maxServerRetries, Backoff backoff, RetryPolicy policy) {
     this.maxNetworkRetries = maxNetworkRetries;
     this.maxServerRetries = maxServerRetries;
-    this.delayBase = delayBase;
+    this.backoff = backoff;
+    this.policy = policy;
+  }
+
+  /**
+   * Throw {@link RetryLater} instead of sleeping before a retry. {@link #call()} has to be called
+   * again after the delay to continue.
+   */
+  RetryNetworkFunc<T> deferBackoff() {
+    deferBackoff = true;
+    return this;
+  }
+
+  /**
+   * Wait for the host to stop being throttled before each attempt, and throttle it when the server
+   * asks to slow down.
+   *
+   * @param throttle shared with other requests
+   * @param host     host the requests go to, or null to take it from the first response
+   */
+  RetryNetworkFunc<T> throttledBy(HostThrottle throttle, @Nullable String host) {
+    this.throttle = throttle;
+    this.host = host;
+    return this;
   }
 
   /** Start the request. */
@@ -43,20 +106,36 @@ public abstract class RetryNetworkFunc<T> {
     Exception exception = null;
 
     while (networkRetries <= maxNetworkRetries && serverRetries <= maxServerRetries) {
+      if (throttle != null && host != null && !Util.isUnitTest()) {
+        long wait = throttle.remaining(host);
+        if (wait > 0) {
+          pause(wait);
+        }
+      }
 
       try {
         response = work();
+      } catch (RetryLater e) {
+        throw e; // A nested request backing off, not a failure of this one
       } catch (Exception e) {
+        if (!policy.isRetryable(e)) {
+          throw e;
+        }
         exception = e;
         onNetworkFail(networkRetries);
+        backOff(backoff.delay(networkRetries - 1));
         continue;
       }
 
-      if (!responseOkay(response)) {
-        onServerFail(serverRetries);
-      } else {
+      RetryPolicy.Outcome outcome = policy.classify(response.code());
+      if (outcome == RetryPolicy.Outcome.SUCCESS) {
         break;
+      } else if (outcome == RetryPolicy.Outcome.FAIL) {
+        // Immediately stop and throw exception
+        Util.throwHttpResponseException(response);
       }
+      onServerFail(serverRetries);
+      backOff(serverDelay(response, outcome));
     }
 
     if (networkRetries > maxNetworkRetries) {
@@ -78,48 +157,60 @@ public abstract class RetryNetworkFunc<T> {
 
   /** Called for network failures. */
   public void onNetworkFail(int retries) throws Exception {
-    networkRetries = sleep(retries);
+    networkRetries = retries + 1;
   }
 
   /** Called for server failures. */
   public void onServerFail(int retries) throws Exception {
-    serverRetries = sleep(retries);
+    serverRetries = retries + 1;
   }
 
   /**
-   * Causes thread to sleep for delayBase ^ count seconds.
-   *
-   * @param count power to raise delayBase to
-   * @return new count value
+   * Picks the delay after an error response. A Retry-After header replaces the usual backoff, up to
+   * the backoff's max delay so a server can't stall the upload for longer than the options allow.
+   * When the host is throttled, or told us when to come back, other requests to it wait as well.
    */
-  private int sleep(int count) {
-    if (!Util.isUnitTest()) {
-      try {
-        Thread.sleep((long) Math.pow(delayBase, count) * 1000);
-      } catch (InterruptedException e) {
-        count++;
-      }
+  private long serverDelay(Response<T> response, RetryPolicy.Outcome outcome) {
+    String header = response.getHeaders().get("Retry-After");
+    long retryAfter = header != null ? Math.min(policy.getRetryAfter(header), backoff.getMaxDelay()) : -1;
+    long delay = retryAfter >= 0 ? retryAfter : backoff.delay(serverRetries - 1);
+
+    String responseHost = response.getHost();
+    if (host == null) {
+      host = responseHost;
     }
-    return ++count;
+    if (throttle != null && (outcome == RetryPolicy.Outcome.THROTTLE || retryAfter >= 0)) {
+      throttle.hold(responseHost, delay);
+    }
+    return delay;
   }
 
   /**
-   * Checks code of {@link #work()} response.
+   * Waits out the backoff before the next attempt, if there is one.
    *
-   * @param response from {@link #work()}
-   * @return true for success response, false otherwise
-   * @throws Exception if failed response and not recoverable
+   * @param delay milliseconds to wait
+   * @throws RetryLater when backoff is deferred
    */
-  private boolean responseOkay(Response response) throws Exception {
-    int code = response.code();
-
-    // Immediately stop and throw exception for these codes
-    if (code == 206 || code == 400 || code == 403) {
-      Util.throwHttpResponseException(response);
+  private void backOff(long delay) throws Exception {
+    if (networkRetries > maxNetworkRetries || serverRetries > maxServerRetries) {
+      return; // Giving up, no point in waiting
     }
+    pause(Util.isUnitTest() ? 0 : delay);
+  }
 
-    // Possibly return false but don't throw exception so we keep retrying
-    return code == 200;
+  /** Sleeps, or throws {@link RetryLater} when backoff is deferred. */
+  private void pause(long delay) throws Exception {
+    if (deferBackoff) {
+      throw new RetryLater(delay);
+    }
+    if (delay > 0) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to retry");
+      }
+    }
   }
 
   public int getNetworkRetries() {
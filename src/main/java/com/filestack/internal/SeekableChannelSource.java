@@ -0,0 +1,67 @@
+package org.filestack.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reads parts by offset from a {@link SeekableByteChannel} that isn't a
+ * {@link java.nio.channels.FileChannel}. Part numbers are claimed without a lock, but a generic
+ * channel only has a single position, so the seek and read of each part are done while holding a
+ * lock. File channels should use {@link FileChannelSource} which needs no locking.
+ */
+class SeekableChannelSource extends MemorySource {
+  private final SeekableByteChannel channel;
+  private final AtomicInteger partIndex = new AtomicInteger(1);
+  private final ReentrantLock lock = new ReentrantLock();
+
+  SeekableChannelSource(SeekableByteChannel channel) throws IOException {
+    this(channel, PartBufferPool.shared());
+  }
+
+  SeekableChannelSource(SeekableByteChannel channel, PartBufferPool pool) throws IOException {
+    super(channel.size(), pool);
+    this.channel = channel;
+  }
+
+  @Override
+  boolean next(PartContainer container, int partSize, boolean digest) throws IOException {
+    int num = partIndex.getAndIncrement();
+    long offset = (long) (num - 1) * partSize;
+    if (offset >= size) {
+      return false;
+    }
+
+    int length = (int) Math.min(partSize, size - offset);
+    allocate(container, partSize);
+
+    ByteBuffer buffer = ByteBuffer.wrap(container.data, 0, length);
+    MessageDigest md = digest ? Hash.md5Digest() : null;
+    lock.lock();
+    try {
+      channel.position(offset);
+      while (buffer.hasRemaining()) {
+        int start = buffer.position();
+        if (channel.read(buffer) == -1) {
+          throw new EOFException("Channel ended before part " + num + " was read");
+        }
+        if (md != null) {
+          md.update(container.data, start, buffer.position() - start);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    container.num = num;
+    container.offset = offset;
+    container.size = length;
+    container.sent = 0;
+    container.md5 = md != null ? md.digest() : null;
+    return true;
+  }
+}
@@ -0,0 +1,68 @@
+package org.filestack.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reads parts sequentially from an {@link InputStream}, copying each into the container. A stream
+ * can't be read out of order so reads are synchronized across workers. Sources that support
+ * positional reads should be used instead whenever possible.
+ */
+class StreamSource extends MemorySource {
+  private final InputStream input;
+  private final ReentrantLock lock = new ReentrantLock();
+  private int partIndex;
+
+  StreamSource(InputStream input, long size) {
+    this(input, size, PartBufferPool.shared());
+  }
+
+  StreamSource(InputStream input, long size, PartBufferPool pool) {
+    super(size, pool);
+    this.input = input;
+    this.partIndex = 1;
+  }
+
+  @Override
+  boolean next(PartContainer container, int partSize, boolean digest) throws IOException {
+    // Wait for memory before taking the lock, workers holding arrays may need it to finish
+    allocate(container, partSize);
+    lock.lock();
+    try {
+      return read(container, partSize, digest);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean read(PartContainer container, int partSize, boolean digest) throws IOException {
+    MessageDigest md = digest ? Hash.md5Digest() : null;
+
+    // A single read may return less than a full part, keep going until the part is filled
+    int read = 0;
+    while (read < partSize) {
+      int count = input.read(container.data, read, partSize - read);
+      if (count == -1) {
+        break;
+      }
+      if (md != null) {
+        md.update(container.data, read, count);
+      }
+      read += count;
+    }
+
+    if (read == 0) {
+      return false;
+    }
+
+    container.num = partIndex;
+    container.offset = (long) (partIndex - 1) * partSize;
+    container.size = read;
+    container.sent = 0;
+    container.md5 = md != null ? md.digest() : null;
+    partIndex++;
+    return true;
+  }
+}
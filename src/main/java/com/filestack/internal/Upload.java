@@ -4,32 +4,45 @@ import org.filestack.Config;
 import org.filestack.FileLink;
 import org.filestack.Progress;
 import org.filestack.StorageOptions;
+import org.filestack.UploadJournal;
+import org.filestack.UploadOptions;
+import org.filestack.UploadScheduler;
+import org.filestack.UploadState;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
-import io.reactivex.schedulers.Schedulers;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.UnicastProcessor;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
+import org.reactivestreams.Publisher;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /** Holds upload state and request logic. */
 public class Upload {
   static final int PROG_INTERVAL_SEC = 2;
-  static final int DELAY_BASE = 2;
-  static final int INTELLIGENT_PART_SIZE = 8 * 1024 * 1024;
-  static final int REGULAR_PART_SIZE = 5 * 1024 * 1024;
-  static final int CONCURRENCY = 4;
-
-  private static final int INITIAL_CHUNK_SIZE = 1024 * 1024;
-  private static final int MIN_CHUNK_SIZE = 32 * 1024;
 
   private final UploadService uploadService;
   // These should never change once set
   final Config clientConf;
-  final int inputSize;
+  final long inputSize;
+  final UploadSource source;
+  final UploadOptions options;
+  final ChunkSizeController chunkSizer;
+  final Backoff backoff;
+  @Nullable final PartUrlBatch partUrls; // Null unless batch presigning is on
 
   // Not bothering with getters / setters for these
   boolean intel;
@@ -37,28 +50,60 @@ public class Upload {
   Map<String, RequestBody> baseParams;
   MediaType mediaType;
   String[] etags;
+  volatile ConcurrencyController concurrency;
+  volatile String s3Host; // Where parts go, known once the first params come back
+  UploadJournal journal;
+  UploadScheduler.Lane lane;
+  UploadState resumeState;
+  Set<Integer> skipParts = Collections.emptySet();
+  private volatile MultipartForm partForm;
 
-  // Access to these is controlled and synchronized
-  private final InputStream input;
-  private int chunkSize;
-  private int partIndex;
-
-  /** Constructs new instance. */
+  /** Constructs new instance that reads parts from a stream into memory. Uses the config's upload options. */
   public Upload(Config clientConf, UploadService uploadService, InputStream input, int inputSize, boolean intel,
                 StorageOptions storeOpts) {
+    this(clientConf, uploadService, input, inputSize, intel, storeOpts, clientConf.getUploadOptions());
+  }
+
+  /** Constructs new instance that reads parts from a stream into memory. */
+  public Upload(Config clientConf, UploadService uploadService, InputStream input, long inputSize, boolean intel,
+                StorageOptions storeOpts, UploadOptions options) {
+    this(clientConf, uploadService, new StreamSource(input, inputSize, PartBufferPool.forConfig(clientConf)), intel,
+        storeOpts, options);
+  }
+
+  /**
+   * Constructs new instance that reads parts by offset from a channel. A {@link FileChannel} is read
+   * with positional reads and its parts are streamed from the file instead of each being copied into
+   * an array. The channel isn't closed by the upload.
+   */
+  public Upload(Config clientConf, UploadService uploadService, SeekableByteChannel channel, boolean intel,
+                StorageOptions storeOpts, UploadOptions options) throws IOException {
+    this(clientConf, uploadService, channel instanceof FileChannel
+        ? new FileChannelSource((FileChannel) channel)
+        : new SeekableChannelSource(channel, PartBufferPool.forConfig(clientConf)), intel, storeOpts, options);
+  }
+
+  Upload(Config clientConf, UploadService uploadService, UploadSource source, boolean intel,
+         StorageOptions storeOpts, UploadOptions options) {
     this.clientConf = clientConf;
     this.uploadService = uploadService;
-    this.input = input;
-    this.inputSize = inputSize;
+    this.source = source;
+    this.inputSize = source.size;
+    this.options = options;
     this.intel = intel;
-    this.partIndex = 1;
-    this.chunkSize = INITIAL_CHUNK_SIZE;
+    this.chunkSizer = new ChunkSizeController(options.getInitialChunkSize(), options.getMinChunkSize(),
+        options.getIntelligentPartSize());
+    this.backoff = Backoff.fullJitter(options.getRetryBaseDelay(), options.getMaxRetryDelay());
+    // Batches carry the MD5 of each part, they have to be hashed before the workers get to them
+    this.partUrls = options.getPresignBatch() > 1 && !intel && source.readsAnyPart()
+        ? new PartUrlBatch(this, uploadService, options.getPresignBatch())
+        : null;
 
     // Setup base parameters that get used repeatedly for backend requests
     baseParams = new HashMap<>();
     baseParams.putAll(storeOpts.getAsPartMap());
     baseParams.put("apikey", Util.createStringPart(clientConf.getApiKey()));
-    baseParams.put("size", Util.createStringPart(Integer.toString(inputSize)));
+    baseParams.put("size", Util.createStringPart(Long.toString(inputSize)));
 
     // Key name is a misnomer, all uploads are multipart, this is for "intelligent" uploads
     // If the account doesn't support it, we'll fall back to regular multipart after start request
@@ -80,39 +125,163 @@ public class Upload {
   }
 
   /**
-   * Read from the input stream into a simple container object. Synchronized to support concurrent
-   * worker threads. The part object should be created once and reused to keep mem usage and garbage
-   * collection down.
+   * Form of the requests made for each part, with the base params encoded once. Built on first use,
+   * by then the start call has filled in the base params.
    */
-  synchronized int readInput(PartContainer container) throws IOException {
-    container.num = partIndex;
-    container.size = input.read(container.data);
-    container.sent = 0;
-    partIndex++;
-    return container.size;
+  MultipartForm partForm() throws IOException {
+    MultipartForm form = partForm;
+    if (form == null) {
+      synchronized (this) {
+        form = partForm;
+        if (form == null) {
+          Map<String, RequestBody> constant = new HashMap<>(baseParams);
+          constant.remove("size"); // Sent per request, the total for commits and the chunk's size otherwise
+          form = new MultipartForm(constant);
+          partForm = form;
+        }
+      }
+    }
+    return form;
   }
 
-  // TODO Synchronizing access to chunk size like this may incur too much of a performance penalty
+  /**
+   * Record this upload's progress in a journal. Must be called before {@link #run()}.
+   *
+   * @param journal     records the upload as it's started and parts are acknowledged
+   * @param resumeState state from a previous run to continue from, null to start a new upload
+   */
+  public void setJournal(UploadJournal journal, @Nullable UploadState resumeState) {
+    this.journal = journal;
+    this.resumeState = resumeState;
+  }
+
+  /**
+   * Admit this upload's parts through a scheduler shared with other uploads, instead of only being
+   * limited by its own concurrency. Must be called before {@link #run()}.
+   */
+  public void setScheduler(UploadScheduler scheduler) {
+    this.lane = scheduler.lane(options.getPriority());
+  }
+
+  /** Records an acknowledged part in the journal, if there is one. */
+  void onPartComplete(int num) throws IOException {
+    if (journal != null) {
+      journal.partCompleted(num, intel ? null : etags[num - 1]);
+    }
+  }
 
   /**
-   * Upload calls in different workers/threads may fail and reduce the intelligent chunk size. We
-   * want to synchronize reading this variable so the value is always accurate across threads.
+   * Advance a simple container object to the next part of the input, passing over parts completed
+   * before the upload was resumed. Safe to call from concurrent
+   * worker threads, the source only synchronizes when its input can't be read by offset. The part
+   * object should be created once and reused to keep mem usage and garbage collection down.
    */
-  synchronized int getChunkSize() {
-    return chunkSize;
+  int readInput(PartContainer container) throws IOException {
+    do {
+      // Intelligent ingestion hashes each chunk on its own, the digest of the whole part isn't needed
+      if (!source.next(container, partSize, !intel)) {
+        return -1;
+      }
+    } while (skipParts.contains(container.num)); // Already acknowledged in a previous run
+    return container.size;
   }
 
   /**
-   * Upload calls in different workers/threads may fail and reduce the intelligent chunk size. We
-   * want to synchronize updating this variable so the value is always accurate across threads.
+   * Checks that splitting the input with the given part size doesn't exceed the S3 part limit.
    *
-   * @throws IOException when too many requests have failed and the chunk size can't be reduced
+   * @throws IllegalArgumentException if too many parts would be needed
+   */
+  private void checkPartCount(int partSize) {
+    long numParts = (inputSize + partSize - 1) / partSize;
+    if (numParts > UploadOptions.MAX_PARTS) {
+      throw new IllegalArgumentException(String.format(Locale.ROOT,
+          "Upload of %d bytes needs %d parts of %d bytes, the limit is %d parts",
+          inputSize, numParts, partSize, UploadOptions.MAX_PARTS));
+    }
+  }
+
+  /** Creates a worker that uploads parts until the input is used up or it's told to retire. */
+  private Flowable<Prog> transferWorker(@Nullable ConcurrencyController controller) {
+    UploadTransferFunc func = new UploadTransferFunc(uploadService, this, controller);
+    return Flowable
+        .create(func, BackpressureStrategy.BUFFER)
+        .subscribeOn(Execution.blocking(clientConf));
+  }
+
+  /**
+   * Merges a changing set of workers. Workers are added as the controller sees throughput improve
+   * and retire themselves between parts when it wants fewer. Once a worker finds the input used up
+   * no more workers are added, and the flow completes when the remaining ones finish.
    */
-  synchronized void reduceChunkSize() throws IOException {
-    chunkSize /= 2;
-    if (chunkSize < MIN_CHUNK_SIZE) {
-      throw new IOException();
+  private Flowable<Prog> adaptiveTransferFlow() {
+    final ConcurrencyController controller = new ConcurrencyController(options.getMaxConcurrency(),
+        System.nanoTime());
+    concurrency = controller;
+
+    final WorkerSet workers = new WorkerSet(controller);
+    workers.add(controller.start());
+
+    return Flowable.merge(workers.processor).doOnNext(new Consumer<Prog>() {
+      @Override
+      public void accept(Prog prog) {
+        workers.add(controller.onTransfer(prog.getBytes(), System.nanoTime()));
+      }
+    });
+  }
+
+  /**
+   * Workers of an adaptive upload. Adding workers and closing the set are done under one lock, so
+   * a worker counted by the controller is either started or given back, never dropped by a set
+   * that already completed.
+   */
+  private final class WorkerSet {
+    final FlowableProcessor<Flowable<Prog>> processor = UnicastProcessor.<Flowable<Prog>>create().toSerialized();
+    private final ConcurrencyController controller;
+    private final Action onWorkerComplete = new Action() {
+      @Override
+      public void run() {
+        close();
+      }
+    };
+    private boolean closed;
+
+    WorkerSet(ConcurrencyController controller) {
+      this.controller = controller;
     }
+
+    /** Starts workers already counted as active by the controller. */
+    synchronized void add(int count) {
+      if (closed) {
+        controller.onNotStarted(count);
+        return;
+      }
+      for (int i = count; i > 0; i--) {
+        processor.onNext(transferWorker(controller).doOnComplete(onWorkerComplete));
+      }
+    }
+
+    // Called as each worker completes, the set is done once the input is used up
+    private synchronized void close() {
+      if (!closed && controller.isExhausted()) {
+        closed = true;
+        processor.onComplete();
+      }
+    }
+  }
+
+  /** Number of bytes in parts that were completed before the upload was resumed. */
+  long getSkippedBytes() {
+    long bytes = 0;
+    for (int num : skipParts) {
+      bytes += Math.min(partSize, inputSize - (long) (num - 1) * partSize);
+    }
+    return bytes;
+  }
+
+  /** Number of workers currently transferring parts. */
+  int getConcurrency() {
+    ConcurrencyController controller = concurrency;
+    return controller != null ? controller.getActive() : options.getConcurrency();
   }
 
   /**
@@ -121,24 +290,44 @@ public class Upload {
    * @return {@link Flowable} that emits {@link Progress} events
    */
   public Flowable<Progress<FileLink>> run() {
+    // Intelligent uploads fall back to regular ones if the account doesn't support them
+    // So the regular part size has to fit the S3 limits even when intelligent ingestion is requested
+    try {
+      checkPartCount(options.getPartSize());
+      if (intel) {
+        checkPartCount(options.getIntelligentPartSize());
+      }
+    } catch (IllegalArgumentException e) {
+      return Flowable.error(e);
+    }
+
+    // Requests back off by throwing, the step is run again once the delay has passed
     Flowable<Prog> startFlow = Flowable
         .fromCallable(new UploadStartFunc(uploadService, this))
-        .subscribeOn(Schedulers.io());
-
-    // Create multiple func instances to each upload a subrange of parts from the file
-    // Merge each of these together into one so they're executed concurrently
-    Flowable<Prog> transferFlow = Flowable.empty();
-    for (int i = 0; i < CONCURRENCY; i++) {
-      UploadTransferFunc func = new UploadTransferFunc(uploadService, this);
-      Flowable<Prog> temp = Flowable
-          .create(func, BackpressureStrategy.BUFFER)
-          .subscribeOn(Schedulers.io());
-      transferFlow = transferFlow.mergeWith(temp);
+        .subscribeOn(Execution.blocking(clientConf))
+        .retryWhen(RetryLater.RESUBSCRIBE);
+
+    Flowable<Prog> transferFlow;
+    if (options.isAdaptiveConcurrency()) {
+      transferFlow = Flowable.defer(new Callable<Publisher<Prog>>() {
+        @Override
+        public Publisher<Prog> call() {
+          return adaptiveTransferFlow();
+        }
+      });
+    } else {
+      // Create multiple func instances to each upload a subrange of parts from the file
+      // Merge each of these together into one so they're executed concurrently
+      transferFlow = Flowable.empty();
+      for (int i = 0; i < options.getConcurrency(); i++) {
+        transferFlow = transferFlow.mergeWith(transferWorker(null));
+      }
     }
 
     Flowable<Prog> completeFlow = Flowable
         .fromCallable(new UploadCompleteFunc(uploadService, this))
-        .subscribeOn(Schedulers.io());
+        .subscribeOn(Execution.blocking(clientConf))
+        .retryWhen(RetryLater.RESUBSCRIBE);
 
     return startFlow
         .concatWith(transferFlow)
@@ -19,6 +19,7 @@ import java.util.concurrent.Callable;
 public class UploadCompleteFunc implements Callable<Prog> {
   private final UploadService uploadService;
   private final Upload upload;
+  private RetryNetworkFunc<CompleteResponse> func; // Kept while the request backs off
   
   UploadCompleteFunc(UploadService uploadService, Upload upload) {
     this.uploadService = uploadService;
@@ -28,28 +29,34 @@ public class UploadCompleteFunc implements Callable<Prog> {
   @Override
   public Prog call() throws Exception {
     final long startTime = System.currentTimeMillis() / 1000;
-    final Map<String, RequestBody> params = new HashMap<>(upload.baseParams);
 
-    if (!upload.intel) {
-      StringBuilder builder = new StringBuilder();
-      for (int i = 0; i < upload.etags.length; i++) {
-        builder.append(i + 1).append(':').append(upload.etags[i]).append(';');
+    if (func == null) {
+      final Map<String, RequestBody> params = new HashMap<>(upload.baseParams);
+
+      if (!upload.intel) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < upload.etags.length; i++) {
+          builder.append(i + 1).append(':').append(upload.etags[i]).append(';');
+        }
+        builder.deleteCharAt(builder.length() - 1);
+        String parts = builder.toString();
+        params.put("parts", Util.createStringPart(parts));
       }
-      builder.deleteCharAt(builder.length() - 1);
-      String parts = builder.toString();
-      params.put("parts", Util.createStringPart(parts));
-    }
 
-    RetryNetworkFunc<CompleteResponse> func;
-    func = new RetryNetworkFunc<CompleteResponse>(5, 5, Upload.DELAY_BASE) {
+      func = new RetryNetworkFunc<CompleteResponse>(upload.options.getNetworkRetries(),
+          upload.options.getServerRetries(), upload.backoff, upload.options.getRetryPolicy()) {
 
-      @Override
-      Response<CompleteResponse> work() throws Exception {
-        return uploadService.complete(params);
-      }
-    };
+        @Override
+        Response<CompleteResponse> work() throws Exception {
+          return uploadService.complete(params);
+        }
+      }.throttledBy(uploadService.throttle(), uploadService.host()).deferBackoff();
+    }
 
     CompleteResponse response = func.call();
+    if (upload.journal != null) {
+      upload.journal.completed();
+    }
     FileLink fileLink = new FileLink(upload.clientConf, response.getHandle());
 
     long endTime = System.currentTimeMillis() / 1000;
@@ -1,5 +1,6 @@
 package org.filestack.internal;
 
+import org.filestack.internal.responses.BatchUploadResponse;
 import org.filestack.internal.responses.CompleteResponse;
 import org.filestack.internal.responses.StartResponse;
 import org.filestack.internal.responses.UploadResponse;
@@ -28,6 +29,16 @@ public class UploadService {
     this.apiUrl = url;
   }
 
+  /** Host of the Filestack upload API. */
+  String host() {
+    return apiUrl.host();
+  }
+
+  /** Hosts the server asked to slow down, shared with everything else using the same network client. */
+  HostThrottle throttle() {
+    return networkClient.throttle;
+  }
+
   public Response<StartResponse> start(Map<String, RequestBody> parameters) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment("multipart")
@@ -43,6 +54,11 @@ public class UploadService {
   }
 
   public Response<UploadResponse> upload(Map<String, RequestBody> parameters) throws IOException {
+    return upload(buildMultipartBody(parameters));
+  }
+
+  /** Same as {@link #upload(Map)} with an already built form. */
+  public Response<UploadResponse> upload(RequestBody form) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment("multipart")
         .addPathSegment("upload")
@@ -50,12 +66,33 @@ public class UploadService {
 
     Request request = new Request.Builder()
         .url(url)
-        .post(buildMultipartBody(parameters))
+        .post(form)
         .build();
 
     return networkClient.call(request, UploadResponse.class);
   }
 
+  /**
+   * Requests the params of several parts at once. Besides the fields of {@link #upload(Map)}, the
+   * form has "parts", the first and last part numbers joined by a dash, "size", the part size, and
+   * "md5s", the parts of the range to presign, each as its number and base64 MD5 joined by a colon,
+   * separated by semicolons. Parts left out of "md5s" were already uploaded.
+   */
+  public Response<BatchUploadResponse> uploadBatch(RequestBody form) throws IOException {
+    HttpUrl url = apiUrl.newBuilder()
+        .addPathSegment("multipart")
+        .addPathSegment("upload")
+        .addPathSegment("batch")
+        .build();
+
+    Request request = new Request.Builder()
+        .url(url)
+        .post(form)
+        .build();
+
+    return networkClient.call(request, BatchUploadResponse.class);
+  }
+
   public Response<ResponseBody> uploadS3(Map<String, String> headers, String url, RequestBody body) throws IOException {
     HttpUrl s3Url = HttpUrl.parse(url);
     if (s3Url == null) {
@@ -77,6 +114,11 @@ public class UploadService {
   }
 
   public Response<ResponseBody> commit(Map<String, RequestBody> parameters) throws IOException {
+    return commit(buildMultipartBody(parameters));
+  }
+
+  /** Same as {@link #commit(Map)} with an already built form. */
+  public Response<ResponseBody> commit(RequestBody form) throws IOException {
     HttpUrl url = apiUrl.newBuilder()
         .addPathSegment("multipart")
         .addPathSegment("commit")
@@ -84,7 +126,7 @@ public class UploadService {
 
     Request request = new Request.Builder()
         .url(url)
-        .post(buildMultipartBody(parameters))
+        .post(form)
         .build();
 
     return networkClient.call(request);
@@ -106,8 +148,12 @@ public class UploadService {
   }
 
   private MultipartBody buildMultipartBody(Map<String, RequestBody> parameters) {
-    MultipartBody.Builder multiPartBuilder = new MultipartBody.Builder()
-        .setType(MultipartBody.FORM);
+    return buildMultipartBody(new MultipartBody.Builder(), parameters);
+  }
+
+  static MultipartBody buildMultipartBody(MultipartBody.Builder multiPartBuilder,
+                                          Map<String, RequestBody> parameters) {
+    multiPartBuilder.setType(MultipartBody.FORM);
 
     for (Map.Entry<String, RequestBody> entry : parameters.entrySet()) {
       Headers headers = Headers.of(
@@ -0,0 +1,52 @@
+package org.filestack.internal;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+
+import java.io.IOException;
+
+/**
+ * Supplies the parts of an {@link Upload}. A source decides how the bytes of a part are obtained,
+ * either by copying them into memory or by addressing them directly in a file.
+ */
+abstract class UploadSource {
+  final long size;
+
+  UploadSource(long size) {
+    this.size = size;
+  }
+
+  /**
+   * Moves the container on to the next part of the input.
+   *
+   * @param digest if the MD5 of the whole part will be needed, sources that read the part into memory
+   *               then compute it as the bytes come in and keep it in the container
+   * @return false if there are no parts left
+   */
+  abstract boolean next(PartContainer container, int partSize, boolean digest) throws IOException;
+
+  /**
+   * Makes sure the container can take a part without waiting for memory.
+   *
+   * @return false if memory isn't available right now
+   */
+  boolean reserve(PartContainer container, int partSize) {
+    return true;
+  }
+
+  /** Gives back any memory held by the container. The container can still be used after this. */
+  void release(PartContainer container) {
+
+  }
+
+  /** Creates a request body for the next size bytes of the container that haven't been sent. */
+  abstract RequestBody body(PartContainer container, int size, MediaType mediaType);
+
+  /** True if any part can be read while others are, so its MD5 can be computed ahead of sending it. */
+  boolean readsAnyPart() {
+    return false;
+  }
+
+  /** Computes the MD5 of the next size bytes of the container that haven't been sent. */
+  abstract byte[] md5(PartContainer container, int size) throws IOException;
+}
@@ -1,17 +1,21 @@
 package org.filestack.internal;
 
+import org.filestack.UploadState;
 import org.filestack.internal.responses.StartResponse;
 import io.reactivex.Flowable;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 /**
  * Function to be passed to {@link Flowable#fromCallable(Callable)}.
- * Handles initiating a multipart upload.
+ * Handles initiating a multipart upload, or restoring one from a journal when resuming.
  */
 public class UploadStartFunc implements Callable<Prog> {
   private final UploadService uploadService;
   private final Upload upload;
+  private RetryNetworkFunc<StartResponse> func; // Kept while the request backs off
   
   UploadStartFunc(UploadService uploadService, Upload upload) {
     this.uploadService = uploadService;
@@ -22,13 +26,21 @@ public class UploadStartFunc implements Callable<Prog> {
   public Prog call() throws Exception {
     final long startTime = System.currentTimeMillis() / 1000;
 
-    RetryNetworkFunc<StartResponse> func;
-    func = new RetryNetworkFunc<StartResponse>(0, 5, Upload.DELAY_BASE) {
-      @Override
-      Response<StartResponse> work() throws Exception {
-        return uploadService.start(upload.baseParams);
-      }
-    };
+    if (upload.resumeState != null) {
+      resume(upload.resumeState);
+      long endTime = System.currentTimeMillis() / 1000;
+      return new Prog(startTime, endTime);
+    }
+
+    if (func == null) {
+      func = new RetryNetworkFunc<StartResponse>(0, upload.options.getServerRetries(), upload.backoff,
+          upload.options.getRetryPolicy()) {
+        @Override
+        Response<StartResponse> work() throws Exception {
+          return uploadService.start(upload.baseParams);
+        }
+      }.throttledBy(uploadService.throttle(), uploadService.host()).deferBackoff();
+    }
 
     StartResponse response = func.call();
 
@@ -41,17 +53,53 @@ public class UploadStartFunc implements Callable<Prog> {
     // If we tried to enable an intelligent upload and the response came back true
     // Then the account supports it and we perform an intelligent upload
     if (upload.intel) {
-      upload.partSize = Upload.INTELLIGENT_PART_SIZE;
+      upload.partSize = upload.options.getIntelligentPartSize();
     // Otherwise we didn't enable it for this call or the account doesn't support it
     } else {
-      upload.partSize = Upload.REGULAR_PART_SIZE;
+      upload.partSize = upload.options.getPartSize();
       upload.baseParams.remove("multipart");
     }
 
     int numParts = (int) Math.ceil(upload.inputSize / (double) upload.partSize);
     upload.etags = new String[numParts];
 
+    if (upload.journal != null) {
+      upload.journal.started(new UploadState(response.getUploadId(), response.getUri(), response.getRegion(),
+          upload.intel, upload.partSize, upload.inputSize));
+    }
+
     long endTime = System.currentTimeMillis() / 1000;
     return new Prog(startTime, endTime);
   }
+
+  /** Restores the state of an upload started in a previous run instead of starting a new one. */
+  private void resume(UploadState state) throws IOException {
+    if (state.getSize() != upload.inputSize) {
+      throw new IOException("Journaled upload was for " + state.getSize() + " bytes, input is "
+          + upload.inputSize + " bytes");
+    }
+
+    upload.baseParams.put("uri", Util.createStringPart(state.getUri()));
+    upload.baseParams.put("region", Util.createStringPart(state.getRegion()));
+    upload.baseParams.put("upload_id", Util.createStringPart(state.getUploadId()));
+
+    upload.intel = state.isIntelligent();
+    upload.partSize = state.getPartSize();
+    if (upload.intel) {
+      upload.baseParams.put("multipart", Util.createStringPart("true"));
+    } else {
+      upload.baseParams.remove("multipart");
+    }
+
+    int numParts = (int) Math.ceil(upload.inputSize / (double) upload.partSize);
+    upload.etags = new String[numParts];
+    for (Map.Entry<Integer, String> entry : state.getCompletedParts().entrySet()) {
+      int num = entry.getKey();
+      if (num < 1 || num > numParts) {
+        throw new IOException("Journaled part " + num + " is out of range");
+      }
+      upload.etags[num - 1] = entry.getValue();
+    }
+    upload.skipParts = state.getCompletedParts().keySet();
+  }
 }
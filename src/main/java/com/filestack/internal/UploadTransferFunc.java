@@ -5,77 +5,382 @@ import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.HttpUrl;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Function to be passed to {@link Flowable#create(FlowableOnSubscribe, BackpressureStrategy)}.
  * This class handles uploading of parts/chunks and makes calls to both S3 and Filestack endpoints.
  * An upload should be divided between multiple instances.
- * Different instances are not assigned to section of the file, instead we synchronize reads.
+ * Different instances are not assigned to section of the file, instead each claims the next part
+ * from the upload's source as it finishes the previous one.
+ * While a chunk is being sent to S3, the Filestack params for the chunk after it are requested in
+ * the background, so each chunk doesn't pay for two round trips one after the other. At the end of
+ * a part this means claiming the next part early, which for sources that copy parts into memory
+ * takes a second part buffer per worker. That buffer is only taken when the pool has it free, a
+ * worker never waits for memory while holding a part.
+ * When a request has to back off, the worker doesn't sleep. It schedules itself to continue after
+ * the delay and gives its thread and its scheduler admissions back, the in progress requests are
+ * kept and pick up where they left off.
  */
 public class UploadTransferFunc implements FlowableOnSubscribe<Prog> {
   private final UploadService uploadService;
   private final Upload upload;
+  private final ConcurrencyController concurrency;
   private FlowableEmitter<Prog> emitter;
   private PartContainer container;
+  private PartContainer spare; // Next part, claimed ahead of time by a presign
+  private PartContainer view; // Copy of the current part's position for presigning its next chunk
+  private Presign presign;
+  private boolean retiring;
+  private volatile boolean inputDone; // Also set by presigns claiming on a background thread
+  private int admitted; // Parts let through by the scheduler and not released yet
+  private boolean active; // If the container holds a part that isn't done yet
+  private RetryNetworkFunc<UploadResponse> paramsFunc; // Requests kept while they back off
+  private int paramsSize;
+  private RetryNetworkFunc<ResponseBody> chunkFunc;
+  private RetryNetworkFunc<ResponseBody> commitFunc;
+  private final AtomicBoolean parked = new AtomicBoolean(); // Waiting out a backoff, no thread running
+  private volatile Disposable resume;
 
-  UploadTransferFunc(UploadService uploadService, Upload upload) {
+  UploadTransferFunc(UploadService uploadService, Upload upload, @Nullable ConcurrencyController concurrency) {
     this.uploadService = uploadService;
     this.upload = upload;
+    this.concurrency = concurrency;
   }
 
   @Override
-  public void subscribe(FlowableEmitter<Prog> e) throws Exception {
+  public void subscribe(FlowableEmitter<Prog> e) {
     emitter = e;
-    container = new PartContainer(upload.partSize);
+    container = new PartContainer();
+    spare = new PartContainer();
 
-    while (upload.readInput(container) != -1) {
-      while (container.sent != container.size) {
-        uploadToS3();
+    emitter.setCancellable(new Cancellable() {
+      @Override
+      public void cancel() {
+        // Nothing else is going to clean up while parked, a running worker does it itself
+        if (parked.compareAndSet(true, false)) {
+          Disposable pending = resume;
+          if (pending != null) {
+            pending.dispose();
+          }
+          releaseParts();
+        }
       }
-      if (upload.intel) {
-        multipartCommit();
+    });
+
+    transfer();
+  }
+
+  /** Uploads parts until the input is used up, or until a request has to back off. */
+  private void transfer() {
+    try {
+      while (active || (!retiring && !retire())) {
+        if (!active) {
+          admitPart();
+          if (!claimPart(container)) {
+            break;
+          }
+          active = true;
+        }
+        while (container.sent != container.size) {
+          uploadToS3();
+        }
+        if (upload.intel) {
+          multipartCommit();
+        }
+        upload.onPartComplete(container.num);
+        releasePart();
+        active = takeNextPart();
       }
+    } catch (RetryLater e) {
+      park(e.getDelay());
+      return;
+    } catch (Exception e) {
+      releaseParts();
+      emitter.onError(e);
+      return;
     }
+    releaseParts();
     emitter.onComplete();
   }
 
-  /** Get parameters from Filestack for the upload to S3. */
-  private UploadResponse getUploadParams(int size) throws Exception {
-    byte[] md5 = Hash.md5(container.data, container.sent, size);
-    String encodedMd5 = Util.base64(md5);
+  /**
+   * Continues the transfer once the delay has passed. The delay is waited out on a timer, then the
+   * work moves back to the upload's scheduler for blocking I/O. The parts let through by the
+   * scheduler are given back while parked, so other uploads can use the lane, and admitted again
+   * before continuing.
+   */
+  private void park(long delay) {
+    final int held = admitted;
+    while (admitted > 0) {
+      releasePart();
+    }
+    parked.set(true);
+    final Runnable proceed = new Runnable() {
+      @Override
+      public void run() {
+        if (!parked.compareAndSet(true, false)) {
+          return; // Cancelled while parked
+        }
+        if (emitter.isCancelled()) {
+          releaseParts();
+          return;
+        }
+        try {
+          while (admitted < held) {
+            upload.lane.acquire(upload.partSize);
+            admitted++;
+          }
+        } catch (IOException e) {
+          releaseParts();
+          emitter.onError(e);
+          return;
+        }
+        transfer();
+      }
+    };
+    resume = Schedulers.computation().scheduleDirect(new Runnable() {
+      @Override
+      public void run() {
+        resume = Execution.blocking(upload.clientConf).scheduleDirect(proceed);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /** Gives part memory back for other uploads, once nothing running in the background can use it. */
+  private void releaseParts() {
+    if (presign != null && presign.claim) {
+      try {
+        presign.task.get();
+      } catch (Exception e) {
+        // Only waiting for it to stop touching the spare part
+      }
+    }
+    upload.source.release(container);
+    upload.source.release(spare);
+    while (admitted > 0) {
+      releasePart();
+    }
+  }
+
+  /** Waits for the upload's scheduler, if it has one, to let another part through. */
+  private void admitPart() throws IOException {
+    if (upload.lane == null) {
+      return;
+    }
+    if (!upload.lane.tryAcquire(upload.partSize)) {
+      // Don't sit on part memory while waiting, workers that were let through may need it
+      upload.source.release(container);
+      upload.source.release(spare);
+      upload.lane.acquire(upload.partSize);
+    }
+    admitted++;
+  }
+
+  /** Lets the scheduler know a part is no longer in flight. */
+  private void releasePart() {
+    if (upload.lane != null && admitted > 0) {
+      upload.lane.release(upload.partSize);
+      admitted--;
+    }
+  }
+
+  /** With adaptive concurrency, checks if this worker should stop before claiming another part. */
+  private boolean retire() {
+    return concurrency != null && concurrency.tryRetire();
+  }
+
+  /** Claims the next part of the input, returns false once it's used up. */
+  private boolean claimPart(PartContainer part) throws IOException {
+    if (inputDone || upload.readInput(part) == -1) {
+      inputDone = true;
+      if (concurrency != null) {
+        concurrency.onExhausted();
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Swaps in the part claimed by a presign, if there is one.
+   *
+   * @return true if the container now holds a new part
+   */
+  private boolean takeNextPart() throws Exception {
+    if (presign == null) {
+      return false;
+    }
+    if (!presign.claim) {
+      dropPresign(); // Guessed a chunk that the part ended before
+      return false;
+    }
+
+    await(presign);
+    if (!presign.claimed) {
+      presign = null;
+      releasePart();
+      return false;
+    }
+
+    // The presign stays in place, it's used for the first chunk of the swapped in part
+    PartContainer next = spare;
+    spare = container;
+    container = next;
+    return true;
+  }
+
+  /**
+   * Returns the params presigned for the chunk about to be sent, or null if there aren't any.
+   * A presign for a different size is dropped, that happens when the chunk size changed.
+   */
+  @Nullable
+  private UploadResponse takePresigned(int size) throws Exception {
+    if (presign == null || presign.target != container) {
+      return null; // Nothing presigned, or it's for the next part
+    }
+    if (presign.offset > container.sent) {
+      return null; // Still ahead, the current chunk is being retried or was made smaller
+    }
+    if (presign.offset != container.sent || (!presign.claim && presign.size != size)) {
+      dropPresign();
+      return null;
+    }
+
+    Presign taken = presign;
+    presign = null;
+    await(taken);
+    return taken.size == size ? taken.response : null;
+  }
 
-    final HashMap<String, RequestBody> params = new HashMap<>();
-    params.putAll(upload.baseParams);
-    params.put("part", Util.createStringPart(Integer.toString(container.num)));
-    params.put("size", Util.createStringPart(Integer.toString(size)));
-    params.put("md5", Util.createStringPart(encodedMd5));
-    if (upload.intel) {
-      params.put("offset", Util.createStringPart(Integer.toString(container.sent)));
+  /** Discards an unused presign without waiting for it. */
+  private void dropPresign() {
+    if (!presign.claim) {
+      view = null; // The presign may still be reading from it
     }
+    presign = null;
+  }
+
+  /** Starts presigning whatever comes after the chunk that's about to be sent. */
+  private void presignNext(int size) {
+    if (presign != null) {
+      return; // Already started by an earlier attempt at this chunk
+    }
+
+    int next = container.sent + size;
+    if (next < container.size) {
+      // Only intelligent ingestion splits parts, guess the next chunk will be the current size
+      if (view == null) {
+        view = new PartContainer();
+      }
+      view.data = container.data;
+      view.num = container.num;
+      view.offset = container.offset;
+      view.size = container.size;
+      presign = new Presign(container, view, next, false);
+      presign.size = Math.min(upload.chunkSizer.get(), container.size - next);
+    } else if (!inputDone && !retiring) {
+      if (retire()) {
+        retiring = true; // Already counted as retired, finish this part and stop
+        return;
+      }
+      if (!upload.source.reserve(spare, upload.partSize)) {
+        return; // Memory is short, claim the next part once this one is done instead
+      }
+      if (upload.lane != null) {
+        if (!upload.lane.tryAcquire(upload.partSize)) {
+          return; // Same when the scheduler is busy, other uploads may be waiting
+        }
+        admitted++;
+      }
+      presign = new Presign(spare, spare, 0, true);
+    } else {
+      return;
+    }
+    Execution.blocking(upload.clientConf).scheduleDirect(presign.task);
+  }
+
+  /** Waits for a presign to finish. Failed param requests are left to be retried in the foreground. */
+  private void await(Presign pending) throws Exception {
+    try {
+      pending.task.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof Exception ? (Exception) cause : e;
+    }
+  }
+
+  /** Get parameters from Filestack for the chunk about to be sent from the container. */
+  private UploadResponse requestParams(int size) throws Exception {
+    if (paramsFunc == null || paramsSize != size) {
+      paramsFunc = getUploadParams(container, size).deferBackoff();
+      paramsSize = size;
+    }
+    UploadResponse response;
+    try {
+      response = paramsFunc.call();
+    } catch (RetryLater e) {
+      throw e;
+    } catch (Exception e) {
+      paramsFunc = null; // Used up, the chunk's retry starts a new one
+      throw e;
+    }
+    paramsFunc = null;
+    return response;
+  }
+
+  /** Creates the request for parameters from Filestack for the upload to S3. */
+  private RetryNetworkFunc<UploadResponse> getUploadParams(PartContainer part, int size) throws Exception {
+    byte[] md5 = upload.source.md5(part, size);
+    String encodedMd5 = Util.base64(md5);
 
-    RetryNetworkFunc<UploadResponse> func;
-    func = new RetryNetworkFunc<UploadResponse>(5, 5, Upload.DELAY_BASE) {
+    String partNum = Integer.toString(part.num);
+    String partSize = Integer.toString(size);
+    final RequestBody form = upload.intel
+        ? upload.partForm().with("part", partNum, "size", partSize, "md5", encodedMd5,
+            "offset", Integer.toString(part.sent))
+        : upload.partForm().with("part", partNum, "size", partSize, "md5", encodedMd5);
+
+    return new RetryNetworkFunc<UploadResponse>(upload.options.getNetworkRetries(),
+        upload.options.getServerRetries(), upload.backoff, upload.options.getRetryPolicy()) {
       @Override
       Response<UploadResponse> work() throws Exception {
-        return uploadService.upload(params);
+        return uploadService.upload(form);
       }
-    };
-
-    return func.call();
+    }.throttledBy(uploadService.throttle(), uploadService.host());
   }
 
   /** Upload chunk/part to S3. */
   private void uploadToS3() throws Exception {
-    RetryNetworkFunc<ResponseBody> func;
+    if (chunkFunc == null) {
+      // All parts go to the same bucket, so a throttled S3 host holds back the chunks of other workers
+      chunkFunc = newChunkFunc().throttledBy(uploadService.throttle(), upload.s3Host).deferBackoff();
+    }
+    chunkFunc.call();
+    chunkFunc = null;
+  }
 
-    func = new RetryNetworkFunc<ResponseBody>(5, 5, Upload.DELAY_BASE) {
+  private RetryNetworkFunc<ResponseBody> newChunkFunc() {
+    return new RetryNetworkFunc<ResponseBody>(upload.options.getNetworkRetries(),
+        upload.options.getServerRetries(), upload.backoff, upload.options.getRetryPolicy()) {
       private int size;
+      private int chunkLimit;
       private long startTime;
+      private long attemptStart;
 
       @Override
       Response<ResponseBody> work() throws Exception {
@@ -83,31 +388,62 @@ public class UploadTransferFunc implements FlowableOnSubscribe<Prog> {
         if (startTime == 0) {
           startTime = System.currentTimeMillis() / 1000;
         }
+        attemptStart = System.nanoTime();
 
         if (upload.intel) {
-          size = Math.min(upload.getChunkSize(), container.size - container.sent);
+          chunkLimit = upload.chunkSizer.get();
+          size = Math.min(chunkLimit, container.size - container.sent);
         } else {
           size = Math.min(upload.partSize, container.size);
         }
 
-        UploadResponse params = getUploadParams(size);
+        UploadResponse params = null;
+        boolean batched = !upload.intel && upload.partUrls != null && upload.partUrls.isAvailable();
+        if (batched) {
+          params = upload.partUrls.take(container.num);
+        } else if (upload.options.isPresignAhead()) {
+          params = takePresigned(size);
+          presignNext(size);
+        }
+        if (params == null) {
+          params = requestParams(size);
+        }
         Map<String, String> headers = params.getS3Headers();
         String url = params.getUrl();
+        if (upload.s3Host == null) {
+          HttpUrl s3Url = HttpUrl.parse(url);
+          upload.s3Host = s3Url != null ? s3Url.host() : null;
+        }
 
-        RequestBody body;
-        body = RequestBody.create(upload.mediaType, container.data, container.sent, size);
+        RequestBody body = upload.source.body(container, size, upload.mediaType);
         return uploadService.uploadS3(headers, url, body);
       }
 
       @Override
       public void onNetworkFail(int retries) throws Exception {
-        upload.reduceChunkSize();
+        if (concurrency != null) {
+          concurrency.onError();
+        }
+        // Only intelligent ingestion can get around a bad network by sending smaller chunks
+        if (upload.intel) {
+          upload.chunkSizer.onFailure(chunkLimit);
+        }
         super.onNetworkFail(retries);
       }
 
+      @Override
+      public void onServerFail(int retries) throws Exception {
+        if (concurrency != null) {
+          concurrency.onError();
+        }
+        super.onServerFail(retries);
+      }
+
       @Override
       ResponseBody process(Response<ResponseBody> response) {
-        if (!upload.intel) {
+        if (upload.intel) {
+          upload.chunkSizer.onSuccess(chunkLimit, size, System.nanoTime() - attemptStart);
+        } else {
           String etag = response.getHeaders().get("ETag");
           upload.etags[container.num - 1] = etag;
         }
@@ -117,24 +453,62 @@ public class UploadTransferFunc implements FlowableOnSubscribe<Prog> {
         return response.getData();
       }
     };
-
-    func.call();
   }
 
   /** For intelligent ingestion mode only. Called when all chunks of a part have been uploaded. */
   private void multipartCommit() throws Exception {
-    final HashMap<String, RequestBody> params = new HashMap<>();
-    params.putAll(upload.baseParams);
-    params.put("part", Util.createStringPart(Integer.toString(container.num)));
+    if (commitFunc == null) {
+      final RequestBody form = upload.partForm().with("part", Integer.toString(container.num),
+          "size", Long.toString(upload.inputSize));
 
-    RetryNetworkFunc<ResponseBody> func;
-    func = new RetryNetworkFunc<ResponseBody>(5, 5, Upload.DELAY_BASE) {
-      @Override
-      Response<ResponseBody> work() throws Exception {
-        return uploadService.commit(params);
+      commitFunc = new RetryNetworkFunc<ResponseBody>(upload.options.getNetworkRetries(),
+          upload.options.getServerRetries(), upload.backoff, upload.options.getRetryPolicy()) {
+        @Override
+        Response<ResponseBody> work() throws Exception {
+          return uploadService.commit(form);
+        }
+      }.throttledBy(uploadService.throttle(), uploadService.host()).deferBackoff();
+    }
+    commitFunc.call();
+    commitFunc = null;
+  }
+
+  /** Params request for a chunk, run in the background while the previous chunk is sent. */
+  private class Presign implements Callable<UploadResponse> {
+    final PartContainer target; // Container the chunk will be sent from
+    final PartContainer source; // Container the MD5 is computed from, may be a copy of the target
+    final int offset;
+    final boolean claim; // If the part has to be claimed first
+    final FutureTask<UploadResponse> task = new FutureTask<>(this);
+    int size;
+    boolean claimed;
+    UploadResponse response;
+
+    Presign(PartContainer target, PartContainer source, int offset, boolean claim) {
+      this.target = target;
+      this.source = source;
+      this.offset = offset;
+      this.claim = claim;
+    }
+
+    @Override
+    public UploadResponse call() throws Exception {
+      if (claim) {
+        claimed = claimPart(target);
+        if (!claimed) {
+          return null;
+        }
+        size = upload.intel ? Math.min(upload.chunkSizer.get(), target.size) : target.size;
       }
-    };
 
-    func.call();
+      source.sent = offset;
+      try {
+        // A failure isn't waited out here, the foreground retries it with the usual backoff
+        response = getUploadParams(source, size).deferBackoff().call();
+      } catch (Exception e) {
+        response = null;
+      }
+      return response;
+    }
   }
 }
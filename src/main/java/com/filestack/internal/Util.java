@@ -2,21 +2,41 @@ package org.filestack.internal;
 
 import org.filestack.HttpException;
 import com.google.gson.JsonObject;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import okio.Buffer;
+import okio.BufferedSource;
 import okio.ByteString;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Small helper functions that don't need their own class.
  */
 public class Util {
+  private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+  private static final int MAX_IDLE_TRANSFER_BUFFERS = 8;
+
+  // Reused across transfers, bounded so a burst of parallel segments doesn't keep its buffers
+  private static final BlockingQueue<ByteBuffer> transferBuffers =
+      new ArrayBlockingQueue<>(MAX_IDLE_TRANSFER_BUFFERS);
 
   /**
    * Creates {@link RequestBody Request Body} from String.
@@ -66,6 +86,37 @@ public class Util {
     throwHttpResponseException(response);
   }
 
+  /**
+   * Function for asynchronous calls that checks a response like
+   * {@link #checkResponseAndThrow(Response)} and returns its data.
+   */
+  public static <T> Function<Response<T>, T> checkedData() {
+    return new Function<Response<T>, T>() {
+      @Override
+      public T apply(Response<T> response) throws Exception {
+        checkResponseAndThrow(response);
+        return response.getData();
+      }
+    };
+  }
+
+  /**
+   * Consumer for asynchronous calls whose response body isn't needed. Checks the response like
+   * {@link #checkResponseAndThrow(Response)} and closes the body.
+   */
+  public static Consumer<Response<ResponseBody>> checkAndClose() {
+    return new Consumer<Response<ResponseBody>>() {
+      @Override
+      public void accept(Response<ResponseBody> response) throws Exception {
+        checkResponseAndThrow(response);
+        ResponseBody body = response.getData();
+        if (body != null) {
+          body.close();
+        }
+      }
+    };
+  }
+
   /**
    * Creates and validates a new {@link File} for writing.
    *
@@ -90,6 +141,127 @@ public class Util {
     return file;
   }
 
+  /**
+   * Validates a {@link File} for writing without creating it, so the file only appears once it's
+   * complete.
+   *
+   * @param pathname path to file
+   * @return file pointing to pathname
+   * @throws FileNotFoundException if path isn't usable
+   */
+  public static File checkWriteFile(String pathname) throws IOException {
+    File file = new File(pathname);
+
+    if (file.exists()) {
+      if (file.isDirectory()) {
+        throw new FileNotFoundException("Can't write to directory: " + file.getPath());
+      } else if (!file.isFile()) {
+        throw new FileNotFoundException("Can't write to special file: " + file.getPath());
+      } else if (!file.canWrite()) {
+        throw new FileNotFoundException("No write access: " + file.getAbsolutePath());
+      }
+    } else {
+      File directory = file.getAbsoluteFile().getParentFile();
+      if (directory == null || !directory.isDirectory()) {
+        throw new FileNotFoundException("No such directory: " + file.getAbsoluteFile().getParent());
+      } else if (!directory.canWrite()) {
+        throw new FileNotFoundException("No write access: " + directory.getAbsolutePath());
+      }
+    }
+
+    return file;
+  }
+
+  /**
+   * Saves a body to a file, closing the body. It's written to a temporary file next to the target
+   * first, which replaces the target only once complete and on disk, so a failed download never
+   * leaves a partly written file where the complete one is expected.
+   */
+  public static void saveAtomically(ResponseBody body, File file) throws IOException {
+    Path temp = null;
+    boolean moved = false;
+    try {
+      temp = createTempFile(file);
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        transfer(body, channel, 0);
+        channel.force(true);
+      }
+      moveAtomically(temp, file);
+      moved = true;
+    } finally {
+      body.close();
+      if (!moved && temp != null) {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  /**
+   * Creates a hidden temporary file next to the target, on the same file system so it can be moved.
+   * Unlike {@link Files#createTempFile}, which makes it owner only, it gets the same default
+   * permissions as any other new file.
+   */
+  public static Path createTempFile(File target) throws IOException {
+    Path directory = target.toPath().toAbsolutePath().getParent();
+    while (true) {
+      String random = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+      try {
+        return Files.createFile(directory.resolve("." + target.getName() + "." + random + ".part"));
+      } catch (FileAlreadyExistsException e) {
+        // Taken, try another name
+      }
+    }
+  }
+
+  /**
+   * Moves a complete file onto the target, atomically where the file system allows it. A target
+   * that's replaced keeps its permissions.
+   */
+  public static void moveAtomically(Path source, File target) throws IOException {
+    if (target.exists()) {
+      try {
+        Files.setPosixFilePermissions(source, Files.getPosixFilePermissions(target.toPath()));
+      } catch (UnsupportedOperationException e) {
+        // Not a POSIX file system, the target's attributes can't be read this way
+      }
+    }
+    try {
+      Files.move(source, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Writes a body to a file channel at the given position, closing the body. Bytes are copied from
+   * the body's buffer into a heap buffer taken from a small pool, so transfers don't allocate one
+   * each. The channel copies it into the cached direct buffer of the thread, like for any heap write.
+   *
+   * @return the number of bytes written
+   */
+  public static long transfer(ResponseBody body, FileChannel channel, long position) throws IOException {
+    ByteBuffer buffer = transferBuffers.poll();
+    if (buffer == null) {
+      buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+    }
+    long written = 0;
+    try {
+      BufferedSource source = body.source();
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          written += channel.write(buffer, position + written);
+        }
+        buffer.clear();
+      }
+    } finally {
+      body.close();
+      buffer.clear();
+      transferBuffers.offer(buffer); // Dropped if the pool is full
+    }
+    return written;
+  }
+
   /**
    * Creates and validates a new {@link File} for reading.
    *
@@ -0,0 +1,15 @@
+package org.filestack.internal.responses;
+
+import java.util.Collections;
+import java.util.Map;
+
+/** Response object from multipart upload batch endpoint. */
+@SuppressWarnings("unused")
+public class BatchUploadResponse {
+  private Map<Integer, UploadResponse> parts;
+
+  /** Params for the upload to S3, by part number. */
+  public Map<Integer, UploadResponse> getParts() {
+    return parts != null ? parts : Collections.<Integer, UploadResponse>emptyMap();
+  }
+}
@@ -0,0 +1,29 @@
+package org.filestack.internal.responses;
+
+import javax.annotation.Nullable;
+
+/**
+ * Response object from cloud endpoints that key their result by provider name, along with the
+ * session token they may hand out. Read with {@link org.filestack.internal.CloudProviderAdapter}.
+ */
+public class CloudProviderResponse<T> {
+  private final String token;
+  private final T data;
+
+  public CloudProviderResponse(@Nullable String token, @Nullable T data) {
+    this.token = token;
+    this.data = data;
+  }
+
+  /** Session token to send with later requests, null if none was returned. */
+  @Nullable
+  public String getToken() {
+    return token;
+  }
+
+  /** Result for the provider, null if the response didn't include it. */
+  @Nullable
+  public T getData() {
+    return data;
+  }
+}
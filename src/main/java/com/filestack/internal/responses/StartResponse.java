@@ -29,6 +29,18 @@ public class StartResponse {
     return parameters;
   }
 
+  public String getUri() {
+    return uri;
+  }
+
+  public String getRegion() {
+    return region;
+  }
+
+  public String getUploadId() {
+    return uploadId;
+  }
+
   public boolean isIntelligent() {
     return uploadType != null && uploadType.equals("intelligent_ingestion");
   }
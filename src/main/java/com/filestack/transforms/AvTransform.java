@@ -5,6 +5,7 @@ import org.filestack.FileLink;
 import org.filestack.HttpException;
 import org.filestack.StorageOptions;
 import org.filestack.internal.CdnService;
+import org.filestack.internal.Execution;
 import org.filestack.internal.Networking;
 import org.filestack.transforms.tasks.AvTransformOptions;
 import org.filestack.internal.Util;
@@ -31,7 +32,7 @@ public class AvTransform extends Transform {
   public AvTransform(Config config, String handle, @Nullable StorageOptions storeOps,
                      @Nullable AvTransformOptions avOps) {
 
-    super(Networking.getCdnService(), config, handle, false);
+    super(Networking.getCdnService(config), config, handle, false);
 
     if (avOps == null) {
       throw new IllegalArgumentException("AvTransform can't be created without options");
@@ -120,7 +121,7 @@ public class AvTransform extends Transform {
    * @see #getFileLink()
    */
   public Single<FileLink> getFileLinkAsync(final int pollInterval) {
-    return Single.fromCallable(new Callable<FileLink>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<FileLink>() {
       @Override
       public FileLink call() throws Exception {
         FileLink fileLink = null;
@@ -132,6 +133,6 @@ public class AvTransform extends Transform {
         }
         return fileLink;
       }
-    });
+    }));
   }
 }
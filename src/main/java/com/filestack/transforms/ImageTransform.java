@@ -5,6 +5,7 @@ import org.filestack.FileLink;
 import org.filestack.HttpException;
 import org.filestack.StorageOptions;
 import org.filestack.internal.CdnService;
+import org.filestack.internal.Execution;
 import org.filestack.internal.Response;
 import org.filestack.internal.Util;
 import org.filestack.internal.responses.StoreResponse;
@@ -119,12 +120,12 @@ public class ImageTransform extends Transform {
    * Same exceptions are passed through observable.
    */
   public Single<JsonObject> debugAsync() {
-    return Single.fromCallable(new Callable<JsonObject>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<JsonObject>() {
       @Override
       public JsonObject call() throws Exception {
         return debug();
       }
-    });
+    }));
   }
 
   /**
@@ -140,11 +141,11 @@ public class ImageTransform extends Transform {
    * Same exceptions are passed through observable.
    */
   public Single<FileLink> storeAsync(@Nullable final StorageOptions storageOptions) {
-    return Single.fromCallable(new Callable<FileLink>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<FileLink>() {
       @Override
       public FileLink call() throws Exception {
         return store(storageOptions);
       }
-    });
+    }));
   }
 }
@@ -4,15 +4,20 @@ import org.filestack.Config;
 import org.filestack.FileLink;
 import org.filestack.HttpException;
 import org.filestack.internal.CdnService;
+import org.filestack.internal.ContentStream;
+import org.filestack.internal.Execution;
+import org.filestack.internal.Networking;
 import org.filestack.internal.Response;
 import org.filestack.internal.Util;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
 import okhttp3.HttpUrl;
 import okhttp3.ResponseBody;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
 
@@ -100,6 +105,16 @@ public class Transform {
     return response.getData();
   }
 
+  /**
+   * Returns the content of a transformation as a channel reading straight from the network.
+   * Closing the channel releases the connection.
+   *
+   * @see #getContent()
+   */
+  public ReadableByteChannel getContentChannel() throws IOException {
+    return getContent().source();
+  }
+
   /**
    * Returns the content of a transformation as JSON.
    *
@@ -107,9 +122,11 @@ public class Transform {
    */
   public JsonObject getContentJson() throws IOException {
     ResponseBody body = getContent();
-
-    Gson gson = new Gson();
-    return gson.fromJson(body.charStream(), JsonObject.class);
+    try {
+      return Networking.getGson().fromJson(body.charStream(), JsonObject.class);
+    } finally {
+      body.close();
+    }
   }
 
   // Async method wrappers
@@ -120,12 +137,31 @@ public class Transform {
    * @see #getContent()
    */
   public Single<ResponseBody> getContentAsync() {
-    return Single.fromCallable(new Callable<ResponseBody>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<ResponseBody>() {
       @Override
       public ResponseBody call() throws Exception {
         return getContent();
       }
-    });
+    }));
+  }
+
+  /**
+   * Asynchronously streams the content of a transformation in chunks of up to 64 KB.
+   *
+   * @see #getContentStream(int)
+   */
+  public Flowable<ByteBuffer> getContentStream() {
+    return getContentStream(ContentStream.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Asynchronously streams the content of a transformation. Chunks are only read as they're
+   * requested and the response is closed when the stream completes, fails or is cancelled.
+   *
+   * @param chunkSize most bytes in a chunk
+   */
+  public Flowable<ByteBuffer> getContentStream(int chunkSize) {
+    return ContentStream.chunks(getContentAsync(), chunkSize, Execution.blocking(config));
   }
 
   /**
@@ -134,11 +170,11 @@ public class Transform {
    * @see #getContent()
    */
   public Single<JsonObject> getContentJsonAsync() {
-    return Single.fromCallable(new Callable<JsonObject>() {
+    return Execution.blocking(config, Single.fromCallable(new Callable<JsonObject>() {
       @Override
       public JsonObject call() throws Exception {
         return getContentJson();
       }
-    });
+    }));
   }
 }
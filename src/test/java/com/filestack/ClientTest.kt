@@ -11,8 +11,13 @@ import okhttp3.mockwebserver.MockResponse
 import okhttp3.mockwebserver.MockWebServer
 import okhttp3.mockwebserver.RecordedRequest
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
 import org.junit.Rule
 import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 private const val UPLOAD_ID = "iacwRXloJVbO78XMR7vQqiiKJRIr2.geEepw4aUG"
 private const val API_KEY = "iowjr230942nn2"
@@ -193,4 +198,383 @@ class ClientTest {
         }
 
     }
+
+    @Test
+    fun `upload - fails before any request when part limit is exceeded`() {
+        val options = UploadOptions.Builder().build()
+        val size = UploadOptions.MAX_PARTS.toLong() * options.partSize + 1
+
+        val upload = client.uploadAsync(java.io.ByteArrayInputStream(ByteArray(0)), size, false, null, options)
+
+        upload.test().assertError(IllegalArgumentException::class.java)
+        assertEquals(0, server.requestCount)
+    }
+
+    @Test
+    fun `resumed upload - only sends parts missing from the journal`() {
+        val file = tempFile(sizeInBytes = 16 * 1024 * 1024)
+        val journalFile = tempFile(postfix = ".journal")
+        val journal = FileUploadJournal(journalFile.toPath())
+
+        val state = UploadState(UPLOAD_ID, "/filestack-uploads/${file.name}", "eu-west-1", false,
+                UploadOptions.MIN_PART_SIZE, file.length())
+        journal.started(state)
+        journal.partCompleted(1, "etag_1")
+        journal.partCompleted(2, "etag_2")
+
+        val dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    when (request.path) {
+                        "/multipart/upload" -> {
+                            val part = request.bodyParams()["part"]
+                            MockResponse().setBody("""{
+                                  "url": "${server.url("/s3_upload_url")}?partNumber=$part",
+                                  "headers": {},
+                                  "location_url": "upload-eu-west-1.filestackapi.com"
+                                }""")
+                        }
+
+                        "/s3_upload_url?partNumber=3" -> MockResponse().setHeader("ETag", "etag_3")
+                        "/s3_upload_url?partNumber=4" -> MockResponse().setHeader("ETag", "etag_4")
+
+                        "/multipart/complete" -> MockResponse().setBody("""{
+                              "handle": "Ekf5elTQeed8SG549RP",
+                              "url": "https://cdn.filestackcontent.com/Ekf5elTQeed8SG549RP",
+                              "filename": "some_file.txt",
+                              "size": ${file.length()},
+                              "mimetype": "text/plain",
+                              "status": "Complete"
+                            }
+                            """)
+
+                        else -> MockResponse().setResponseCode(403)
+                    }
+        }
+        server.dispatcher = dispatcher
+
+        val fileLink = client.resumeUpload(file.toPath(), false, null, journal)
+        assertEquals("Ekf5elTQeed8SG549RP", fileLink.handle)
+
+        dispatcher.assertThat {
+            totalRequests(5)
+
+            onlyOneRequest("/s3_upload_url?partNumber=3")
+            onlyOneRequest("/s3_upload_url?partNumber=4")
+
+            requestTo("/multipart/complete") {
+                bodyField("upload_id", UPLOAD_ID)
+                bodyField("parts", "1:etag_1;2:etag_2;3:etag_3;4:etag_4")
+            }
+        }
+        assertFalse(journalFile.exists())
+    }
+
+    @Test
+    fun `regular upload - presigns the next part while the current one is sent`() {
+        val file = tempFile(sizeInBytes = 2L * UploadOptions.MIN_PART_SIZE)
+        val nextPartPresigned = CountDownLatch(1)
+        var overlapped = false
+
+        val dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    when (request.path) {
+                        "/multipart/start" -> MockResponse().setBody("""{
+                                "uri": "/filestack-uploads/${file.name}",
+                                "region": "eu-west-1",
+                                "upload_id": "$UPLOAD_ID",
+                                "location_url": "upload-eu-west.com"
+                            }""")
+
+                        "/multipart/upload" -> {
+                            val part = request.bodyParams()["part"]
+                            if (part == "2") {
+                                nextPartPresigned.countDown()
+                            }
+                            MockResponse().setBody("""{
+                                  "url": "${server.url("/s3_upload_url")}?partNumber=$part",
+                                  "headers": {},
+                                  "location_url": "upload-eu-west-1.filestackapi.com"
+                                }""")
+                        }
+
+                        "/s3_upload_url?partNumber=1" -> {
+                            // Part 2's params should be requested while part 1 is still in flight
+                            overlapped = nextPartPresigned.await(5, TimeUnit.SECONDS)
+                            MockResponse().setHeader("ETag", "etag_1")
+                        }
+
+                        "/s3_upload_url?partNumber=2" -> MockResponse().setHeader("ETag", "etag_2")
+
+                        "/multipart/complete" -> MockResponse().setBody("""{
+                              "handle": "Ekf5elTQeed8SG549RP",
+                              "url": "https://cdn.filestackcontent.com/Ekf5elTQeed8SG549RP",
+                              "filename": "some_file.txt",
+                              "size": ${file.length()},
+                              "mimetype": "text/plain",
+                              "status": "Complete"
+                            }
+                            """)
+
+                        else -> MockResponse().setResponseCode(403)
+                    }
+        }
+        server.dispatcher = dispatcher
+
+        val options = UploadOptions.Builder().concurrency(1).build()
+        val progress = client.uploadAsync(file.toPath(), false, null, options).blockingLast()
+        assertEquals("Ekf5elTQeed8SG549RP", progress.data.handle)
+
+        assertTrue(overlapped)
+        dispatcher.assertThat {
+            totalRequests(6)
+
+            requestTo("/multipart/complete") {
+                bodyField("parts", "1:etag_1;2:etag_2")
+            }
+        }
+    }
+
+    @Test
+    fun `regular upload - presigns parts in batches`() {
+        val file = tempFile(sizeInBytes = 4L * UploadOptions.MIN_PART_SIZE)
+
+        val dispatcher = batchDispatcher(file.length()) { request ->
+            val params = request.bodyParams()
+            assertEquals("1-4", params["parts"])
+            assertEquals(UploadOptions.MIN_PART_SIZE.toString(), params["size"])
+            assertEquals(UPLOAD_ID, params["upload_id"])
+            assertEquals((1..4).toList(), params["md5s"]!!.split(";").map { it.substringBefore(":").toInt() })
+            MockResponse().setBody("""{"parts": {${(1..4).joinToString(",") { part ->
+                """"$part": {
+                      "url": "${server.url("/s3_upload_url")}?partNumber=$part",
+                      "headers": {},
+                      "location_url": "upload-eu-west-1.filestackapi.com"
+                    }"""
+            }}}}""")
+        }
+        server.dispatcher = dispatcher
+
+        val options = UploadOptions.Builder().presignBatch(8).build()
+        val progress = client.uploadAsync(file.toPath(), false, null, options).blockingLast()
+        assertEquals("Ekf5elTQeed8SG549RP", progress.data.handle)
+
+        dispatcher.assertThat {
+            totalRequests(7)
+
+            onlyOneRequest("/multipart/upload/batch")
+            requestTo("/multipart/complete") {
+                bodyField("parts", "1:etag_1;2:etag_2;3:etag_3;4:etag_4")
+            }
+        }
+        assertEquals(0, dispatcher.requests.count { it.path == "/multipart/upload" })
+    }
+
+    @Test
+    fun `regular upload - retries a failed batch request`() {
+        val file = tempFile(sizeInBytes = 4L * UploadOptions.MIN_PART_SIZE)
+
+        val batches = AtomicInteger()
+        val dispatcher = batchDispatcher(file.length()) {
+            if (batches.getAndIncrement() == 0) {
+                MockResponse().setResponseCode(500)
+            } else {
+                MockResponse().setBody("""{"parts": {${(1..4).joinToString(",") { part ->
+                    """"$part": {
+                          "url": "${server.url("/s3_upload_url")}?partNumber=$part",
+                          "headers": {},
+                          "location_url": "upload-eu-west-1.filestackapi.com"
+                        }"""
+                }}}}""")
+            }
+        }
+        server.dispatcher = dispatcher
+
+        val options = UploadOptions.Builder().presignBatch(8).retryDelay(20, 20).build()
+        val progress = client.uploadAsync(file.toPath(), false, null, options).blockingLast()
+        assertEquals("Ekf5elTQeed8SG549RP", progress.data.handle)
+
+        assertEquals(2, dispatcher.requests.count { it.path == "/multipart/upload/batch" })
+        assertEquals(0, dispatcher.requests.count { it.path == "/multipart/upload" })
+    }
+
+    @Test
+    fun `regular upload - presigns parts one at a time without the batch endpoint`() {
+        val file = tempFile(sizeInBytes = 4L * UploadOptions.MIN_PART_SIZE)
+
+        val dispatcher = batchDispatcher(file.length()) { MockResponse().setResponseCode(404) }
+        server.dispatcher = dispatcher
+
+        val options = UploadOptions.Builder().presignBatch(8).build()
+        val progress = client.uploadAsync(file.toPath(), false, null, options).blockingLast()
+        assertEquals("Ekf5elTQeed8SG549RP", progress.data.handle)
+
+        dispatcher.assertThat {
+            totalRequests(11)
+
+            onlyOneRequest("/multipart/upload/batch")
+            requestTo("/multipart/complete") {
+                bodyField("parts", "1:etag_1;2:etag_2;3:etag_3;4:etag_4")
+            }
+        }
+    }
+
+    private fun batchDispatcher(size: Long, batch: (RecordedRequest) -> MockResponse) =
+            object : RequestStoringDispatcher() {
+                override fun dispatchFor(request: RecordedRequest): MockResponse {
+                    val path = request.path!!
+                    return when {
+                        path == "/multipart/start" -> MockResponse().setBody("""{
+                                "uri": "/filestack-uploads/file",
+                                "region": "eu-west-1",
+                                "upload_id": "$UPLOAD_ID",
+                                "location_url": "upload-eu-west.com"
+                            }""")
+
+                        path == "/multipart/upload/batch" -> batch(request)
+
+                        path == "/multipart/upload" -> {
+                            val part = request.bodyParams()["part"]
+                            MockResponse().setBody("""{
+                                  "url": "${server.url("/s3_upload_url")}?partNumber=$part",
+                                  "headers": {},
+                                  "location_url": "upload-eu-west-1.filestackapi.com"
+                                }""")
+                        }
+
+                        path.startsWith("/s3_upload_url?partNumber=") ->
+                            MockResponse().setHeader("ETag", "etag_" + path.substringAfter("="))
+
+                        path == "/multipart/complete" -> MockResponse().setBody("""{
+                              "handle": "Ekf5elTQeed8SG549RP",
+                              "url": "https://cdn.filestackcontent.com/Ekf5elTQeed8SG549RP",
+                              "filename": "some_file.txt",
+                              "size": $size,
+                              "mimetype": "text/plain",
+                              "status": "Complete"
+                            }""")
+
+                        else -> MockResponse().setResponseCode(403)
+                    }
+                }
+            }
+
+    @Test
+    fun `upload - scheduler bounds parts in flight`() {
+        val file = tempFile(sizeInBytes = 16 * 1024 * 1024)
+        val inFlight = AtomicInteger()
+        val maxInFlight = AtomicInteger()
+
+        val dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse {
+                val path = request.path!!
+                return when {
+                    path == "/multipart/start" -> MockResponse().setBody("""{
+                            "uri": "/filestack-uploads/${file.name}",
+                            "region": "eu-west-1",
+                            "upload_id": "$UPLOAD_ID",
+                            "location_url": "upload-eu-west.com"
+                        }""")
+
+                    path == "/multipart/upload" -> MockResponse().setBody("""{
+                            "url": "${server.url("/s3_upload_url")}?partNumber=${request.bodyParams()["part"]}",
+                            "headers": {},
+                            "location_url": "upload-eu-west-1.filestackapi.com"
+                        }""")
+
+                    path.startsWith("/s3_upload_url") -> {
+                        val current = inFlight.incrementAndGet()
+                        maxInFlight.accumulateAndGet(current, ::maxOf)
+                        Thread.sleep(50)
+                        inFlight.decrementAndGet()
+                        MockResponse().setHeader("ETag", "etag")
+                    }
+
+                    path == "/multipart/complete" -> MockResponse().setBody("""{
+                            "handle": "Ekf5elTQeed8SG549RP",
+                            "url": "https://cdn.filestackcontent.com/Ekf5elTQeed8SG549RP",
+                            "filename": "some_file.txt",
+                            "size": ${file.length()},
+                            "mimetype": "text/plain",
+                            "status": "Complete"
+                        }""")
+
+                    else -> MockResponse().setResponseCode(403)
+                }
+            }
+        }
+        server.dispatcher = dispatcher
+
+        val scheduler = UploadScheduler(1, Long.MAX_VALUE)
+        val scheduledClient = Client(config, cdnService, baseService, uploadService, cloudService, scheduler)
+
+        val fileLink = scheduledClient.upload(file.path, false)
+        assertEquals("Ekf5elTQeed8SG549RP", fileLink.handle)
+
+        assertEquals(1, maxInFlight.get())
+        assertEquals(0, scheduler.partsInFlight)
+        dispatcher.assertThat {
+            totalRequests(10)
+        }
+    }
+
+    @Test
+    fun `regular upload - failed requests are retried after backing off`() {
+        val file = tempFile(sizeInBytes = 2L * UploadOptions.MIN_PART_SIZE)
+        val s3Attempts = AtomicInteger()
+        val completeAttempts = AtomicInteger()
+
+        val dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    when (request.path) {
+                        "/multipart/start" -> MockResponse().setBody("""{
+                                "uri": "/filestack-uploads/${file.name}",
+                                "region": "eu-west-1",
+                                "upload_id": "$UPLOAD_ID",
+                                "location_url": "upload-eu-west.com"
+                            }""")
+
+                        "/multipart/upload" -> MockResponse().setBody("""{
+                              "url": "${server.url("/s3_upload_url")}?partNumber=${request.bodyParams()["part"]}",
+                              "headers": {},
+                              "location_url": "upload-eu-west-1.filestackapi.com"
+                            }""")
+
+                        "/s3_upload_url?partNumber=1" ->
+                            if (s3Attempts.incrementAndGet() == 1) MockResponse().setResponseCode(503)
+                            else MockResponse().setHeader("ETag", "etag_1")
+
+                        "/s3_upload_url?partNumber=2" -> MockResponse().setHeader("ETag", "etag_2")
+
+                        "/multipart/complete" ->
+                            if (completeAttempts.incrementAndGet() == 1) MockResponse().setResponseCode(500)
+                            else MockResponse().setBody("""{
+                              "handle": "Ekf5elTQeed8SG549RP",
+                              "url": "https://cdn.filestackcontent.com/Ekf5elTQeed8SG549RP",
+                              "filename": "some_file.txt",
+                              "size": ${file.length()},
+                              "mimetype": "text/plain",
+                              "status": "Complete"
+                            }
+                            """)
+
+                        else -> MockResponse().setResponseCode(403)
+                    }
+        }
+        server.dispatcher = dispatcher
+
+        val options = UploadOptions.Builder().concurrency(1).retryDelay(20, 20).build()
+        val progress = client.uploadAsync(file.toPath(), false, null, options).blockingLast()
+        assertEquals("Ekf5elTQeed8SG549RP", progress.data.handle)
+
+        assertEquals(2, s3Attempts.get())
+        assertEquals(2, completeAttempts.get())
+        dispatcher.assertThat {
+            // Start, params for part 1 twice and part 2 once, three S3 requests, completion twice
+            totalRequests(9)
+
+            requestTo("/multipart/complete") {
+                bodyField("parts", "1:etag_1;2:etag_2")
+            }
+        }
+    }
 }
@@ -1,8 +1,13 @@
 package org.filestack
 
+import okhttp3.OkHttpClient
 import org.junit.Assert
 import org.junit.Assert.*
 import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
 
 class ConfigTest {
 
@@ -28,4 +33,20 @@ class ConfigTest {
         assertTrue(config.hasSecurity())
     }
 
+    @Test
+    fun `drops the http client when serialized`() {
+        val config = Config.Builder("api_key")
+                .policy("policy", "signature")
+                .httpClient(OkHttpClient())
+                .build()
+
+        val bytes = ByteArrayOutputStream()
+        ObjectOutputStream(bytes).use { it.writeObject(config) }
+        val copy = ObjectInputStream(ByteArrayInputStream(bytes.toByteArray())).use { it.readObject() } as Config
+
+        assertEquals("api_key", copy.apiKey)
+        assertEquals("policy", copy.policy)
+        assertNull(copy.httpClient)
+    }
+
 }
@@ -6,6 +6,8 @@ import com.google.gson.Gson
 import okhttp3.OkHttpClient
 import okhttp3.mockwebserver.MockResponse
 import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
 import org.hamcrest.CoreMatchers.equalTo
 import org.hamcrest.Matcher
 import org.hamcrest.beans.HasPropertyWithValue.hasProperty
@@ -13,6 +15,9 @@ import org.junit.Assert
 import org.junit.Rule
 import org.junit.Test
 import org.junit.rules.ExpectedException
+import java.io.File
+import java.nio.file.Files
+import kotlin.random.Random
 
 private const val API_KEY = "iowjr230942nn2"
 private const val POLICY = "policy"
@@ -91,6 +96,207 @@ class FileLinkTest {
 
     }
 
+    @Test
+    fun `parallel download - writes every segment at its offset`() {
+        val content = Random(42).nextBytes(10_000)
+        val dispatcher = rangeDispatcher(content, honourRange = true)
+        server.dispatcher = dispatcher
+        val options = DownloadOptions.Builder().segmentSize(1024).concurrency(4).build()
+
+        val file = FileLink(config, cdnService, baseService, "handle")
+                .download(tempDir(), "ranged.bin", options)
+
+        Assert.assertArrayEquals(content, file.readBytes())
+        dispatcher.assertThat { totalRequests(10) }
+    }
+
+    @Test
+    fun `parallel download - falls back to one request when ranges are ignored`() {
+        val content = Random(7).nextBytes(5_000)
+        val dispatcher = rangeDispatcher(content, honourRange = false)
+        server.dispatcher = dispatcher
+        val options = DownloadOptions.Builder().segmentSize(1024).concurrency(4).build()
+
+        val file = FileLink(config, cdnService, baseService, "handle")
+                .download(tempDir(), null, options)
+
+        Assert.assertEquals("original.bin", file.name)
+        Assert.assertArrayEquals(content, file.readBytes())
+        dispatcher.assertThat { totalRequests(1) }
+    }
+
+    @Test
+    fun `parallel download - deletes the file when a segment fails`() {
+        val content = Random(3).nextBytes(4_000)
+        server.dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    if (request.getHeader("Range")!!.startsWith("bytes=2048-")) {
+                        MockResponse().setResponseCode(500)
+                    } else {
+                        rangeResponse(content, request, honourRange = true)
+                    }
+        }
+        val directory = tempDir()
+        val options = DownloadOptions.Builder().segmentSize(1024).concurrency(2).build()
+
+        Assert.assertThrows(HttpException::class.java) {
+            FileLink(config, cdnService, baseService, "handle").download(directory, "failed.bin", options)
+        }
+        Assert.assertArrayEquals(arrayOf<String>(), File(directory).list())
+    }
+
+    @Test
+    fun `parallel download - keeps an existing file when a segment fails`() {
+        val content = Random(4).nextBytes(4_000)
+        server.dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    if (request.getHeader("Range")!!.startsWith("bytes=2048-")) {
+                        MockResponse().setResponseCode(500)
+                    } else {
+                        rangeResponse(content, request, honourRange = true)
+                    }
+        }
+        val directory = tempDir()
+        File(directory, "existing.bin").write("previous content")
+        val options = DownloadOptions.Builder().segmentSize(1024).concurrency(2).build()
+
+        Assert.assertThrows(HttpException::class.java) {
+            FileLink(config, cdnService, baseService, "handle").download(directory, "existing.bin", options)
+        }
+        Assert.assertEquals("previous content", File(directory, "existing.bin").readText())
+        Assert.assertArrayEquals(arrayOf("existing.bin"), File(directory).list())
+    }
+
+    @Test
+    fun `parallel download - saves an empty file`() {
+        server.dispatcher = rangeDispatcher(ByteArray(0), honourRange = true)
+        val options = DownloadOptions.Builder().segmentSize(1024).concurrency(2).build()
+
+        val file = FileLink(config, cdnService, baseService, "handle").download(tempDir(), null, options)
+
+        Assert.assertEquals("original.bin", file.name)
+        Assert.assertEquals(0, file.length())
+    }
+
+    @Test
+    fun `resumable download - only fetches the segments an interrupted run missed`() {
+        val content = Random(5).nextBytes(4_000)
+        val directory = tempDir()
+        val options = DownloadOptions.Builder().segmentSize(1024).resumable(true).build()
+        server.dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    if (request.getHeader("Range")!!.startsWith("bytes=2048-")) {
+                        MockResponse().setResponseCode(500)
+                    } else {
+                        rangeResponse(content, request, honourRange = true)
+                    }
+        }
+        Assert.assertThrows(HttpException::class.java) {
+            FileLink(config, cdnService, baseService, "handle").download(directory, "resumed.bin", options)
+        }
+        Assert.assertTrue(File(directory, "resumed.bin.filestack-download").exists())
+
+        val dispatcher = rangeDispatcher(content, honourRange = true)
+        server.dispatcher = dispatcher
+        val file = FileLink(config, cdnService, baseService, "handle").download(directory, "resumed.bin", options)
+
+        Assert.assertArrayEquals(content, file.readBytes())
+        Assert.assertFalse(File(directory, "resumed.bin.filestack-download").exists())
+        dispatcher.assertThat { totalRequests(3) }
+        Assert.assertEquals(listOf("bytes=0-1023", "bytes=2048-3071", "bytes=3072-4095"),
+                dispatcher.requests.map { it.getHeader("Range") })
+        Assert.assertEquals("\"v1\"", dispatcher.requests.last().getHeader("If-Range"))
+    }
+
+    @Test
+    fun `resumable download - starts over when the content changed`() {
+        val directory = tempDir()
+        val options = DownloadOptions.Builder().segmentSize(1024).resumable(true).build()
+        val old = Random(1).nextBytes(3_000)
+        server.dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    if (request.getHeader("Range")!!.startsWith("bytes=2048-")) {
+                        MockResponse().setResponseCode(500)
+                    } else {
+                        rangeResponse(old, request, honourRange = true)
+                    }
+        }
+        Assert.assertThrows(HttpException::class.java) {
+            FileLink(config, cdnService, baseService, "handle").download(directory, "changed.bin", options)
+        }
+
+        val content = Random(2).nextBytes(3_000)
+        val dispatcher = rangeDispatcher(content, honourRange = true, etag = "\"v2\"")
+        server.dispatcher = dispatcher
+        val file = FileLink(config, cdnService, baseService, "handle").download(directory, "changed.bin", options)
+
+        Assert.assertArrayEquals(content, file.readBytes())
+        dispatcher.assertThat { totalRequests(3) }
+    }
+
+    @Test
+    fun `content stream - emits the whole file`() {
+        val content = Random(9).nextBytes(200_000)
+        server.enqueue(MockResponse().setBody(Buffer().write(content)))
+
+        val joined = Buffer()
+        FileLink(config, cdnService, baseService, "handle").getContentStream(32 * 1024)
+                .blockingForEach { joined.write(it) }
+
+        Assert.assertArrayEquals(content, joined.readByteArray())
+    }
+
+    @Test
+    fun `resumable download - deletes the partial file of content it can't recognize`() {
+        val content = Random(6).nextBytes(4_000)
+        server.dispatcher = object : RequestStoringDispatcher() {
+            override fun dispatchFor(request: RecordedRequest): MockResponse =
+                    if (request.getHeader("Range")!!.startsWith("bytes=2048-")) {
+                        MockResponse().setResponseCode(500)
+                    } else {
+                        rangeResponse(content, request, honourRange = true, etag = null)
+                    }
+        }
+        val directory = tempDir()
+        val options = DownloadOptions.Builder().segmentSize(1024).resumable(true).build()
+
+        Assert.assertThrows(HttpException::class.java) {
+            FileLink(config, cdnService, baseService, "handle").download(directory, "unknown.bin", options)
+        }
+        Assert.assertArrayEquals(arrayOf<String>(), File(directory).list())
+    }
+
+    private fun rangeDispatcher(content: ByteArray, honourRange: Boolean, etag: String? = "\"v1\"") =
+            object : RequestStoringDispatcher() {
+                override fun dispatchFor(request: RecordedRequest) = rangeResponse(content, request, honourRange, etag)
+            }
+
+    private fun rangeResponse(content: ByteArray, request: RecordedRequest, honourRange: Boolean,
+                              etag: String? = "\"v1\""): MockResponse {
+        val range = request.getHeader("Range")
+        val ifRange = request.getHeader("If-Range")
+        if (!honourRange || range == null || (ifRange != null && ifRange != etag)) {
+            return MockResponse()
+                    .setHeader("x-file-name", "original.bin")
+                    .apply { if (etag != null) setHeader("ETag", etag) }
+                    .setBody(Buffer().write(content))
+        }
+        val (from, to) = range.removePrefix("bytes=").split("-")
+        val start = from.toInt()
+        if (start >= content.size) {
+            return MockResponse().setResponseCode(416).setHeader("Content-Range", "bytes */${content.size}")
+        }
+        val end = if (to.isEmpty()) content.size - 1 else minOf(to.toInt(), content.size - 1)
+        return MockResponse()
+                .setResponseCode(206)
+                .setHeader("x-file-name", "original.bin")
+                .apply { if (etag != null) setHeader("ETag", etag) }
+                .setHeader("Content-Range", "bytes $start-$end/${content.size}")
+                .setBody(Buffer().write(content, start, end - start + 1))
+    }
+
+    private fun tempDir() = Files.createTempDirectory("filestack").toFile().apply { deleteOnExit() }.path
+
     private fun hasCode(code: Int): Matcher<Exception> {
         return hasProperty("code", equalTo(code))
     }
@@ -0,0 +1,44 @@
+package org.filestack;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class TestCacheOptions {
+
+  @Test
+  public void testDefaults() {
+    CacheOptions options = CacheOptions.defaults();
+
+    Assert.assertEquals(32 * 1024 * 1024, options.getMaxMemorySize());
+    Assert.assertEquals(1024 * 1024, options.getMaxMemoryEntrySize());
+    Assert.assertNull(options.getDirectory());
+    Assert.assertEquals(256 * 1024 * 1024, options.getMaxDiskSize());
+    Assert.assertEquals(60 * 1000, options.getRevalidateAfter());
+  }
+
+  @Test
+  public void testNewBuilder() {
+    CacheOptions options = new CacheOptions.Builder()
+        .directory(new File("/tmp/filestack-cache"))
+        .maxMemorySize(0)
+        .build();
+
+    CacheOptions copy = options.newBuilder().revalidateAfter(5000).build();
+
+    Assert.assertEquals(new File("/tmp/filestack-cache"), copy.getDirectory());
+    Assert.assertEquals(0, copy.getMaxMemorySize());
+    Assert.assertEquals(5000, copy.getRevalidateAfter());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeMemorySize() {
+    new CacheOptions.Builder().maxMemorySize(-1).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeRevalidateAfter() {
+    new CacheOptions.Builder().revalidateAfter(-1).build();
+  }
+}
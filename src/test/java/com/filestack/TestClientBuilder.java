@@ -0,0 +1,52 @@
+package org.filestack;
+
+import org.filestack.internal.Networking;
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestClientBuilder {
+
+  @Test
+  public void testBuiltClientsHaveTheirOwnStack() {
+    Config config = new Config("apiKey", "policy", "signature");
+    Client first = new Client.Builder(config).build();
+    Client second = new Client.Builder(config).build();
+
+    Assert.assertNotSame(Networking.getNetworkClient(first.getConfig()),
+        Networking.getNetworkClient(second.getConfig()));
+    Assert.assertNotSame(Networking.getNetworkClient(config), Networking.getNetworkClient(first.getConfig()));
+    // File links and uploads resolve services from the client's config, they land on the same stack
+    Assert.assertSame(Networking.getNetworkClient(first.getConfig()),
+        Networking.getNetworkClient(first.getConfig()));
+  }
+
+  @Test
+  public void testBuiltClientKeepsTheConfig() {
+    Config config = new Config.Builder("apiKey")
+        .policy("policy", "signature")
+        .uploadOptions(new UploadOptions.Builder().concurrency(2).build())
+        .build();
+    HttpOptions httpOptions = new HttpOptions.Builder().connectionPool(32, 60 * 1000).build();
+    Client client = new Client.Builder(config).httpOptions(httpOptions).build();
+
+    Config built = client.getConfig();
+    Assert.assertEquals("apiKey", built.getApiKey());
+    Assert.assertEquals("policy", built.getPolicy());
+    Assert.assertEquals("signature", built.getSignature());
+    Assert.assertSame(config.getUploadOptions(), built.getUploadOptions());
+    Assert.assertEquals(httpOptions, built.getHttpOptions());
+    Assert.assertNotNull(built.getHttpClient());
+  }
+
+  @Test
+  public void testSuppliedClientIsNotShared() {
+    OkHttpClient httpClient = new OkHttpClient();
+    Config config = new Config.Builder("apiKey").httpClient(httpClient).build();
+    Client client = new Client.Builder(config).build();
+
+    Assert.assertNotSame(httpClient, client.getConfig().getHttpClient());
+    Assert.assertSame(httpClient.connectionPool(), client.getConfig().getHttpClient().connectionPool());
+    Assert.assertNotSame(Networking.getNetworkClient(config), Networking.getNetworkClient(client.getConfig()));
+  }
+}
@@ -0,0 +1,52 @@
+package org.filestack;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+public class TestDefaultRetryPolicy {
+  private final RetryPolicy policy = new DefaultRetryPolicy();
+
+  @Test
+  public void testClassify() {
+    Assert.assertEquals(RetryPolicy.Outcome.SUCCESS, policy.classify(200));
+    Assert.assertEquals(RetryPolicy.Outcome.FAIL, policy.classify(206));
+    Assert.assertEquals(RetryPolicy.Outcome.FAIL, policy.classify(400));
+    Assert.assertEquals(RetryPolicy.Outcome.FAIL, policy.classify(403));
+    Assert.assertEquals(RetryPolicy.Outcome.THROTTLE, policy.classify(429));
+    Assert.assertEquals(RetryPolicy.Outcome.THROTTLE, policy.classify(503));
+    Assert.assertEquals(RetryPolicy.Outcome.RETRY, policy.classify(202));
+    Assert.assertEquals(RetryPolicy.Outcome.RETRY, policy.classify(500));
+  }
+
+  @Test
+  public void testRetryableExceptions() {
+    Assert.assertTrue(policy.isRetryable(new IOException()));
+    Assert.assertTrue(policy.isRetryable(new SocketTimeoutException()));
+    Assert.assertFalse(policy.isRetryable(new InterruptedIOException()));
+  }
+
+  @Test
+  public void testRetryAfterSeconds() {
+    Assert.assertEquals(120 * 1000, policy.getRetryAfter("120"));
+    Assert.assertEquals(0, policy.getRetryAfter(" 0 "));
+    Assert.assertEquals(-1, policy.getRetryAfter("-5"));
+    Assert.assertEquals(-1, policy.getRetryAfter("soon"));
+  }
+
+  @Test
+  public void testRetryAfterDate() {
+    String future = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60));
+    long delay = policy.getRetryAfter(future);
+    Assert.assertTrue(delay > 50 * 1000 && delay <= 60 * 1000);
+
+    String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusSeconds(60));
+    Assert.assertEquals(0, policy.getRetryAfter(past));
+  }
+}
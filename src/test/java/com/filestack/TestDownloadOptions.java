@@ -0,0 +1,36 @@
+package org.filestack;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDownloadOptions {
+
+  @Test
+  public void testDefaults() {
+    DownloadOptions options = DownloadOptions.defaults();
+
+    Assert.assertEquals(8 * 1024 * 1024, options.getSegmentSize());
+    Assert.assertEquals(1, options.getConcurrency());
+    Assert.assertFalse(options.isResumable());
+  }
+
+  @Test
+  public void testNewBuilder() {
+    DownloadOptions options = new DownloadOptions.Builder().segmentSize(1024).build();
+
+    DownloadOptions copy = options.newBuilder().concurrency(8).build();
+
+    Assert.assertEquals(1024, copy.getSegmentSize());
+    Assert.assertEquals(8, copy.getConcurrency());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptySegment() {
+    new DownloadOptions.Builder().segmentSize(0).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoWorkers() {
+    new DownloadOptions.Builder().concurrency(0).build();
+  }
+}
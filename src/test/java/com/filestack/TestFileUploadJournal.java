@@ -0,0 +1,84 @@
+package org.filestack;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+public class TestFileUploadJournal {
+
+  private static File tempJournal() throws IOException {
+    File file = File.createTempFile("filestack", ".journal");
+    file.deleteOnExit();
+    Assert.assertTrue(file.delete());
+    return file;
+  }
+
+  @Test
+  public void testLoadWithoutFile() throws IOException {
+    FileUploadJournal journal = new FileUploadJournal(tempJournal().toPath());
+    Assert.assertNull(journal.load());
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = tempJournal();
+    FileUploadJournal journal = new FileUploadJournal(file.toPath());
+    journal.started(new UploadState("upload_id", "/bucket/file.txt", "us-east-1", false, 5242880, 12000000));
+    journal.partCompleted(2, "\"etag_2\"");
+    journal.partCompleted(1, "\"etag_1\"");
+
+    UploadState state = new FileUploadJournal(file.toPath()).load();
+    Assert.assertNotNull(state);
+    Assert.assertEquals("upload_id", state.getUploadId());
+    Assert.assertEquals("/bucket/file.txt", state.getUri());
+    Assert.assertEquals("us-east-1", state.getRegion());
+    Assert.assertFalse(state.isIntelligent());
+    Assert.assertEquals(5242880, state.getPartSize());
+    Assert.assertEquals(12000000, state.getSize());
+    Assert.assertEquals(2, state.getCompletedParts().size());
+    Assert.assertEquals("\"etag_1\"", state.getCompletedParts().get(1));
+    Assert.assertEquals("\"etag_2\"", state.getCompletedParts().get(2));
+  }
+
+  @Test
+  public void testIgnoresTornLastLine() throws IOException {
+    File file = tempJournal();
+    FileUploadJournal journal = new FileUploadJournal(file.toPath());
+    journal.started(new UploadState("upload_id", "/bucket/file.txt", "us-east-1", true, 8388608, 20000000));
+    journal.partCompleted(1, null);
+    Files.write(file.toPath(), "{\"part\":".getBytes(Charset.forName("UTF-8")), StandardOpenOption.APPEND);
+
+    UploadState state = journal.load();
+    Assert.assertNotNull(state);
+    Assert.assertTrue(state.isIntelligent());
+    Assert.assertEquals(1, state.getCompletedParts().size());
+    Assert.assertTrue(state.getCompletedParts().containsKey(1));
+    Assert.assertNull(state.getCompletedParts().get(1));
+  }
+
+  @Test(expected = IOException.class)
+  public void testRejectsCorruptEntry() throws IOException {
+    File file = tempJournal();
+    FileUploadJournal journal = new FileUploadJournal(file.toPath());
+    journal.started(new UploadState("upload_id", "/bucket/file.txt", "us-east-1", false, 5242880, 12000000));
+    Files.write(file.toPath(), "garbage\n".getBytes(Charset.forName("UTF-8")), StandardOpenOption.APPEND);
+    journal.partCompleted(1, "etag_1");
+    journal.load();
+  }
+
+  @Test
+  public void testCompletedDeletesFile() throws IOException {
+    File file = tempJournal();
+    FileUploadJournal journal = new FileUploadJournal(file.toPath());
+    journal.started(new UploadState("upload_id", "/bucket/file.txt", "us-east-1", false, 5242880, 12000000));
+    Assert.assertTrue(file.exists());
+    journal.completed();
+    Assert.assertFalse(file.exists());
+    Assert.assertNull(journal.load());
+  }
+}
@@ -0,0 +1,55 @@
+package org.filestack;
+
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHttpOptions {
+
+  @Test
+  public void testDefaults() {
+    HttpOptions options = HttpOptions.defaults();
+
+    Assert.assertEquals(5, options.getMaxIdleConnections());
+    Assert.assertEquals(5 * 60 * 1000, options.getKeepAlive());
+    Assert.assertEquals(64, options.getMaxRequests());
+    Assert.assertEquals(5, options.getMaxRequestsPerHost());
+    Assert.assertTrue(options.isHttp2());
+    Assert.assertEquals(30 * 1000, options.getConnectTimeout());
+    Assert.assertEquals(30 * 1000, options.getReadTimeout());
+    Assert.assertEquals(30 * 1000, options.getWriteTimeout());
+    Assert.assertEquals(0, options.getCallTimeout());
+    Assert.assertFalse(options.isRetryOnConnectionFailure());
+  }
+
+  @Test
+  public void testEquality() {
+    HttpOptions options = new HttpOptions.Builder().connectionPool(32, 60 * 1000).http2(false).build();
+
+    Assert.assertEquals(options, options.newBuilder().build());
+    Assert.assertEquals(options.hashCode(), options.newBuilder().build().hashCode());
+    Assert.assertNotEquals(options, HttpOptions.defaults());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTimeout() {
+    new HttpOptions.Builder().timeouts(-1, 0, 0).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroMaxRequests() {
+    new HttpOptions.Builder().maxRequests(0, 1).build();
+  }
+
+  @Test
+  public void testConfig() {
+    Assert.assertEquals(HttpOptions.defaults(), new Config("apiKey").getHttpOptions());
+    Assert.assertNull(new Config("apiKey").getHttpClient());
+
+    HttpOptions options = new HttpOptions.Builder().callTimeout(1000).build();
+    OkHttpClient httpClient = new OkHttpClient();
+    Config config = new Config.Builder("apiKey").httpOptions(options).httpClient(httpClient).build();
+    Assert.assertEquals(options, config.getHttpOptions());
+    Assert.assertSame(httpClient, config.getHttpClient());
+  }
+}
@@ -0,0 +1,80 @@
+package org.filestack;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestUploadOptions {
+
+  @Test
+  public void testDefaults() {
+    UploadOptions options = UploadOptions.defaults();
+
+    Assert.assertEquals(4, options.getConcurrency());
+    Assert.assertEquals(5 * 1024 * 1024, options.getPartSize());
+    Assert.assertEquals(8 * 1024 * 1024, options.getIntelligentPartSize());
+    Assert.assertEquals(1024 * 1024, options.getInitialChunkSize());
+    Assert.assertEquals(32 * 1024, options.getMinChunkSize());
+    Assert.assertEquals(5, options.getNetworkRetries());
+    Assert.assertEquals(5, options.getServerRetries());
+    Assert.assertTrue(options.isPresignAhead());
+    Assert.assertEquals(0, options.getPresignBatch());
+    Assert.assertEquals(1000, options.getRetryBaseDelay());
+    Assert.assertEquals(30 * 1000, options.getMaxRetryDelay());
+  }
+
+  @Test
+  public void testNewBuilder() {
+    UploadOptions options = new UploadOptions.Builder()
+        .concurrency(16)
+        .partSize(64 * 1024 * 1024)
+        .build();
+
+    UploadOptions copy = options.newBuilder().serverRetries(2).build();
+
+    Assert.assertEquals(16, copy.getConcurrency());
+    Assert.assertEquals(64 * 1024 * 1024, copy.getPartSize());
+    Assert.assertEquals(2, copy.getServerRetries());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPartSizeBelowS3Minimum() {
+    new UploadOptions.Builder().partSize(UploadOptions.MIN_PART_SIZE - 1).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroConcurrency() {
+    new UploadOptions.Builder().concurrency(0).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMinChunkLargerThanInitial() {
+    new UploadOptions.Builder().initialChunkSize(64 * 1024).minChunkSize(128 * 1024).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxRetryDelayBelowBase() {
+    new UploadOptions.Builder().retryDelay(2000, 1000).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativePresignBatch() {
+    new UploadOptions.Builder().presignBatch(-1).build();
+  }
+
+  @Test
+  public void testConfigDefault() {
+    UploadOptions options = new UploadOptions.Builder().concurrency(8).build();
+
+    Config config = new Config.Builder("apiKey").uploadOptions(options).build();
+    Assert.assertEquals(8, config.getUploadOptions().getConcurrency());
+
+    Assert.assertEquals(4, new Config("apiKey").getUploadOptions().getConcurrency());
+  }
+
+  @Test
+  public void testConfigVirtualThreads() {
+    Assert.assertFalse(new Config("apiKey").isVirtualThreads());
+    Assert.assertFalse(new Config.Builder("apiKey").build().isVirtualThreads());
+    Assert.assertTrue(new Config.Builder("apiKey").virtualThreads(true).build().isVirtualThreads());
+  }
+}
@@ -0,0 +1,127 @@
+package org.filestack;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestUploadScheduler {
+
+  /** Starts a thread that acquires a part on the lane and then records its name. */
+  private static Thread waitFor(final UploadScheduler.Lane lane, final long size, final String name,
+                                final List<String> order) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          lane.acquire(size);
+          order.add(name);
+        } catch (InterruptedIOException e) {
+          order.add(name + " interrupted");
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitWaiting(Thread thread) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(Thread.State.WAITING, thread.getState());
+  }
+
+  @Test
+  public void testPartBudget() throws InterruptedIOException {
+    UploadScheduler scheduler = new UploadScheduler(2, Long.MAX_VALUE);
+    UploadScheduler.Lane lane = scheduler.lane(0);
+
+    Assert.assertTrue(lane.tryAcquire(10));
+    Assert.assertTrue(lane.tryAcquire(10));
+    Assert.assertFalse(lane.tryAcquire(10));
+    Assert.assertEquals(2, scheduler.getPartsInFlight());
+
+    lane.release(10);
+    Assert.assertTrue(lane.tryAcquire(10));
+  }
+
+  @Test
+  public void testByteBudget() {
+    UploadScheduler scheduler = new UploadScheduler(10, 100);
+    UploadScheduler.Lane lane = scheduler.lane(0);
+
+    Assert.assertTrue(lane.tryAcquire(60));
+    Assert.assertFalse(lane.tryAcquire(60));
+    Assert.assertTrue(lane.tryAcquire(40));
+    Assert.assertEquals(100, scheduler.getBytesInFlight());
+  }
+
+  @Test
+  public void testOversizePartAllowedWhenIdle() {
+    UploadScheduler scheduler = new UploadScheduler(10, 100);
+    UploadScheduler.Lane lane = scheduler.lane(0);
+
+    Assert.assertTrue(lane.tryAcquire(500));
+    Assert.assertFalse(lane.tryAcquire(1));
+  }
+
+  @Test
+  public void testFairBetweenUploads() throws InterruptedException {
+    UploadScheduler scheduler = new UploadScheduler(2, Long.MAX_VALUE);
+    UploadScheduler.Lane big = scheduler.lane(0);
+    UploadScheduler.Lane small = scheduler.lane(0);
+    List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    Assert.assertTrue(big.tryAcquire(1));
+    Assert.assertTrue(big.tryAcquire(1));
+
+    // The big upload asked first, but the small one has nothing in flight
+    Thread first = waitFor(big, 1, "big", order);
+    awaitWaiting(first);
+    Thread second = waitFor(small, 1, "small", order);
+    awaitWaiting(second);
+
+    big.release(1);
+    second.join(5000);
+    Assert.assertEquals(Collections.singletonList("small"), order);
+
+    big.release(1);
+    first.join(5000);
+    Assert.assertEquals(2, order.size());
+    Assert.assertEquals("big", order.get(1));
+  }
+
+  @Test
+  public void testPriority() throws InterruptedException {
+    UploadScheduler scheduler = new UploadScheduler(1, Long.MAX_VALUE);
+    UploadScheduler.Lane holder = scheduler.lane(0);
+    UploadScheduler.Lane low = scheduler.lane(0);
+    UploadScheduler.Lane high = scheduler.lane(5);
+    List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    Assert.assertTrue(holder.tryAcquire(1));
+    Thread lowThread = waitFor(low, 1, "low", order);
+    awaitWaiting(lowThread);
+    Thread highThread = waitFor(high, 1, "high", order);
+    awaitWaiting(highThread);
+
+    holder.release(1);
+    highThread.join(5000);
+    Assert.assertEquals(Collections.singletonList("high"), order);
+
+    high.release(1);
+    lowThread.join(5000);
+    Assert.assertEquals("low", order.get(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsZeroParts() {
+    new UploadScheduler(0, 100);
+  }
+}
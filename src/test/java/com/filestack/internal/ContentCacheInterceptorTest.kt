@@ -0,0 +1,121 @@
+package org.filestack.internal
+
+import org.filestack.CacheOptions
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+
+class ContentCacheInterceptorTest {
+
+    @get:Rule
+    val server = MockWebServer()
+
+    @Test
+    fun `revalidates kept content with a conditional request`() {
+        val client = client(CacheOptions.Builder().revalidateAfter(0).build())
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("content"))
+        server.enqueue(MockResponse().setResponseCode(304))
+
+        assertEquals("content", get(client, "/handle"))
+        assertEquals("content", get(client, "/handle"))
+
+        assertNull(server.takeRequest().getHeader("If-None-Match"))
+        assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"))
+    }
+
+    @Test
+    fun `replaces content that changed`() {
+        val client = client(CacheOptions.Builder().revalidateAfter(0).build())
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("old"))
+        server.enqueue(MockResponse().setHeader("ETag", "\"v2\"").setBody("new"))
+        server.enqueue(MockResponse().setResponseCode(304))
+
+        assertEquals("old", get(client, "/handle"))
+        assertEquals("new", get(client, "/handle"))
+        assertEquals("new", get(client, "/handle"))
+        assertEquals(3, server.requestCount)
+    }
+
+    @Test
+    fun `updates kept headers from a 304`() {
+        val client = client(CacheOptions.Builder().revalidateAfter(0).build())
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setHeader("Cache-Control", "max-age=10")
+                .setBody("content"))
+        server.enqueue(MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\"")
+                .setHeader("Cache-Control", "max-age=20"))
+
+        get(client, "/handle")
+        val request = Request.Builder().url(server.url("/handle")).build()
+        client.newCall(request).execute().use {
+            assertEquals("max-age=20", it.header("Cache-Control"))
+            assertEquals("content", it.body!!.string())
+        }
+    }
+
+    @Test
+    fun `serves fresh content without the network`() {
+        val client = client(CacheOptions.defaults())
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("content"))
+
+        assertEquals("content", get(client, "/handle"))
+        assertEquals("content", get(client, "/handle"))
+        assertEquals(1, server.requestCount)
+    }
+
+    @Test
+    fun `evicts the least recently used content`() {
+        val client = client(CacheOptions.Builder().maxMemorySize(10).revalidateAfter(60 * 1000).build())
+        server.enqueue(MockResponse().setHeader("ETag", "\"a\"").setBody("aaaaaa"))
+        server.enqueue(MockResponse().setHeader("ETag", "\"b\"").setBody("bbbbbb"))
+        server.enqueue(MockResponse().setHeader("ETag", "\"a\"").setBody("aaaaaa"))
+
+        get(client, "/a")
+        get(client, "/b")
+        get(client, "/b")
+        assertEquals(2, server.requestCount)
+
+        assertEquals("aaaaaa", get(client, "/a"))
+        assertEquals(3, server.requestCount)
+    }
+
+    @Test
+    fun `passes ranges through`() {
+        val client = client(CacheOptions.Builder().revalidateAfter(60 * 1000).build())
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("content"))
+        server.enqueue(MockResponse().setResponseCode(206).setHeader("ETag", "\"v1\"").setBody("con"))
+
+        get(client, "/handle")
+        val request = Request.Builder().url(server.url("/handle")).header("Range", "bytes=0-2").build()
+        client.newCall(request).execute().use { assertEquals(206, it.code) }
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun `only keeps content on the CDN`() {
+        val client = client(CacheOptions.defaults())
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("{}"))
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("{}"))
+        val other = OkHttpClient.Builder()
+                .addInterceptor(ContentCacheInterceptor(CacheOptions.defaults(), server.url("/cdn/")))
+                .build()
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("content"))
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody("content"))
+
+        get(client, "/handle/metadata")
+        get(client, "/handle/metadata")
+        get(other, "/handle")
+        get(other, "/handle")
+        assertEquals(4, server.requestCount)
+    }
+
+    private fun client(options: CacheOptions) =
+            OkHttpClient.Builder().addInterceptor(ContentCacheInterceptor(options, server.url("/"))).build()
+
+    private fun get(client: OkHttpClient, path: String) =
+            client.newCall(Request.Builder().url(server.url(path)).build()).execute().use { it.body!!.string() }
+}
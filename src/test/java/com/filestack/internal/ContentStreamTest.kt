@@ -0,0 +1,102 @@
+package org.filestack.internal
+
+import io.reactivex.Single
+import io.reactivex.schedulers.Schedulers
+import okhttp3.MediaType
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import okio.ForwardingSource
+import okio.buffer
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+class ContentStreamTest {
+
+    @Test
+    fun `splits the body in chunks`() {
+        val content = Random(11).nextBytes(100_000)
+        val body = TrackingBody(content)
+
+        val chunks = ContentStream.chunks(Single.just<ResponseBody>(body), 16 * 1024, Schedulers.trampoline()).test().values()
+
+        val joined = ByteArrayOutputStream()
+        chunks.forEach { joined.write(it.array(), it.position(), it.remaining()) }
+        assertArrayEquals(content, joined.toByteArray())
+        assertTrue(chunks.all { it.remaining() <= 16 * 1024 })
+        assertEquals(7, chunks.size)
+        assertTrue(body.closed)
+    }
+
+    @Test
+    fun `only reads what is requested`() {
+        val body = TrackingBody(Random(12).nextBytes(100_000))
+
+        val subscriber = ContentStream.chunks(Single.just<ResponseBody>(body), 1024, Schedulers.trampoline()).test(2)
+
+        subscriber.assertValueCount(2).assertNotComplete()
+        assertTrue(body.read < 100_000)
+        assertFalse(body.closed)
+
+        subscriber.cancel()
+        assertTrue(body.closed)
+    }
+
+    @Test
+    fun `completes an empty body`() {
+        val body = TrackingBody(ByteArray(0))
+
+        ContentStream.chunks(Single.just<ResponseBody>(body), 1024, Schedulers.trampoline()).test().assertNoValues().assertComplete()
+        assertTrue(body.closed)
+    }
+
+    @Test
+    fun `reads on the given scheduler`() {
+        val body = TrackingBody(Random(13).nextBytes(100_000))
+        val reader = Executors.newSingleThreadExecutor { Thread(it, "content-reader") }
+        // The body arrives on another thread, like the HTTP client's dispatcher
+        val content = Single.just<ResponseBody>(body).observeOn(Schedulers.newThread())
+
+        try {
+            val subscriber = ContentStream.chunks(content, 1024, Schedulers.from(reader)).test(1)
+            subscriber.awaitCount(1)
+            subscriber.requestMore(Long.MAX_VALUE).awaitDone(5, TimeUnit.SECONDS).assertComplete()
+        } finally {
+            reader.shutdown()
+        }
+
+        assertEquals(setOf("content-reader"), body.readThreads)
+    }
+
+    private class TrackingBody(content: ByteArray) : ResponseBody() {
+        var read = 0L
+        var closed = false
+        val readThreads: MutableSet<String> = ConcurrentHashMap.newKeySet()
+
+        private val source = object : ForwardingSource(Buffer().write(content)) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                readThreads.add(Thread.currentThread().name)
+                return super.read(sink, minOf(byteCount, 8192L)).also { if (it > 0) read += it }
+            }
+
+            override fun close() {
+                closed = true
+                super.close()
+            }
+        }.buffer()
+
+        override fun contentType(): MediaType? = null
+
+        override fun contentLength() = -1L
+
+        override fun source(): BufferedSource = source
+    }
+}
@@ -0,0 +1,52 @@
+package org.filestack.internal
+
+import io.reactivex.Completable
+import io.reactivex.Single
+import okio.ByteString
+import org.filestack.Config
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicBoolean
+
+class ExecutionTest {
+
+    private val virtualConfig = Config.Builder("apiKey").virtualThreads(true).build()
+
+    @Test
+    fun `blocking calls run on virtual threads when enabled`() {
+        val isVirtual = Execution.blocking(virtualConfig, Single.fromCallable { Thread.currentThread().isVirtual })
+        assertTrue(isVirtual.blockingGet())
+
+        val ranVirtual = AtomicBoolean()
+        Execution.blocking(virtualConfig, Completable.fromAction {
+            ranVirtual.set(Thread.currentThread().isVirtual)
+        }).blockingAwait()
+        assertTrue(ranVirtual.get())
+
+        val scheduled = Single.fromCallable { Thread.currentThread().isVirtual }
+                .subscribeOn(Execution.blocking(virtualConfig))
+        assertTrue(scheduled.blockingGet())
+    }
+
+    @Test
+    fun `blocking calls are left alone by default`() {
+        val config = Config("apiKey")
+        val single = Single.just(1)
+        assertSame(single, Execution.blocking(config, single))
+
+        val scheduled = Single.fromCallable { Thread.currentThread().isVirtual }
+                .subscribeOn(Execution.blocking(config))
+        assertFalse(scheduled.blockingGet())
+    }
+
+    @Test
+    fun `hashing works on virtual threads`() {
+        val hex = Execution.blocking(virtualConfig, Single.fromCallable {
+            ByteString.of(*Hash.md5("filestack".toByteArray())!!).hex()
+        })
+        assertEquals("4d9248e9ad027c6f03a90897e329ca92", hex.blockingGet())
+    }
+}
@@ -12,6 +12,15 @@ class HashTest {
         assertEquals("4d9248e9ad027c6f03a90897e329ca92", ByteString.of(*result).hex())
     }
 
+    @Test
+    fun `md5 reuses the thread's digest without leaking state`() {
+        val digest = Hash.md5Digest()!!
+        digest.update("partial".toByteArray())
+
+        val result = Hash.md5("filestack".toByteArray())!!
+        assertEquals("4d9248e9ad027c6f03a90897e329ca92", ByteString.of(*result).hex())
+    }
+
     @Test
     fun hmacSha256() {
         val result = Hash.hmacSha256("filestackKey".toByteArray(), "filestackMessage".toByteArray())
@@ -0,0 +1,49 @@
+package org.filestack.internal
+
+import org.filestack.bodyParams
+import okhttp3.MultipartBody
+import okhttp3.RequestBody
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class MultipartFormTest {
+
+    private val constant = linkedMapOf<String, RequestBody>(
+            "apikey" to Util.createStringPart("api_key"),
+            "upload_id" to Util.createStringPart("upload_id"),
+            "region" to Util.createStringPart("eu-west-1")
+    )
+
+    @Test
+    fun `encodes like a form built from scratch`() {
+        val form = MultipartForm(constant).with("part", "3", "md5", "bWQ1")
+        val boundary = form.contentType()!!.parameter("boundary")!!
+
+        val fields = LinkedHashMap(constant)
+        fields["part"] = Util.createStringPart("3")
+        fields["md5"] = Util.createStringPart("bWQ1")
+        val expected = UploadService.buildMultipartBody(MultipartBody.Builder(boundary), fields)
+
+        assertEquals(expected.contentType(), form.contentType())
+        assertEquals(expected.contentLength(), form.contentLength())
+        assertEquals(write(expected).readByteString(), write(form).readByteString())
+    }
+
+    @Test
+    fun `each request only adds its own fields`() {
+        val form = MultipartForm(constant)
+
+        val first = write(form.with("part", "1")).bodyParams()
+        val second = write(form.with("part", "2", "offset", "1024")).bodyParams()
+
+        assertEquals("1", first["part"])
+        assertEquals("api_key", first["apikey"])
+        assertEquals(null, first["offset"])
+        assertEquals("2", second["part"])
+        assertEquals("1024", second["offset"])
+        assertEquals("upload_id", second["upload_id"])
+    }
+
+    private fun write(body: RequestBody) = Buffer().also { body.writeTo(it) }
+}
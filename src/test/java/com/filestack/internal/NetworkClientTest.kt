@@ -1,5 +1,7 @@
 package org.filestack.internal
 
+import org.filestack.CircuitBreakerOptions
+import org.filestack.CircuitOpenException
 import com.google.gson.Gson
 import com.google.gson.JsonParseException
 import okhttp3.OkHttpClient
@@ -9,6 +11,7 @@ import okhttp3.mockwebserver.MockWebServer
 import org.junit.Assert.*
 import org.junit.Rule
 import org.junit.Test
+import java.util.concurrent.TimeUnit
 
 class NetworkClientTest {
 
@@ -58,5 +61,80 @@ class NetworkClientTest {
         networkClient.call(request, Foo::class.java)
     }
 
+    @Test
+    fun `fails fast once too many requests to a host failed`() {
+        val networkClient = NetworkClient(okHttpClient, Gson(), CircuitBreakerOptions.Builder()
+                .window(4)
+                .minRequests(4)
+                .openDuration(60 * 1000)
+                .build())
+        repeat(4) {
+            server.enqueue(MockResponse().setResponseCode(500))
+            assertEquals(500, networkClient.call(request).code())
+        }
+
+        try {
+            networkClient.call(request)
+            fail("Expected the breaker to be open")
+        } catch (e: CircuitOpenException) {
+            assertEquals(serverUrl.host, e.host)
+        }
+        assertEquals(4, server.requestCount)
+    }
+
+    @Test
+    fun `lets requests through without breakers`() {
+        repeat(30) {
+            server.enqueue(MockResponse().setResponseCode(500))
+            assertEquals(500, networkClient.call(request).code())
+        }
+    }
+
+    @Test
+    fun `returns results asynchronously`() {
+        server.enqueue(MockResponse().setBody("""{"text": "some_text", "number": 32}"""))
+
+        val result = networkClient.callAsync(request, Foo::class.java).blockingGet()
+
+        assertTrue(result.isSuccessful)
+        assertEquals(32, result.data!!.number)
+
+        server.enqueue(MockResponse().setResponseCode(403).setBody("Invalid Request"))
+
+        assertEquals(403, networkClient.callAsync(request).blockingGet().code())
+    }
+
+    @Test
+    fun `asynchronous failures count towards the breaker`() {
+        val networkClient = NetworkClient(okHttpClient, Gson(), CircuitBreakerOptions.Builder()
+                .window(4)
+                .minRequests(4)
+                .openDuration(60 * 1000)
+                .build())
+        repeat(4) {
+            server.enqueue(MockResponse().setResponseCode(500))
+            assertEquals(500, networkClient.callAsync(request).blockingGet().code())
+        }
+
+        networkClient.callAsync(request).test().await().assertError(CircuitOpenException::class.java)
+        assertEquals(4, server.requestCount)
+    }
+
+    @Test
+    fun `disposing cancels the call without tripping the breaker`() {
+        val networkClient = NetworkClient(okHttpClient, Gson(), CircuitBreakerOptions.Builder()
+                .window(1)
+                .minRequests(1)
+                .build())
+        server.enqueue(MockResponse().setHeadersDelay(10, TimeUnit.SECONDS))
+
+        val observer = networkClient.callAsync(request).test()
+        server.takeRequest()
+        observer.dispose()
+
+        server.enqueue(MockResponse())
+        assertEquals(200, networkClient.call(request).code())
+    }
+
     private class Foo(val text: String, val number: Int)
 }
\ No newline at end of file
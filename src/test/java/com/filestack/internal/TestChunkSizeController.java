@@ -0,0 +1,93 @@
+package org.filestack.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class TestChunkSizeController {
+  private static final int KB = 1024;
+  private static final long SECOND = 1000000000L;
+
+  private static void succeed(ChunkSizeController controller, int times, long elapsed) {
+    for (int i = 0; i < times; i++) {
+      int limit = controller.get();
+      controller.onSuccess(limit, limit, elapsed);
+    }
+  }
+
+  @Test
+  public void testHalvesOnFailure() throws IOException {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 8192 * KB);
+    controller.onFailure(controller.get());
+    Assert.assertEquals(512 * KB, controller.get());
+  }
+
+  @Test
+  public void testConcurrentFailuresReduceOnce() throws IOException {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 8192 * KB);
+    int limit = controller.get();
+    controller.onFailure(limit);
+    controller.onFailure(limit);
+    Assert.assertEquals(512 * KB, controller.get());
+  }
+
+  @Test(expected = IOException.class)
+  public void testThrowsBelowMinimum() throws IOException {
+    ChunkSizeController controller = new ChunkSizeController(64 * KB, 32 * KB, 8192 * KB);
+    controller.onFailure(controller.get());
+    controller.onFailure(controller.get());
+  }
+
+  @Test
+  public void testGrowsAfterSuccesses() {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 8192 * KB);
+    succeed(controller, ChunkSizeController.GROW_AFTER, SECOND);
+    Assert.assertEquals(1280 * KB, controller.get());
+  }
+
+  @Test
+  public void testRecoversToBestSizeAfterFailure() throws IOException {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 8192 * KB);
+    controller.onFailure(controller.get());
+    controller.onFailure(controller.get());
+    Assert.assertEquals(256 * KB, controller.get());
+
+    succeed(controller, ChunkSizeController.GROW_AFTER, SECOND);
+    Assert.assertEquals(512 * KB, controller.get());
+    succeed(controller, ChunkSizeController.GROW_AFTER, SECOND);
+    Assert.assertEquals(1024 * KB, controller.get());
+  }
+
+  @Test
+  public void testBacksOffWhenBiggerIsSlower() {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 8192 * KB);
+    // 1 MB chunks at 1 MB/s
+    succeed(controller, ChunkSizeController.GROW_AFTER, SECOND);
+    Assert.assertEquals(1280 * KB, controller.get());
+
+    // 1.25 MB chunks at a much lower rate
+    succeed(controller, ChunkSizeController.GROW_AFTER, 10 * SECOND);
+    Assert.assertEquals(1024 * KB, controller.get());
+
+    // Holds at the best size instead of probing again right away
+    succeed(controller, ChunkSizeController.GROW_AFTER, SECOND);
+    Assert.assertEquals(1024 * KB, controller.get());
+  }
+
+  @Test
+  public void testNeverExceedsMax() {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 1100 * KB);
+    succeed(controller, 10 * ChunkSizeController.GROW_AFTER, SECOND);
+    Assert.assertEquals(1100 * KB, controller.get());
+  }
+
+  @Test
+  public void testIgnoresStaleResults() {
+    ChunkSizeController controller = new ChunkSizeController(1024 * KB, 32 * KB, 8192 * KB);
+    for (int i = 0; i < 10; i++) {
+      controller.onSuccess(2048 * KB, 2048 * KB, SECOND);
+    }
+    Assert.assertEquals(1024 * KB, controller.get());
+  }
+}
@@ -0,0 +1,139 @@
+package org.filestack.internal;
+
+import org.filestack.CircuitBreakerOptions;
+import org.filestack.CircuitOpenException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TestCircuitBreaker {
+  private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final CircuitBreakerOptions options = new CircuitBreakerOptions.Builder()
+      .window(10)
+      .minRequests(4)
+      .failureRate(0.5)
+      .openDuration(TimeUnit.NANOSECONDS.toMillis(OPEN_NANOS))
+      .probes(2)
+      .build();
+
+  private long now;
+
+  private void request(CircuitBreaker breaker, boolean success) throws CircuitOpenException {
+    breaker.onResult(breaker.acquire(now), success, now);
+  }
+
+  private CircuitBreaker tripped() throws CircuitOpenException {
+    CircuitBreaker breaker = new CircuitBreaker("host", options);
+    for (int i = 0; i < 4; i++) {
+      request(breaker, false);
+    }
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    return breaker;
+  }
+
+  @Test
+  public void testWaitsForMinRequests() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("host", options);
+    for (int i = 0; i < 3; i++) {
+      request(breaker, false);
+    }
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testStaysClosedBelowFailureRate() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("host", options);
+    for (int i = 0; i < 20; i++) {
+      request(breaker, i % 3 == 0);
+      request(breaker, true);
+    }
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testOldFailuresLeaveTheWindow() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("host", options);
+    request(breaker, false);
+    for (int i = 0; i < 10; i++) {
+      request(breaker, true);
+    }
+    // Would make 5 out of 10 if the first failure still counted
+    for (int i = 0; i < 4; i++) {
+      request(breaker, false);
+    }
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test(expected = CircuitOpenException.class)
+  public void testFailsFastWhileOpen() throws Exception {
+    CircuitBreaker breaker = tripped();
+    now += OPEN_NANOS - 1;
+    breaker.acquire(now);
+  }
+
+  @Test
+  public void testClosesAfterProbesSucceed() throws Exception {
+    CircuitBreaker breaker = tripped();
+    now += OPEN_NANOS;
+
+    long first = breaker.acquire(now);
+    long second = breaker.acquire(now);
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    try {
+      breaker.acquire(now);
+      Assert.fail("Only the probes should go through");
+    } catch (CircuitOpenException e) {
+      Assert.assertEquals("host", e.getHost());
+    }
+
+    breaker.onResult(first, true, now);
+    breaker.onResult(second, true, now);
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testReopensWhenProbeFails() throws Exception {
+    CircuitBreaker breaker = tripped();
+    now += OPEN_NANOS;
+
+    request(breaker, false);
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    // The open duration starts over
+    now += OPEN_NANOS - 1;
+    try {
+      breaker.acquire(now);
+      Assert.fail("Expected the breaker to be open");
+    } catch (CircuitOpenException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testCancelledProbeIsReplaced() throws Exception {
+    CircuitBreaker breaker = tripped();
+    now += OPEN_NANOS;
+
+    breaker.onCancel(breaker.acquire(now));
+    request(breaker, true);
+    request(breaker, true);
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testIgnoresResultsFromBeforeTripping() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("host", options);
+    long early = breaker.acquire(now);
+    for (int i = 0; i < 4; i++) {
+      request(breaker, false);
+    }
+    now += OPEN_NANOS;
+    request(breaker, true);
+
+    // A slow request sent while closed doesn't count as a probe
+    breaker.onResult(early, true, now);
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+  }
+}
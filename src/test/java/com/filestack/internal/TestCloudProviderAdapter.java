@@ -0,0 +1,73 @@
+package org.filestack.internal;
+
+import org.filestack.CloudResponse;
+import org.filestack.internal.responses.CloudProviderResponse;
+import org.filestack.internal.responses.CloudStoreResponse;
+import com.google.gson.Gson;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class TestCloudProviderAdapter {
+  private final Gson gson = Networking.getGson();
+
+  @Test
+  public void testReadsProviderItems() throws IOException {
+    String json = "{\"dropbox\": {\"client\": \"dropbox\", \"filename\": \"/\", \"next\": \"page2\","
+        + "\"contents\": [{\"name\": \"a.txt\", \"path\": \"/a.txt\", \"bytes\": 12, \"folder\": false},"
+        + "{\"name\": \"dir\", \"path\": \"/dir/\", \"folder\": true}]},"
+        + "\"googledrive\": {\"contents\": [{\"path\": \"/skipped\"}]},"
+        + "\"token\": \"session\"}";
+
+    CloudProviderAdapter<CloudResponse> adapter =
+        new CloudProviderAdapter<>("dropbox", gson.getAdapter(CloudResponse.class));
+    CloudProviderResponse<CloudResponse> response = adapter.read(gson.newJsonReader(new StringReader(json)));
+
+    Assert.assertEquals("session", response.getToken());
+    CloudResponse items = response.getData();
+    Assert.assertEquals("dropbox", items.getProvider());
+    Assert.assertEquals("page2", items.getNextToken());
+    Assert.assertEquals(2, items.getItems().length);
+    Assert.assertEquals("/a.txt", items.getItems()[0].getPath());
+    Assert.assertTrue(items.getItems()[1].isFolder());
+  }
+
+  @Test
+  public void testMissingValues() throws IOException {
+    String json = "{\"token\": null, \"other\": {\"handle\": \"skipped\"}}";
+
+    CloudProviderAdapter<CloudStoreResponse> adapter =
+        new CloudProviderAdapter<>("dropbox", gson.getAdapter(CloudStoreResponse.class));
+    CloudProviderResponse<CloudStoreResponse> response = adapter.read(gson.newJsonReader(new StringReader(json)));
+
+    Assert.assertNull(response.getToken());
+    Assert.assertNull(response.getData());
+  }
+
+  @Test
+  public void testReadsStoredItem() throws IOException {
+    String json = "{\"box\": {\"handle\": \"abc\", \"size\": 5, \"mimetype\": \"text/plain\"}}";
+
+    CloudProviderAdapter<CloudStoreResponse> adapter =
+        new CloudProviderAdapter<>("box", gson.getAdapter(CloudStoreResponse.class));
+    CloudProviderResponse<CloudStoreResponse> response = adapter.read(gson.newJsonReader(new StringReader(json)));
+
+    Assert.assertEquals("abc", response.getData().getHandle());
+    Assert.assertEquals(5, response.getData().getSize());
+  }
+
+  @Test
+  public void testWritesWhatItReads() throws IOException {
+    String json = "{\"token\":\"session\",\"box\":{\"handle\":\"abc\",\"size\":5}}";
+
+    CloudProviderAdapter<CloudStoreResponse> adapter =
+        new CloudProviderAdapter<>("box", gson.getAdapter(CloudStoreResponse.class));
+    CloudProviderResponse<CloudStoreResponse> response = adapter.read(gson.newJsonReader(new StringReader(json)));
+
+    Assert.assertEquals(json, adapter.toJson(response));
+    Assert.assertEquals("null", adapter.toJson(null));
+    Assert.assertEquals("{}", adapter.toJson(new CloudProviderResponse<CloudStoreResponse>(null, null)));
+  }
+}
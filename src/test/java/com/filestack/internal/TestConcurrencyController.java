@@ -0,0 +1,93 @@
+package org.filestack.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestConcurrencyController {
+  private static final long WINDOW = ConcurrencyController.WINDOW_NANOS;
+
+  private long now;
+
+  /** Reports one window worth of transfers at the given rate (bytes per window). */
+  private int window(ConcurrencyController controller, int bytes) {
+    now += WINDOW;
+    return controller.onTransfer(bytes, now);
+  }
+
+  @Test
+  public void testStartsSmall() {
+    ConcurrencyController controller = new ConcurrencyController(16, now);
+    Assert.assertEquals(ConcurrencyController.INITIAL_WORKERS, controller.start());
+    Assert.assertEquals(ConcurrencyController.INITIAL_WORKERS, controller.getActive());
+  }
+
+  @Test
+  public void testDoublesWhileThroughputImproves() {
+    ConcurrencyController controller = new ConcurrencyController(16, now);
+    controller.start();
+
+    Assert.assertEquals(2, window(controller, 1000));
+    Assert.assertEquals(4, controller.getActive());
+    Assert.assertEquals(4, window(controller, 2000));
+    Assert.assertEquals(8, controller.getActive());
+  }
+
+  @Test
+  public void testTakesBackWorkersThatDidNotHelp() {
+    ConcurrencyController controller = new ConcurrencyController(16, now);
+    controller.start();
+
+    window(controller, 1000); // 2 -> 4
+    window(controller, 500); // Slower with 4, back to 2
+    Assert.assertEquals(2, controller.getTarget());
+
+    // Extra workers retire as they finish their parts
+    Assert.assertTrue(controller.tryRetire());
+    Assert.assertTrue(controller.tryRetire());
+    Assert.assertFalse(controller.tryRetire());
+    Assert.assertEquals(2, controller.getActive());
+  }
+
+  @Test
+  public void testHalvesOnErrors() {
+    ConcurrencyController controller = new ConcurrencyController(16, now);
+    controller.start();
+    window(controller, 1000); // 2 -> 4
+
+    controller.onError();
+    controller.onError();
+    window(controller, 1000);
+    Assert.assertEquals(2, controller.getTarget());
+  }
+
+  @Test
+  public void testNeverExceedsMax() {
+    ConcurrencyController controller = new ConcurrencyController(3, now);
+    controller.start();
+    int bytes = 1000;
+    for (int i = 0; i < 10; i++) {
+      window(controller, bytes);
+      bytes *= 2;
+    }
+    Assert.assertEquals(3, controller.getActive());
+  }
+
+  @Test
+  public void testNoNewWorkersOnceExhausted() {
+    ConcurrencyController controller = new ConcurrencyController(16, now);
+    controller.start();
+    controller.onExhausted();
+    Assert.assertEquals(0, window(controller, 1000));
+  }
+
+  @Test
+  public void testGivesBackWorkersThatNeverStarted() {
+    ConcurrencyController controller = new ConcurrencyController(16, now);
+    controller.start();
+
+    Assert.assertEquals(2, window(controller, 1000)); // 2 -> 4
+    controller.onExhausted(); // Before the new workers were added
+    controller.onNotStarted(2);
+    Assert.assertEquals(2, controller.getActive());
+  }
+}
@@ -0,0 +1,65 @@
+package org.filestack.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+public class TestDownloadJournal {
+
+  private static File tempDownload() throws IOException {
+    File file = File.createTempFile("filestack", ".bin");
+    file.deleteOnExit();
+    new File(file.getPath() + DownloadJournal.SUFFIX).deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    File file = tempDownload();
+    DownloadJournal journal = new DownloadJournal(file);
+    Assert.assertNull(journal.load());
+
+    journal.started(new DownloadJournal.State(4000, 1024, "\"v1\"", null));
+    journal.segmentCompleted(2048);
+    journal.segmentCompleted(0);
+
+    DownloadJournal.State state = new DownloadJournal(file).load();
+    Assert.assertNotNull(state);
+    Assert.assertTrue(state.matches(new DownloadJournal.State(4000, 1024, "\"v1\"", null)));
+    Assert.assertFalse(state.matches(new DownloadJournal.State(4000, 1024, "\"v2\"", null)));
+    Assert.assertFalse(state.matches(new DownloadJournal.State(4000, 2048, "\"v1\"", null)));
+    Assert.assertEquals(2, state.completed.size());
+    Assert.assertTrue(state.completed.contains(0L));
+    Assert.assertTrue(state.completed.contains(2048L));
+
+    journal.delete();
+    Assert.assertNull(journal.load());
+  }
+
+  @Test
+  public void testIgnoresTornLastLine() throws IOException {
+    File file = tempDownload();
+    DownloadJournal journal = new DownloadJournal(file);
+    journal.started(new DownloadJournal.State(4000, 1024, null, "Wed, 21 Oct 2015 07:28:00 GMT"));
+    journal.segmentCompleted(1024);
+    Files.write(new File(file.getPath() + DownloadJournal.SUFFIX).toPath(),
+        "{\"offset\":".getBytes(Charset.forName("UTF-8")), StandardOpenOption.APPEND);
+
+    DownloadJournal.State state = journal.load();
+    Assert.assertNotNull(state);
+    Assert.assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", state.lastModified);
+    Assert.assertEquals(1, state.completed.size());
+  }
+
+  @Test
+  public void testUnvalidatedContentNeverMatches() {
+    DownloadJournal.State state = new DownloadJournal.State(4000, 1024, null, null);
+    Assert.assertFalse(state.isValidated());
+    Assert.assertFalse(state.matches(new DownloadJournal.State(4000, 1024, null, null)));
+  }
+}
@@ -0,0 +1,74 @@
+package org.filestack.internal;
+
+import org.filestack.CircuitBreakerOptions;
+import org.filestack.Config;
+import org.filestack.HttpOptions;
+import okhttp3.OkHttpClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestNetworking {
+
+  @Test
+  public void testDefaultConfigsShareTheSingleton() {
+    Assert.assertSame(Networking.getUploadService(), Networking.getUploadService(new Config("apiKey")));
+    Assert.assertSame(Networking.getNetworkClient(new Config("apiKey")),
+        Networking.getNetworkClient(new Config.Builder("other").build()));
+  }
+
+  @Test
+  public void testEqualOptionsShareAClient() {
+    Config first = new Config.Builder("apiKey")
+        .httpOptions(new HttpOptions.Builder().connectionPool(32, 60 * 1000).build())
+        .build();
+    Config second = new Config.Builder("apiKey")
+        .httpOptions(new HttpOptions.Builder().connectionPool(32, 60 * 1000).build())
+        .build();
+    Config other = new Config.Builder("apiKey")
+        .httpOptions(new HttpOptions.Builder().connectionPool(8, 60 * 1000).build())
+        .build();
+
+    NetworkClient client = Networking.getNetworkClient(first);
+    Assert.assertSame(client, Networking.getNetworkClient(second));
+    Assert.assertNotSame(client, Networking.getNetworkClient(other));
+    Assert.assertNotSame(client, Networking.getNetworkClient(new Config("apiKey")));
+  }
+
+  @Test
+  public void testClientOutlivesTheOptionsItWasMadeFor() {
+    NetworkClient client = Networking.getNetworkClient(new Config.Builder("apiKey")
+        .httpOptions(new HttpOptions.Builder().connectionPool(16, 30 * 1000).build())
+        .build());
+    System.gc();
+
+    Assert.assertSame(client, Networking.getNetworkClient(new Config.Builder("apiKey")
+        .httpOptions(new HttpOptions.Builder().connectionPool(16, 30 * 1000).build())
+        .build()));
+  }
+
+  @Test
+  public void testBreakersAreSetPerConfig() {
+    Config first = new Config.Builder("apiKey")
+        .circuitBreaker(new CircuitBreakerOptions.Builder().window(10).minRequests(5).build())
+        .build();
+    Config second = new Config.Builder("apiKey")
+        .circuitBreaker(new CircuitBreakerOptions.Builder().window(10).minRequests(5).build())
+        .build();
+
+    NetworkClient client = Networking.getNetworkClient(first);
+    Assert.assertSame(client, Networking.getNetworkClient(second));
+    Assert.assertNotSame(client, Networking.getNetworkClient(new Config("apiKey")));
+    Assert.assertSame(Networking.getUploadService(), Networking.getUploadService(new Config("apiKey")));
+  }
+
+  @Test
+  public void testSuppliedClientIsShared() {
+    OkHttpClient httpClient = new OkHttpClient();
+    Config first = new Config.Builder("apiKey").httpClient(httpClient).build();
+    Config second = new Config.Builder("apiKey").httpClient(httpClient).build();
+
+    Assert.assertSame(Networking.getNetworkClient(first), Networking.getNetworkClient(second));
+    Assert.assertNotSame(Networking.getNetworkClient(first),
+        Networking.getNetworkClient(new Config.Builder("apiKey").httpClient(new OkHttpClient()).build()));
+  }
+}
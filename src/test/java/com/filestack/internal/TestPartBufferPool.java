@@ -0,0 +1,113 @@
+package org.filestack.internal;
+
+import org.filestack.Config;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestPartBufferPool {
+
+  @Test
+  public void testReusesReleasedArrays() throws InterruptedException {
+    PartBufferPool pool = new PartBufferPool(100);
+    byte[] first = pool.acquire(40);
+    pool.release(first);
+    Assert.assertSame(first, pool.acquire(40));
+    Assert.assertEquals(40, pool.getAllocated());
+  }
+
+  @Test
+  public void testDropsIdleArraysOfOtherSizes() throws InterruptedException {
+    PartBufferPool pool = new PartBufferPool(100);
+    pool.release(pool.acquire(60));
+    byte[] other = pool.acquire(80);
+    Assert.assertEquals(80, other.length);
+    Assert.assertEquals(80, pool.getAllocated());
+  }
+
+  @Test
+  public void testOversizeAllowedWhenEmpty() throws InterruptedException {
+    PartBufferPool pool = new PartBufferPool(10);
+    Assert.assertEquals(20, pool.acquire(20).length);
+    Assert.assertNull(pool.tryAcquire(1));
+  }
+
+  @Test
+  public void testWaitsForRelease() throws InterruptedException {
+    final PartBufferPool pool = new PartBufferPool(100);
+    byte[] held = pool.acquire(60);
+
+    final AtomicReference<byte[]> acquired = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          acquired.set(pool.acquire(60));
+        } catch (InterruptedException e) {
+          // Fails the assertions below
+        }
+        done.countDown();
+      }
+    });
+    waiter.start();
+
+    Assert.assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+    // Someone is waiting, so a small request that would fit doesn't cut in line
+    Assert.assertNull(pool.tryAcquire(10));
+
+    pool.release(held);
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    Assert.assertSame(held, acquired.get());
+    Assert.assertEquals(60, pool.getAllocated());
+  }
+
+  @Test
+  public void testInterruptedWaiterLeavesLine() throws InterruptedException {
+    final PartBufferPool pool = new PartBufferPool(100);
+    byte[] held = pool.acquire(100);
+
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          pool.acquire(50);
+        } catch (InterruptedException e) {
+          // Expected
+        }
+      }
+    });
+    waiter.start();
+    Thread.sleep(100);
+    waiter.interrupt();
+    waiter.join(5000);
+
+    pool.release(held);
+    Assert.assertNotNull(pool.tryAcquire(50));
+  }
+
+  @Test
+  public void testKeepsOnlyMaxIdle() throws InterruptedException {
+    PartBufferPool pool = new PartBufferPool(100, 40);
+    byte[] first = pool.acquire(40);
+    byte[] second = pool.acquire(40);
+    pool.release(first);
+    pool.release(second);
+    Assert.assertEquals(40, pool.getAllocated()); // The second one went to the garbage collector
+    Assert.assertSame(first, pool.acquire(40));
+  }
+
+  @Test
+  public void testConfigsWithEqualLimitsSharePool() {
+    Config config = new Config.Builder("apiKey").uploadMemoryLimit(1000).idleUploadMemory(100).build();
+    PartBufferPool pool = PartBufferPool.forConfig(config);
+    Assert.assertEquals(1000, pool.getLimit());
+    Assert.assertEquals(100, pool.getMaxIdle());
+    Assert.assertSame(pool, PartBufferPool.forConfig(
+        new Config.Builder("other").uploadMemoryLimit(1000).idleUploadMemory(100).build()));
+    Assert.assertSame(PartBufferPool.shared(), PartBufferPool.forConfig(new Config("apiKey")));
+  }
+}
@@ -7,6 +7,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 import static org.filestack.UtilsKt.mockOkHttpResponse;
 
@@ -118,4 +119,148 @@ public class TestRetryNetworkFunc {
       Assert.assertEquals(6, retryNetworkFunc.getServerRetries());
     }
   }
+
+  @Test
+  public void testDeferredBackoff() throws Exception {
+    final int[] attempts = new int[1];
+    RetryNetworkFunc<String> retryNetworkFunc = new RetryNetworkFunc<String>(2, 0, Backoff.fullJitter(0, 0)) {
+
+      @Override
+      Response<String> work() throws Exception {
+        if (++attempts[0] < 3) {
+          throw new IOException();
+        }
+        return Response.success("done", mockOkHttpResponse(200));
+      }
+    }.deferBackoff();
+
+    // Each failure hands back control instead of sleeping, calling again continues the count
+    for (int i = 1; i <= 2; i++) {
+      try {
+        retryNetworkFunc.call();
+        Assert.fail("Expected the backoff to be deferred");
+      } catch (RetryLater e) {
+        Assert.assertEquals(i, retryNetworkFunc.getNetworkRetries());
+      }
+    }
+    Assert.assertEquals("done", retryNetworkFunc.call());
+    Assert.assertEquals(3, attempts[0]);
+  }
+
+  @Test
+  public void testDeferredBackoffGivesUp() throws Exception {
+    RetryNetworkFunc retryNetworkFunc = new RetryNetworkFunc<Void>(1, 0, Backoff.fullJitter(0, 0)) {
+
+      @Override
+      Response<Void> work() throws Exception {
+        throw new IOException();
+      }
+    }.deferBackoff();
+
+    try {
+      retryNetworkFunc.call();
+      Assert.fail("Expected the backoff to be deferred");
+    } catch (RetryLater e) {
+      // Expected
+    }
+
+    // No backoff once the retries are used up, the failure is thrown right away
+    thrown.expect(IOException.class);
+    retryNetworkFunc.call();
+  }
+
+  @Test
+  public void testFullJitterBackoff() {
+    Backoff backoff = Backoff.fullJitter(100, 1000);
+    for (int i = 0; i < 1000; i++) {
+      long first = backoff.delay(0);
+      Assert.assertTrue(first >= 0 && first < 100);
+      long third = backoff.delay(2);
+      Assert.assertTrue(third >= 0 && third < 400);
+      long capped = backoff.delay(20);
+      Assert.assertTrue(capped >= 0 && capped < 1000);
+    }
+  }
+
+  @Test
+  public void testExponentialBackoff() {
+    Backoff backoff = Backoff.exponential(2);
+    Assert.assertEquals(1000, backoff.delay(0));
+    Assert.assertEquals(8000, backoff.delay(3));
+  }
+
+  @Test
+  public void testNonRetryableFailure() throws Exception {
+    RetryNetworkFunc retryNetworkFunc = new RetryNetworkFunc<Void>(5, 5, 0) {
+
+      @Override
+      Response<Void> work() throws Exception {
+        throw new InterruptedIOException();
+      }
+    };
+
+    try {
+      retryNetworkFunc.call();
+      Assert.fail("Expected the failure to be thrown");
+    } catch (InterruptedIOException e) {
+      Assert.assertEquals(0, retryNetworkFunc.getNetworkRetries());
+    }
+  }
+
+  @Test
+  public void testRetryAfterHoldsBackHost() throws Exception {
+    final HostThrottle throttle = new HostThrottle();
+    final int[] attempts = new int[1];
+    RetryNetworkFunc<String> retryNetworkFunc = new RetryNetworkFunc<String>(0, 1, Backoff.fullJitter(0, 5000)) {
+
+      @Override
+      Response<String> work() throws Exception {
+        if (++attempts[0] == 1) {
+          return Response.error(mockOkHttpResponse(429).newBuilder().header("Retry-After", "2").build());
+        }
+        return Response.success("done", mockOkHttpResponse(200));
+      }
+    }.throttledBy(throttle, null).deferBackoff();
+
+    try {
+      retryNetworkFunc.call();
+      Assert.fail("Expected the backoff to be deferred");
+    } catch (RetryLater e) {
+      // Other requests to the host wait for as long as the server asked
+      long remaining = throttle.remaining("localhost");
+      Assert.assertTrue(remaining > 1000 && remaining <= 2001);
+      Assert.assertEquals(0, throttle.remaining("example.com"));
+    }
+  }
+
+  @Test
+  public void testRetryAfterIsCappedAtMaxDelay() throws Exception {
+    final HostThrottle throttle = new HostThrottle();
+    RetryNetworkFunc<String> retryNetworkFunc = new RetryNetworkFunc<String>(0, 1, Backoff.fullJitter(0, 1000)) {
+
+      @Override
+      Response<String> work() throws Exception {
+        return Response.error(mockOkHttpResponse(503).newBuilder().header("Retry-After", "3600").build());
+      }
+    }.throttledBy(throttle, null).deferBackoff();
+
+    try {
+      retryNetworkFunc.call();
+      Assert.fail("Expected the backoff to be deferred");
+    } catch (RetryLater e) {
+      // The host is held for the max delay, not the hour the server asked for
+      long remaining = throttle.remaining("localhost");
+      Assert.assertTrue(remaining > 0 && remaining <= 1000);
+    }
+  }
+
+  @Test
+  public void testThrottleOnlyExtends() {
+    HostThrottle throttle = new HostThrottle();
+    throttle.hold("localhost", 5000);
+    throttle.hold("localhost", 10);
+    Assert.assertTrue(throttle.remaining("localhost") > 4000);
+    throttle.hold("localhost", 0);
+    Assert.assertTrue(throttle.remaining("localhost") > 4000);
+  }
 }
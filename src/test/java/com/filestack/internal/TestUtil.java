@@ -1,6 +1,12 @@
 package org.filestack.internal;
 
 import org.filestack.HttpException;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -8,11 +14,20 @@ import org.junit.rules.ExpectedException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
 
 import static org.filestack.UtilsKt.mockOkHttpResponse;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class TestUtil extends Util {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
@@ -142,6 +157,101 @@ public class TestUtil extends Util {
     }
   }
 
+  @Test
+  public void testSaveAtomicallyReplacesFile() throws Exception {
+    File directory = Files.createTempDirectory("filestack").toFile();
+    File file = new File(directory, "saved.txt");
+    Files.write(file.toPath(), "old content".getBytes(UTF_8));
+
+    Util.saveAtomically(ResponseBody.create(MediaType.get("text/plain"), "new content"), file);
+
+    assertEquals("new content", new String(Files.readAllBytes(file.toPath()), UTF_8));
+    assertArrayEquals(new String[] {"saved.txt"}, directory.list());
+  }
+
+  @Test
+  public void testSaveAtomicallyKeepsFileOnFailure() throws Exception {
+    File directory = Files.createTempDirectory("filestack").toFile();
+    File file = new File(directory, "saved.txt");
+    Files.write(file.toPath(), "old content".getBytes(UTF_8));
+    ResponseBody failing = new ResponseBody() {
+      @Override
+      public MediaType contentType() {
+        return null;
+      }
+
+      @Override
+      public long contentLength() {
+        return -1;
+      }
+
+      @Override
+      public BufferedSource source() {
+        return Okio.buffer(new ForwardingSource(new Buffer().writeUtf8("partial")) {
+          @Override
+          public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read == -1) {
+              throw new IOException("Connection reset");
+            }
+            return read;
+          }
+        });
+      }
+    };
+
+    try {
+      Util.saveAtomically(failing, file);
+      fail("Should have thrown exception");
+    } catch (IOException e) {
+      assertEquals("Connection reset", e.getMessage());
+    }
+
+    assertEquals("old content", new String(Files.readAllBytes(file.toPath()), UTF_8));
+    assertArrayEquals(new String[] {"saved.txt"}, directory.list());
+  }
+
+  @Test
+  public void testCheckWriteFileDoesNotCreateIt() throws Exception {
+    File directory = Files.createTempDirectory("filestack").toFile();
+    File file = Util.checkWriteFile(new File(directory, "new.txt").getPath());
+
+    assertFalse(file.exists());
+    assertArrayEquals(new String[0], directory.list());
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testCheckWriteFileFailsWithoutDirectory() throws Exception {
+    File directory = Files.createTempDirectory("filestack").toFile();
+    Util.checkWriteFile(new File(directory, "missing/new.txt").getPath());
+  }
+
+  @Test
+  public void testSaveAtomicallyUsesDefaultPermissions() throws Exception {
+    File directory = Files.createTempDirectory("filestack").toFile();
+    Path reference = Files.createFile(new File(directory, "reference.txt").toPath());
+    assumeTrue(Files.getFileStore(reference).supportsFileAttributeView(PosixFileAttributeView.class));
+    File file = new File(directory, "saved.txt");
+
+    Util.saveAtomically(ResponseBody.create(MediaType.get("text/plain"), "content"), file);
+
+    assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(file.toPath()));
+  }
+
+  @Test
+  public void testSaveAtomicallyKeepsPermissionsOfReplacedFile() throws Exception {
+    File directory = Files.createTempDirectory("filestack").toFile();
+    File file = new File(directory, "saved.txt");
+    Files.write(file.toPath(), "old content".getBytes(UTF_8));
+    assumeTrue(Files.getFileStore(file.toPath()).supportsFileAttributeView(PosixFileAttributeView.class));
+    Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+    Files.setPosixFilePermissions(file.toPath(), permissions);
+
+    Util.saveAtomically(ResponseBody.create(MediaType.get("text/plain"), "new content"), file);
+
+    assertEquals(permissions, Files.getPosixFilePermissions(file.toPath()));
+  }
+
   @Test
   public void testIsNullOrEmpty() {
     assertTrue(Util.isNullOrEmpty(null));
@@ -0,0 +1,114 @@
+package org.filestack.internal
+
+import org.filestack.tempFile
+import org.filestack.write
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.InputStream
+import java.nio.channels.FileChannel
+import java.nio.channels.SeekableByteChannel
+import java.nio.file.StandardOpenOption
+
+class UploadSourceTest {
+
+    @Test
+    fun `file source addresses parts as regions`() {
+        val file = tempFile().apply { write("0123456789") }
+
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            val source = FileChannelSource(channel)
+            val container = PartContainer()
+
+            assertTrue(source.next(container, 4, false))
+            assertEquals(1, container.num)
+            assertEquals(0L, container.offset)
+            assertEquals(4, container.size)
+
+            assertTrue(source.next(container, 4, false))
+            assertTrue(source.next(container, 4, false))
+            assertEquals(3, container.num)
+            assertEquals(8L, container.offset)
+            assertEquals(2, container.size)
+
+            assertFalse(source.next(container, 4, false))
+
+            val md5 = source.md5(container, container.size)
+            assertArrayEquals(Hash.md5("89".toByteArray()), md5)
+        }
+    }
+
+    @Test
+    fun `seekable source reads parts by offset`() {
+        val file = tempFile().apply { write("0123456789") }
+
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { fileChannel ->
+            val channel = object : SeekableByteChannel by fileChannel {}
+            val source = SeekableChannelSource(channel)
+            val first = PartContainer()
+            val second = PartContainer()
+
+            assertTrue(source.next(first, 6, false))
+            assertTrue(source.next(second, 6, false))
+            assertFalse(source.next(PartContainer(), 6, false))
+
+            assertEquals("012345", String(first.data, 0, first.size))
+            assertEquals(2, second.num)
+            assertEquals("6789", String(second.data, 0, second.size))
+        }
+    }
+
+    @Test
+    fun `stream source fills parts across short reads`() {
+        val input = object : InputStream() {
+            val delegate = ByteArrayInputStream("0123456789".toByteArray())
+
+            override fun read() = delegate.read()
+
+            override fun read(b: ByteArray, off: Int, len: Int) = delegate.read(b, off, minOf(len, 3))
+        }
+
+        val source = StreamSource(input, 10)
+        val container = PartContainer()
+
+        assertTrue(source.next(container, 8, false))
+        assertEquals(8, container.size)
+        assertEquals("01234567", String(container.data, 0, container.size))
+
+        assertTrue(source.next(container, 8, false))
+        assertEquals(2, container.num)
+        assertEquals(2, container.size)
+
+        assertFalse(source.next(container, 8, false))
+    }
+
+    @Test
+    fun `memory sources hash parts while reading them`() {
+        val input = object : InputStream() {
+            val delegate = ByteArrayInputStream("0123456789".toByteArray())
+
+            override fun read() = delegate.read()
+
+            override fun read(b: ByteArray, off: Int, len: Int) = delegate.read(b, off, minOf(len, 3))
+        }
+
+        val source = StreamSource(input, 10)
+        val container = PartContainer()
+
+        assertTrue(source.next(container, 8, true))
+        assertArrayEquals(Hash.md5("01234567".toByteArray()), container.md5)
+        assertArrayEquals(container.md5, source.md5(container, container.size))
+
+        // Chunks of a part are still hashed on their own
+        container.sent = 4
+        assertArrayEquals(Hash.md5("4567".toByteArray()), source.md5(container, 4))
+
+        assertTrue(source.next(container, 8, false))
+        assertNull(container.md5)
+        assertArrayEquals(Hash.md5("89".toByteArray()), source.md5(container, container.size))
+    }
+}